@@ -0,0 +1,83 @@
+package model;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * This class provides the boards used by the benchmarks: the levels shipped in the levels folder and synthetic stress
+ * boards crowded with rocks, bombs or mummies
+ * 
+ * @author Jeffrey Sun
+ */
+final class BenchmarkBoards {
+
+	static final String STRESS_ROCKS = "stressRocks";
+	static final String STRESS_BOMBS = "stressBombs";
+	static final String STRESS_MUMMIES = "stressMummies";
+
+	private static final int STRESS_WIDTH = 64;
+	private static final int STRESS_HEIGHT = 48;
+	private static final long SEED = 42;
+
+	private BenchmarkBoards() {}
+
+	/**
+	 * Returns the board with the given name, either a shipped level such as "level7" or one of the stress boards
+	 * 
+	 * @param name the name of the board
+	 * 
+	 * @return the pristine board, which callers should copy before playing it
+	 */
+	static Board get(String name) {
+		switch(name) {
+		case STRESS_ROCKS:
+			return stress(new char[] { Model.ROCK }, 0.35);
+		case STRESS_BOMBS:
+			return stress(new char[] { Model.BOMB, Model.BOMB, Model.ROCK }, 0.3);
+		case STRESS_MUMMIES:
+			return stress(new char[] { Model.MUMMY, Model.MUMMY, Model.ROCK }, 0.2);
+		default:
+			return Model.fileToLevel(new File("levels/" + name + ".txt")).materialise(null);
+		}
+	}
+
+	/**
+	 * Builds a board walled with hard sand and randomly filled with the given objects, plus sand, granite, orbs, a
+	 * portal and the player
+	 * 
+	 * @param objects the object types to scatter, picked with equal chance
+	 * 
+	 * @param density the fraction of inner cells holding one of the objects
+	 * 
+	 * @return the generated board
+	 */
+	private static Board stress(char[] objects, double density) {
+		Board board = new Board(STRESS_WIDTH, STRESS_HEIGHT);
+		Random random = new Random(SEED);
+		for(int row = 0; row != STRESS_HEIGHT; ++row) {
+			for(int col = 0; col != STRESS_WIDTH; ++col) {
+				char type;
+				if(row == 0 || col == 0 || row == STRESS_HEIGHT - 1 || col == STRESS_WIDTH - 1) {
+					type = Model.HARD_SAND;
+				} else {
+					double roll = random.nextDouble();
+					if(roll < density) {
+						type = objects[random.nextInt(objects.length)];
+					} else if(roll < density + 0.05) {
+						type = Model.ORB;
+					} else if(roll < density + 0.2) {
+						type = Model.SOFT_SAND;
+					} else if(roll < density + 0.3) {
+						type = Model.GRANITE;
+					} else {
+						type = Model.BACKGROUND;
+					}
+				}
+				board.setType(board.index(row, col), type);
+			}
+		}
+		board.setType(board.index(STRESS_HEIGHT - 2, STRESS_WIDTH / 3), Model.PORTAL);
+		board.setType(board.index(STRESS_HEIGHT / 2, STRESS_WIDTH / 2), Model.PLAYER);
+		return board;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package model;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks reading levels from the level text files and from the compiled level pack
+ * 
+ * @author Jeffrey Sun
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadingBenchmark {
+
+	private Model model;
+
+	/**
+	 * This class holds the level file read by a single-level benchmark
+	 */
+	@State(Scope.Thread)
+	public static class LevelFile {
+		@Param({ "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18",
+				"19", "20" })
+		public int level;
+
+		private File file;
+
+		/**
+		 * Picks the level file to read
+		 */
+		@Setup
+		public void setUp() {
+			file = new File("levels/level" + level + ".txt");
+		}
+	}
+
+	/**
+	 * Creates the model used to read the level pack
+	 */
+	@Setup
+	public void setUp() {
+		model = new Model();
+	}
+
+	/**
+	 * Reads a single level text file
+	 * 
+	 * @param levelFile the level file to read
+	 * 
+	 * @return the level read from the file
+	 */
+	@Benchmark
+	public LevelTemplate fileToLevel(LevelFile levelFile) {
+		return Model.fileToLevel(levelFile.file);
+	}
+
+	/**
+	 * Reads a single level from the level pack
+	 * 
+	 * @param levelFile the level to read
+	 * 
+	 * @return the template of the level
+	 */
+	@Benchmark
+	public LevelTemplate loadTemplate(LevelFile levelFile) {
+		return model.loadTemplate(levelFile.level - 1);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,179 @@
+package model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks the per-tick game functions of the model. Every operation restarts the level before running a
+ * fixed number of ticks or moves, so reset() is included as a baseline to subtract.
+ * 
+ * @author Jeffrey Sun
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmark {
+
+	private static final int TICKS = 32; // Number of ticks or moves run after each reset
+	private static final int[][] DIRECTIONS = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+
+	@Param({ "level1", "level2", "level3", "level4", "level5", "level6", "level7", "level8", "level9", "level10",
+			"level11", "level12", "level13", "level14", "level15", "level16", "level17", "level18", "level19",
+			"level20", BenchmarkBoards.STRESS_ROCKS, BenchmarkBoards.STRESS_BOMBS, BenchmarkBoards.STRESS_MUMMIES })
+	public String board;
+
+	private Model model;
+	private Board level;
+	private int[] moves; // Directions of the scripted player moves
+	private int explodeRow;
+	private int explodeCol;
+
+	/**
+	 * Loads the benchmarked board and picks the scripted moves and explosion center
+	 */
+	@Setup
+	public void setUp() {
+		model = new Model();
+		Board template = BenchmarkBoards.get(board);
+		model.playLevel(new LevelTemplate(template));
+		level = model.getBoard();
+
+		Random random = new Random(board.hashCode());
+		moves = new int[TICKS];
+		for(int i = 0; i != TICKS; ++i) {
+			moves[i] = random.nextInt(DIRECTIONS.length);
+		}
+
+		// Explode the first bomb on the board, or the player if there are no bombs
+		explodeRow = -1;
+		for(int row = 0; row != template.getHeight(); ++row) {
+			for(int col = 0; col != template.getWidth(); ++col) {
+				char type = template.getType(row, col);
+				if(type == Model.BOMB || (type == Model.PLAYER && explodeRow == -1)) {
+					explodeRow = row;
+					explodeCol = col;
+					if(type == Model.BOMB) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Restarts the level from its starting layout
+	 */
+	private void restore() {
+		model.restartLevel();
+	}
+
+	/**
+	 * Restarts the level without running anything, as a baseline for the other benchmarks
+	 * 
+	 * @return the board, so the work isn't optimized away
+	 */
+	@Benchmark
+	public Board reset() {
+		restore();
+		return level;
+	}
+
+	/**
+	 * Runs gravity for a number of ticks
+	 * 
+	 * @return the board, so the work isn't optimized away
+	 */
+	@Benchmark
+	public Board gravity() {
+		restore();
+		for(int i = 0; i != TICKS; ++i) {
+			model.gravity();
+		}
+		return level;
+	}
+
+	/**
+	 * Runs enemy movement for a number of ticks
+	 * 
+	 * @return the board, so the work isn't optimized away
+	 */
+	@Benchmark
+	public Board enemyMove() {
+		restore();
+		for(int i = 0; i != TICKS; ++i) {
+			model.enemyMove();
+		}
+		return level;
+	}
+
+	/**
+	 * Runs a scripted sequence of player moves
+	 * 
+	 * @return the board, so the work isn't optimized away
+	 */
+	@Benchmark
+	public Board playerMove() {
+		restore();
+		for(int i = 0; i != TICKS; ++i) {
+			int[] direction = DIRECTIONS[moves[i]];
+			model.playerMove(direction[0], direction[1]);
+		}
+		return level;
+	}
+
+	/**
+	 * Explodes the first bomb on the board, or the player if there are no bombs
+	 * 
+	 * @return the board, so the work isn't optimized away
+	 */
+	@Benchmark
+	public Board explode() {
+		restore();
+		model.explode(explodeRow, explodeCol);
+		return level;
+	}
+
+	/**
+	 * Runs ticks without player input until the board comes to rest
+	 * 
+	 * @return the board, so the work isn't optimized away
+	 */
+	@Benchmark
+	public Board settle() {
+		restore();
+		model.settle();
+		return level;
+	}
+
+	/**
+	 * Runs a full game tick of a player move, gravity and enemy movement a number of times
+	 * 
+	 * @return the board, so the work isn't optimized away
+	 */
+	@Benchmark
+	public Board tick() {
+		restore();
+		for(int i = 0; i != TICKS; ++i) {
+			int[] direction = DIRECTIONS[moves[i]];
+			model.playerMove(direction[0], direction[1]);
+			model.gravity();
+			model.enemyMove();
+		}
+		return level;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import env.BatchedEnvironment;
+import model.LevelPack;
+import model.Model;
+
+/**
+ * This class steps a batch of boards with random legal actions and reports how many board steps per second the
+ * batched environment sustained. The first few boards are also played on models of their own, and the driver fails
+ * if any of them ever differs from its model in its cells, player, orbs left, reward, end or legal actions. The
+ * models play by the game's own rules, which the environment applies to its boards separately.
+ * 
+ * Usage: BatchedEnvironmentDriver [boards] [steps] [threads] [boards checked] [seed]
+ * 
+ * With no arguments, 100000 boards spread over the game's levels are stepped 100 times on one thread per core, and
+ * the first 100 are checked.
+ * 
+ * @author Jeffrey Sun
+ */
+public class BatchedEnvironmentDriver {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int numBoards = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int numThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int numChecked = Math.min(numBoards, args.length > 3 ? Integer.parseInt(args[3]) : 100);
+		Random random = new Random(args.length > 4 ? Long.parseLong(args[4]) : 0);
+
+		LevelPack levels = Model.openLevelPack();
+		int[] boardLevels = new int[numBoards];
+		for(int board = 0; board != numBoards; ++board) {
+			boardLevels[board] = board % levels.size();
+		}
+		BatchedEnvironment environment = new BatchedEnvironment(levels, boardLevels, numThreads);
+		List<Model> models = new ArrayList<Model>();
+		for(int board = 0; board != numChecked; ++board) {
+			Model model = new Model(levels);
+			model.goToLevel(boardLevels[board]);
+			models.add(model);
+		}
+
+		int[] actions = new int[numBoards];
+		long elapsed = 0;
+		int levelsComplete = 0, gamesOver = 0;
+		for(int step = 0; step != steps; ++step) {
+			boolean[] legal = environment.getLegalActions();
+			for(int board = 0; board != numBoards; ++board) {
+				do {
+					actions[board] = random.nextInt(BatchedEnvironment.NUM_ACTIONS);
+				} while(!legal[board * BatchedEnvironment.NUM_ACTIONS + actions[board]]);
+			}
+
+			long start = System.nanoTime();
+			environment.stepAll(actions);
+			elapsed += System.nanoTime() - start;
+
+			for(int board = 0; board != numBoards; ++board) {
+				if(environment.getDone()[board] && environment.getRewards()[board] > 0) {
+					++levelsComplete;
+				} else if(environment.getDone()[board]) {
+					++gamesOver;
+				}
+			}
+			for(int board = 0; board != numChecked; ++board) {
+				if(!matches(environment, board, models.get(board), actions[board])) {
+					System.out.println("Board " + board + " differed from its model at step " + step);
+					environment.close();
+					System.exit(1);
+				}
+			}
+		}
+		environment.close();
+
+		System.out.printf("%d boards stepped %d times in %.3f s (%.0f board steps/s), %d levels complete, "
+				+ "%d games over%n", numBoards, steps, elapsed / 1e9, (double) numBoards * steps * 1e9 / elapsed,
+				levelsComplete, gamesOver);
+		System.out.println(numChecked + " of " + numChecked + " checked boards matched their models");
+	}
+
+	/**
+	 * Steps a model the way the environment steps a board, and returns whether the board still matches it
+	 * 
+	 * @param environment the environment, after stepping the board
+	 * 
+	 * @param board the number of the board
+	 * 
+	 * @param model the model playing the same board
+	 * 
+	 * @param action the action applied to the board
+	 * 
+	 * @return whether the board's cells, player, orbs, reward, end and legal actions are the same as the model's
+	 */
+	private static boolean matches(BatchedEnvironment environment, int board, Model model, int action) {
+		int orbs = model.getOrbsLeft();
+		model.step(action);
+		float reward = (orbs - model.getOrbsLeft()) * BatchedEnvironment.ORB_REWARD;
+		if(model.getState() == Model.LEVEL_COMPLETE) {
+			reward += BatchedEnvironment.LEVEL_COMPLETE_REWARD;
+		} else if(model.getState() == Model.GAME_OVER) {
+			reward += BatchedEnvironment.GAME_OVER_REWARD;
+		}
+		boolean done = model.getState() != Model.PLAYING;
+		if(done) {
+			model.goToLevel(environment.getLevel(board));
+		}
+		if(reward != environment.getRewards()[board] || done != environment.getDone()[board]
+				|| model.getPlayerRow() != environment.getPlayerRow(board)
+				|| model.getPlayerCol() != environment.getPlayerCol(board)
+				|| model.getOrbsLeft() != environment.getOrbsLeft(board)) {
+			return false;
+		}
+
+		byte[] expected = model.saveState();
+		ByteBuffer cells = environment.getCells();
+		int offset = board * environment.getCellStride();
+		for(int i = 0; i != model.getBoard().getWidth() * model.getBoard().getHeight(); ++i) {
+			if(cells.get(offset + i) != expected[i]) {
+				return false;
+			}
+		}
+		for(int a = 0; a != BatchedEnvironment.NUM_ACTIONS; ++a) {
+			if(model.canMove(a) != environment.getLegalActions()[board * BatchedEnvironment.NUM_ACTIONS + a]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+import java.util.Random;
+
+import model.Model;
+
+/**
+ * This class runs the game without a window, stepping it as fast as possible with random player inputs and reporting
+ * how many ticks were simulated per second
+ * 
+ * Usage: HeadlessDriver [ticks] [seed]
+ * 
+ * @author Jeffrey Sun
+ */
+public class HeadlessDriver {
+	public static void main(String[] args) {
+		long ticks = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 0);
+
+		Model model = new Model();
+		int levelsComplete = 0, gamesOver = 0;
+
+		long start = System.nanoTime();
+		for(long tick = 0; tick != ticks; ++tick) {
+			if(model.getState() == Model.LEVEL_COMPLETE) {
+				++levelsComplete;
+				model.nextLevel();
+			} else if(model.getState() == Model.GAME_OVER) {
+				++gamesOver;
+				model.restartLevel();
+			} else if(model.getState() == Model.GAME_COMPLETE) {
+				model.goToLevel(0);
+			}
+			model.step(random.nextInt(5));
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.out.printf("%d ticks in %.3f s (%.0f ticks/s), %d levels complete, %d games over%n", ticks,
+				elapsed / 1e9, ticks * 1e9 / elapsed, levelsComplete, gamesOver);
+	}
+}
\ No newline at end of file
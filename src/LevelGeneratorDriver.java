@@ -0,0 +1,42 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import generator.LevelGenerator;
+import model.LevelPack;
+import model.LevelTemplate;
+
+/**
+ * This class generates a batch of new levels that can be completed and writes them to a level pack, which can be
+ * played by creating a model with the pack or checked with SolverDriver
+ * 
+ * Usage: LevelGeneratorDriver [pack file] [levels] [seed] [width] [height] [max states] [min moves]
+ * 
+ * With no arguments, 1000 levels of 18 by 12 tiles are generated from seed 0 into levels/generated.pack.
+ * 
+ * @author Jeffrey Sun
+ */
+public class LevelGeneratorDriver {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		File pack = new File(args.length > 0 ? args[0] : "levels/generated.pack");
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+		int width = args.length > 3 ? Integer.parseInt(args[3]) : LevelGenerator.DEFAULT_WIDTH;
+		int height = args.length > 4 ? Integer.parseInt(args[4]) : LevelGenerator.DEFAULT_HEIGHT;
+		int maxStates = args.length > 5 ? Integer.parseInt(args[5]) : LevelGenerator.DEFAULT_MAX_STATES;
+		int minMoves = args.length > 6 ? Integer.parseInt(args[6]) : LevelGenerator.DEFAULT_MIN_MOVES;
+
+		LevelGenerator generator = new LevelGenerator(width, height, maxStates, minMoves,
+				Runtime.getRuntime().availableProcessors());
+		long start = System.nanoTime();
+		List<LevelTemplate> levels = generator.generate(seed, count);
+		long elapsed = System.nanoTime() - start;
+		LevelPack.write(levels, pack);
+
+		System.out.printf("Wrote %d levels to %s in %.3f s (%.1f levels/s)%n", levels.size(), pack, elapsed / 1e9,
+				levels.size() * 1e9 / elapsed);
+		System.out.printf("%d candidates: %d unsolvable, %d given up on, %d too easy%n",
+				generator.getNumCandidates(), generator.getNumUnsolvable(), generator.getNumGaveUp(),
+				generator.getNumTooEasy());
+	}
+}
\ No newline at end of file
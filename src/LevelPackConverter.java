@@ -0,0 +1,35 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.LevelPack;
+
+/**
+ * This class compiles level text files into a single level pack that the game loads instead of the text files
+ * 
+ * Usage: LevelPackConverter [pack file] [level text files...]
+ * 
+ * With no arguments, levels/level1.txt, levels/level2.txt and so on are compiled into levels/levels.pack.
+ * 
+ * @author Jeffrey Sun
+ */
+public class LevelPackConverter {
+	public static void main(String[] args) throws IOException {
+		File pack = new File(args.length > 0 ? args[0] : "levels/levels.pack");
+
+		List<File> textFiles = new ArrayList<File>();
+		if(args.length > 1) {
+			for(int i = 1; i != args.length; ++i) {
+				textFiles.add(new File(args[i]));
+			}
+		} else {
+			for(int i = 1; new File("levels/level" + i + ".txt").exists(); ++i) {
+				textFiles.add(new File("levels/level" + i + ".txt"));
+			}
+		}
+
+		LevelPack.convert(textFiles, pack);
+		System.out.println("Wrote " + textFiles.size() + " levels to " + pack);
+	}
+}
\ No newline at end of file
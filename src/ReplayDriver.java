@@ -0,0 +1,64 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.Model;
+import model.Recording;
+
+/**
+ * This class replays recorded sessions without a window and as fast as possible, checking that every tick still
+ * leaves the board the same as when it was recorded. It exits with a status of 1 if any recording diverges, so it can
+ * be run as part of a build.
+ * 
+ * Usage: ReplayDriver [recording files or folders...]
+ * 
+ * With no arguments, every curated recording in the recordings folder is replayed. Sessions played in the window are
+ * saved to build/recordings instead.
+ * 
+ * @author Jeffrey Sun
+ */
+public class ReplayDriver {
+	public static void main(String[] args) {
+		List<File> files = new ArrayList<File>();
+		for(String arg : args.length > 0 ? args : new String[] { "recordings" }) {
+			File file = new File(arg);
+			if(file.isDirectory()) {
+				File[] recordings = file.listFiles();
+				Arrays.sort(recordings);
+				for(File recording : recordings) {
+					if(recording.getName().endsWith(".rec")) {
+						files.add(recording);
+					}
+				}
+			} else if(file.exists()) {
+				files.add(file);
+			}
+		}
+
+		int failures = 0;
+		for(File file : files) {
+			try {
+				Recording recording = Recording.read(file);
+				long start = System.nanoTime();
+				int divergence = recording.replay(new Model());
+				long elapsed = System.nanoTime() - start;
+				if(divergence == Recording.NO_DIVERGENCE) {
+					System.out.printf("%s: %d ticks replayed in %.3f s (%.0f ticks/s)%n", file, recording.getNumTicks(),
+							elapsed / 1e9, recording.getNumTicks() * 1e9 / elapsed);
+				} else {
+					++failures;
+					System.out.println(file + ": diverged at tick " + divergence + " of " + recording.getNumTicks());
+				}
+			} catch(IOException e) {
+				++failures;
+				System.out.println(file + ": " + e.getMessage());
+			}
+		}
+		System.out.println(files.size() - failures + " of " + files.size() + " recordings matched");
+		if(failures != 0) {
+			System.exit(1);
+		}
+	}
+}
\ No newline at end of file
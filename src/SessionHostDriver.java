@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import host.Bot;
+import host.Session;
+import host.SessionHost;
+import model.LevelPack;
+import model.Model;
+
+/**
+ * This class runs many games at once on a session host, each played by a bot making random moves, and reports how
+ * many ticks per second the host sustained, how late the sessions' ticks finished and how much memory each session
+ * takes
+ * 
+ * Usage: SessionHostDriver [sessions] [seconds] [shards] [period in ms] [seed]
+ * 
+ * With no arguments, 1000 sessions are run for 10 seconds as fast as possible on one shard per core.
+ * 
+ * @author Jeffrey Sun
+ */
+public class SessionHostDriver {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int numSessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int numShards = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int period = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+		LevelPack levels = Model.openLevelPack();
+		SessionHost host = new SessionHost(levels, numShards, period);
+		long heapBefore = usedHeap();
+		for(int i = 0; i != numSessions; ++i) {
+			final Random random = new Random(seed + i);
+			host.addSession(new Bot() {
+				@Override
+				public int nextInput(Model model) {
+					return random.nextInt(5);
+				}
+			});
+		}
+		long heapPerSession = (usedHeap() - heapBefore) / numSessions;
+
+		long start = System.nanoTime();
+		host.start();
+		Thread.sleep(seconds * 1000L);
+		host.stop();
+		long elapsed = System.nanoTime() - start;
+
+		List<Session> sessions = host.getSessions();
+		long[] meanLatencies = new long[sessions.size()];
+		long maxLatency = 0;
+		int levelsComplete = 0, gamesOver = 0;
+		for(int i = 0; i != sessions.size(); ++i) {
+			Session session = sessions.get(i);
+			meanLatencies[i] = session.getMeanLatency();
+			maxLatency = Math.max(maxLatency, session.getMaxLatency());
+			levelsComplete += session.getLevelsComplete();
+			gamesOver += session.getGamesOver();
+		}
+		Arrays.sort(meanLatencies);
+
+		System.out.printf("%d sessions on %d shards: %d ticks in %.3f s (%.0f ticks/s), %d missed deadlines%n",
+				numSessions, numShards, host.getNumTicks(), elapsed / 1e9, host.getNumTicks() * 1e9 / elapsed,
+				host.getMissedDeadlines());
+		System.out.printf("Session latency: median %.3f ms, 99th percentile %.3f ms, max %.3f ms%n",
+				meanLatencies[meanLatencies.length / 2] / 1e6, meanLatencies[meanLatencies.length * 99 / 100] / 1e6,
+				maxLatency / 1e6);
+		System.out.printf("Memory: %.1f KB per session, %d levels complete, %d games over%n", heapPerSession / 1024.0,
+				levelsComplete, gamesOver);
+	}
+
+	/**
+	 * Returns the memory in use on the heap once as much garbage as possible has been collected
+	 * 
+	 * @return the bytes in use
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i != 3; ++i) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import model.LevelPack;
+import model.Model;
+import solver.Solution;
+import solver.Solver;
+
+/**
+ * This class runs the solver on every level and reports whether each one could be solved, how many states were
+ * searched and how long it took
+ * 
+ * Usage: SolverDriver [heuristic weight] [max states] [level pack]
+ * 
+ * With no level pack, the game's own levels are solved. A heuristic weight of 1 finds the fewest moves each level
+ * takes, and higher weights only check that each level can be completed.
+ * 
+ * @author Jeffrey Sun
+ */
+public class SolverDriver {
+	public static void main(String[] args) throws IOException {
+		int weight = args.length > 0 ? Integer.parseInt(args[0]) : Solver.DEFAULT_HEURISTIC_WEIGHT;
+		int maxStates = args.length > 1 ? Integer.parseInt(args[1]) : Solver.DEFAULT_MAX_STATES;
+		LevelPack pack = args.length > 2 ? new LevelPack(new File(args[2])) : null;
+
+		Solver solver = new Solver(ForkJoinPool.commonPool(), Solver.DEFAULT_MOVES_PER_TICK, weight, maxStates);
+		int numLevels = new Model(pack).getNumLevels();
+		String moves = weight == Solver.OPTIMAL ? "fewest moves" : "moves";
+		int solved = 0;
+		for(int level = 0; level != numLevels; ++level) {
+			long start = System.nanoTime();
+			Solution solution = solver.solve(pack, level);
+			long elapsed = System.nanoTime() - start;
+			if(solution.getResult() == Solution.SOLVED) {
+				++solved;
+			}
+			System.out.printf("Level %d: %d %s, %d ticks, %d states in %.3f s: %s%n", level + 1,
+					solution.getNumMoves(), moves, solution.getNumTicks(), solution.getStatesSearched(),
+					elapsed / 1e9, solution);
+		}
+		System.out.println(solved + " of " + numLevels + " levels solved");
+	}
+}
\ No newline at end of file
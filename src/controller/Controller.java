@@ -1,23 +1,38 @@
 package controller;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 
+import metrics.InputAppliedEvent;
+import metrics.LevelTransitionEvent;
+import metrics.Metrics;
+import metrics.TickEvent;
+import model.GameListener;
 import model.Model;
-import model.Tile;
+import model.Recording;
+import solver.HintListener;
+import solver.HintSearch;
 import view.View;
 
 /**
- * This class handles communication between game data and visuals
+ * This class handles communication between game data and visuals. The model belongs to the game loop's thread: key
+ * presses are posted to the loop as commands, and after every change the loop publishes a snapshot of the game for
+ * the view to draw.
  * 
  * @author Jeffrey Sun
  */
 public class Controller {
-	
+
 	// Game states
 	public static final int START_MENU = 0;
 	public static final int PLAYING = 1;
@@ -26,34 +41,113 @@ public class Controller {
 	public static final int END_MENU = 4;
 
 	public static final int DELAY = 250; // Time in between in-game events (gravity tick, enemy movement)
-	public static final int INPUT_COOLDOWN = 30;
+	public static final int INPUT_COOLDOWN = 30; // Least time between key presses being applied, faster ones wait
+	public static final int INPUT_CAPACITY = 32; // Key presses that can wait to be applied at once
+	public static final int REWIND_TICKS = 1000 / DELAY; // Ticks gone back by each press of the rewind key
+	public static final int NO_HINT = -1;
+
+	private static final String RECORDINGS_FOLDER = "build/recordings"; // Ignored by git, unlike curated recordings/
 
-	public int state;
+	private volatile int state;
 
+	// Owned by the game loop's thread
 	private Model model;
-	private View view;
-	private Timer timer;
+	private Recording recording; // Every input since the game started, saved when the window closes
+	private HintSearch hints;
+	private int hintCell; // Cell the hint points at, or NO_HINT
+	private int numInputs; // Number of key presses, used to throw away hints that arrive after the player has moved
+	private long tickTime;
+	private int movedFromRow, movedFromCol;
+	private long moveTime;
+	private LevelTransitionEvent transition; // Begun when a level is completed, or null when not between levels
 
+	private View view;
+	private InputQueue input;
+	private GameLoop loop;
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+	
 	/**
 	 * Constructor that creates the controller class with a model and view
 	 */
 	public Controller() {
-		model = new Model(this);
+		model = new Model();
+		model.addGameListener(new CustomGameListener());
+		model.enableRewind();
+		model.enableMetrics();
+		model.enablePrefetch();
+		Metrics.registerMBean();
+		recording = new Recording(model);
+		hints = new HintSearch(Runtime.getRuntime().availableProcessors(), HintSearch.DEFAULT_TIME_BUDGET);
+		hintCell = NO_HINT;
+		movedFromRow = model.getPlayerRow();
+		movedFromCol = model.getPlayerCol();
+
+		state = START_MENU;
+		publish();
+
 		view = new View(this);
 		view.getWindow().addKeyListener(new CustomKeyListener());
-		
-		state = START_MENU;
+		view.getWindow().addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				stop();
+			}
+			@Override
+			public void windowClosed(WindowEvent e) {
+				stop();
+			}
+		});
 
-		startTimer();
+		input = new InputQueue(INPUT_CAPACITY, InputQueue.REPEAT_COALESCE, INPUT_COOLDOWN);
+		loop = new GameLoop(DELAY, new Runnable() {
+			@Override
+			public void run() {
+				TickEvent event = new TickEvent();
+				event.begin();
+				tickTime = System.nanoTime();
+				recording.tick(model);
+				publish();
+				event.commit(model.getLevel(), model.getNumTicks());
+			}
+		}, input, new InputHandler() {
+			@Override
+			public void handleInput(int keyCode) {
+				InputAppliedEvent event = new InputAppliedEvent();
+				event.begin();
+				keyCommand(keyCode);
+				publish();
+				event.commit(model.getLevel(), model.getNumTicks(), keyCode,
+						System.nanoTime() - input.getLastEventTime());
+			}
+		});
+		loop.start();
 	}
 	
 	/**
-	 * Returns the game board stored by the model
+	 * Returns the latest snapshot of the game. This can be called from any thread.
 	 * 
-	 * @return the game board stored by the model
+	 * @return the latest snapshot
 	 */
-	public Tile[][] getBoard() {
-		return model.getBoard();
+	public Snapshot getSnapshot() {
+		return snapshot.get();
+	}
+	
+	/**
+	 * Returns the queue of key presses waiting to be applied, which measures how long they wait
+	 * 
+	 * @return the input queue
+	 */
+	public InputQueue getInput() {
+		return input;
+	}
+	
+	/**
+	 * Returns the loop that runs the game, which measures how steadily it ticks
+	 * 
+	 * @return the game loop
+	 */
+	public GameLoop getLoop() {
+		return loop;
 	}
 	
 	/**
@@ -71,10 +165,12 @@ public class Controller {
 	}
 	
 	/**
-	 * Sets the state to transitioning between levels
+	 * Sets the state to transitioning between levels, and starts timing the transition for the flight recorder
 	 */
 	public void goToNextLevel() {
 		state = TRANSITION_STATE;
+		transition = new LevelTransitionEvent();
+		transition.begin();
 	}
 	
 	/**
@@ -90,60 +186,197 @@ public class Controller {
 	public void endMenu() {
 		state = END_MENU;
 	}
-
+	
+	/**
+	 * This class listens for changes in the outcome of the game and shows the matching screen
+	 */
+	private class CustomGameListener implements GameListener {
+		@Override
+		public void levelStarted() {
+			showLevel();
+		}
+		@Override
+		public void levelComplete() {
+			goToNextLevel();
+		}
+		@Override
+		public void gameOver() {
+			Controller.this.gameOver();
+		}
+		@Override
+		public void gameComplete() {
+			endMenu();
+		}
+	}
+	
 	/**
-	 * This class listens for the user's key presses
+	 * This class listens for the user's key presses and queues them for the game loop
 	 */
 	private class CustomKeyListener implements KeyListener {
-		long prevTime = System.currentTimeMillis();
 		@Override
 		public void keyPressed(KeyEvent e) {
-			// Key presses that occur during the input cooldown window are ignored
-			if(System.currentTimeMillis() - prevTime < INPUT_COOLDOWN) {
+			if(e.getKeyCode() == KeyEvent.VK_F3) {
+				view.toggleMetrics(); // Only changes what the view shows, so the game loop doesn't need to know
 				return;
-			} else {
-				prevTime = System.currentTimeMillis();
 			}
-			
-			if(state == START_MENU) {
-				state = PLAYING;
-			} else if(e.getKeyCode() == KeyEvent.VK_UP) {
-				model.playerMove(-1, 0);
-				view.updateBoard();
-			} else if(e.getKeyCode() == KeyEvent.VK_DOWN) {
-				model.playerMove(1, 0);
-				view.updateBoard();
-			} else if(e.getKeyCode() == KeyEvent.VK_LEFT) {
-				model.playerMove(0, -1);
-				view.updateBoard();	
-			} else if(e.getKeyCode() == KeyEvent.VK_RIGHT) {
-				model.playerMove(0, 1);
-				view.updateBoard();
-			} else if(e.getKeyCode() == KeyEvent.VK_SPACE && state == TRANSITION_STATE) {
-				model.nextLevel();
-			} else if(state == GAME_OVER || state == END_MENU) {
-				view.getWindow().setVisible(false);
-				view.getWindow().dispose();
+			// Count the time the event spent waiting to be dispatched as part of its latency
+			long waited = Math.max(0, System.currentTimeMillis() - e.getWhen());
+			if(input.keyPressed(e.getKeyCode(), System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(waited))) {
+				loop.wake();
 			}
 		}
 		@Override
-		public void keyReleased(KeyEvent e) {}
+		public void keyReleased(KeyEvent e) {
+			input.keyReleased(e.getKeyCode());
+		}
 		@Override
 		public void keyTyped(KeyEvent e) {}
 	}
 	
 	/**
-	 * Starts a timer that calls a set of regularly-repeated game functions
+	 * Carries out a key press on the game loop's thread
+	 * 
+	 * @param keyCode the key that was pressed
+	 */
+	private void keyCommand(int keyCode) {
+		++numInputs;
+		hintCell = NO_HINT;
+
+		if(state == START_MENU) {
+			state = PLAYING;
+		} else if(keyCode == KeyEvent.VK_R && (state == PLAYING || state == GAME_OVER)) {
+			recording.restartLevel(model);
+			jumpPlayer();
+		} else if(keyCode == KeyEvent.VK_BACK_SPACE && (state == PLAYING || state == GAME_OVER)) {
+			recording.rewind(model, REWIND_TICKS);
+			jumpPlayer();
+		} else if(keyCode == KeyEvent.VK_H && state == PLAYING) {
+			requestHint();
+		} else if(keyCode == KeyEvent.VK_UP) {
+			move(Model.UP);
+		} else if(keyCode == KeyEvent.VK_DOWN) {
+			move(Model.DOWN);
+		} else if(keyCode == KeyEvent.VK_LEFT) {
+			move(Model.LEFT);
+		} else if(keyCode == KeyEvent.VK_RIGHT) {
+			move(Model.RIGHT);
+		} else if(keyCode == KeyEvent.VK_SPACE && state == TRANSITION_STATE) {
+			int fromLevel = model.getLevel();
+			long start = System.nanoTime();
+			recording.nextLevel(model);
+			jumpPlayer();
+			if(transition != null) {
+				transition.commit(fromLevel, model.getLevel(), model.getNumTicks(), System.nanoTime() - start);
+				transition = null;
+			}
+		} else if(state == GAME_OVER || state == END_MENU) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					view.getWindow().setVisible(false);
+					view.getWindow().dispose();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Moves the player, noting where from so the view can animate the move
+	 * 
+	 * @param input the player input, one of UP, DOWN, LEFT or RIGHT
+	 */
+	private void move(int input) {
+		int row = model.getPlayerRow(), col = model.getPlayerCol();
+		recording.move(model, input);
+		if(model.getPlayerRow() != row || model.getPlayerCol() != col) {
+			movedFromRow = row;
+			movedFromCol = col;
+			moveTime = System.nanoTime();
+		}
+	}
+	
+	/**
+	 * Notes that the player was put somewhere new without moving, such as by a restart, so there's nothing to animate
+	 */
+	private void jumpPlayer() {
+		movedFromRow = model.getPlayerRow();
+		movedFromCol = model.getPlayerCol();
+	}
+	
+	/**
+	 * Publishes a snapshot of the game as it is now for the view to draw
+	 */
+	private void publish() {
+		snapshot.set(new Snapshot(model.getBoard().copy(), state, model.getLevel(), model.getNumTicks(), hintCell,
+				tickTime, model.getPlayerRow(), model.getPlayerCol(), movedFromRow, movedFromCol, moveTime));
+	}
+	
+	/**
+	 * Starts searching for a hint in the background. The hint is shown once the search finishes, unless the player
+	 * has pressed another key or left the level by then.
+	 */
+	private void requestHint() {
+		final int inputs = numInputs;
+		hints.requestHint(model, new HintListener() {
+			@Override
+			public void hintFound(final int input) {
+				loop.post(new Runnable() {
+					@Override
+					public void run() {
+						if(numInputs == inputs && state == PLAYING && model.getState() == Model.PLAYING) {
+							int row = model.getPlayerRow(), col = model.getPlayerCol();
+							if(input == Model.UP) {
+								--row;
+							} else if(input == Model.DOWN) {
+								++row;
+							} else if(input == Model.LEFT) {
+								--col;
+							} else if(input == Model.RIGHT) {
+								++col;
+							}
+							hintCell = row * model.getBoard().getWidth() + col;
+							publish();
+						}
+					}
+				});
+			}
+			
+			@Override
+			public void hintFailed(Throwable cause) {
+				cause.printStackTrace(); // The game carries on without a hint
+			}
+		});
+	}
+	
+	/**
+	 * Stops the game loop and saves the session's recording to build/recordings, so that it can be replayed with
+	 * ReplayDriver. Recordings worth keeping as regression tests are copied to recordings/ by hand, since the build
+	 * replays everything there. How long key presses took to be applied is printed as well.
 	 */
-	private void startTimer() {
-		timer = new Timer(DELAY, new ActionListener() {
+	private void stop() {
+		loop.stop(new Runnable() {
 			@Override
-			public void actionPerformed(ActionEvent e) {
-				model.gravity();
-				model.enemyMove();
-				view.updateBoard();
+			public void run() {
+				if(recording == null) {
+					return;
+				}
+				File folder = new File(RECORDINGS_FOLDER);
+				File file = new File(folder,
+						"session-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".rec");
+				try {
+					folder.mkdirs();
+					recording.write(file);
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+				recording = null;
+				if(Metrics.isEnabled()) {
+					System.out.printf("Input latency: %d presses, mean %.1f ms, 99th percentile %d ms, max %.1f ms, "
+							+ "%d coalesced, %d dropped%n", input.getNumApplied(), input.getMeanLatency() / 1e6,
+							input.getLatencyPercentile(0.99), input.getMaxLatency() / 1e6, input.getNumCoalesced(),
+							input.getNumDropped());
+				}
 			}
 		});
-		timer.start();
 	}
 }
\ No newline at end of file
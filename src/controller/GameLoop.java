@@ -0,0 +1,185 @@
+package controller;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import metrics.Metrics;
+
+/**
+ * This class runs the game on its own thread, ticking it at a fixed rate that doesn't depend on how busy the event
+ * dispatch thread is. Ticks are scheduled on a fixed grid of deadlines, so lateness never builds up from one tick to
+ * the next. A tick that is more than a whole period late is skipped and counted as a missed deadline, rather than run
+ * in a burst to catch up. Between ticks the thread applies the player's key presses from an input queue and runs
+ * the commands posted to it, so only this thread ever touches the model.
+ * 
+ * Key presses are applied as soon as they arrive, but no closer together than the input queue's spacing. A press
+ * that is due when a deadline comes is applied before that tick, so a press always sees the board as the last tick
+ * left it.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class GameLoop implements Runnable {
+
+	private final long period; // Nanoseconds between ticks
+	private final Runnable tick;
+	private final InputQueue input;
+	private final InputHandler handler;
+	private final ConcurrentLinkedQueue<Runnable> commands;
+	private final Thread thread;
+	private volatile boolean running;
+
+	// Timing measurements, written only by the loop's thread
+	private volatile long numTicks;
+	private volatile long missedDeadlines;
+	private volatile long totalJitter; // Nanoseconds each tick started after its deadline, summed
+	private volatile long maxJitter;
+
+	/**
+	 * Constructor that creates a loop, which doesn't run until started
+	 * 
+	 * @param periodMillis the time between ticks, in milliseconds
+	 * 
+	 * @param tick what to do on each tick
+	 * 
+	 * @param input the queue of key presses to apply
+	 * 
+	 * @param handler what applies each key press
+	 */
+	public GameLoop(int periodMillis, Runnable tick, InputQueue input, InputHandler handler) {
+		period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+		this.tick = tick;
+		this.input = input;
+		this.handler = handler;
+		commands = new ConcurrentLinkedQueue<Runnable>();
+		thread = new Thread(this, "Game loop");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts ticking on the loop's own thread
+	 */
+	public void start() {
+		running = true;
+		thread.start();
+	}
+
+	/**
+	 * Runs a command on the loop's thread as soon as it's between ticks
+	 * 
+	 * @param command the command to run
+	 */
+	public void post(Runnable command) {
+		commands.add(command);
+		wake();
+	}
+
+	/**
+	 * Wakes the loop if it is waiting for its next deadline, such as after a key press has been queued
+	 */
+	public void wake() {
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Stops the loop after running the given command, and waits a short while for it to finish
+	 * 
+	 * @param last the last command to run, or null
+	 */
+	public void stop(final Runnable last) {
+		post(new Runnable() {
+			@Override
+			public void run() {
+				if(last != null) {
+					last.run();
+				}
+				running = false;
+			}
+		});
+		try {
+			thread.join(1000);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Ticks the game at each deadline and runs posted commands in between
+	 */
+	@Override
+	public void run() {
+		long deadline = System.nanoTime() + period;
+		long nextInput = deadline - period; // Earliest time the next key press can be applied
+		while(running) {
+			long now = System.nanoTime();
+			if(now - nextInput >= 0 && !input.isEmpty()) {
+				handler.handleInput(input.take());
+				input.applied(System.nanoTime());
+				nextInput = now + input.getSpacing();
+			} else if(now - deadline >= 0) {
+				long late = now - deadline;
+				if(late >= period) {
+					// Skip the ticks there was no time for, staying on the same grid of deadlines
+					missedDeadlines += late / period;
+					deadline += late / period * period;
+					late %= period;
+				}
+				totalJitter += late;
+				maxJitter = Math.max(maxJitter, late);
+				Metrics.TICK_LATENESS.record(late);
+				++numTicks;
+				tick.run();
+				deadline += period;
+			} else {
+				Runnable command = commands.poll();
+				if(command != null) {
+					command.run();
+				} else if(!input.isEmpty() && nextInput - deadline < 0) {
+					LockSupport.parkNanos(this, nextInput - now);
+				} else {
+					LockSupport.parkNanos(this, deadline - now);
+				}
+			}
+			if(Thread.interrupted()) {
+				running = false;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of ticks run so far
+	 * 
+	 * @return the number of ticks
+	 */
+	public long getNumTicks() {
+		return numTicks;
+	}
+
+	/**
+	 * Returns the number of ticks skipped because the loop fell a whole period or more behind
+	 * 
+	 * @return the number of missed deadlines
+	 */
+	public long getMissedDeadlines() {
+		return missedDeadlines;
+	}
+
+	/**
+	 * Returns how late ticks have started after their deadlines on average
+	 * 
+	 * @return the mean jitter, in nanoseconds
+	 */
+	public long getMeanJitter() {
+		long ticks = numTicks;
+		return ticks == 0 ? 0 : totalJitter / ticks;
+	}
+
+	/**
+	 * Returns the latest any tick has started after its deadline
+	 * 
+	 * @return the largest jitter, in nanoseconds
+	 */
+	public long getMaxJitter() {
+		return maxJitter;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package controller;
+
+/**
+ * This interface applies the player's key presses to the game. It is called on the game loop's thread, in between
+ * ticks.
+ * 
+ * @author Jeffrey Sun
+ */
+public interface InputHandler {
+
+	/**
+	 * Called with the next key press taken from the input queue
+	 * 
+	 * @param keyCode the key that was pressed
+	 */
+	void handleInput(int keyCode);
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+package controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class buffers the player's key presses between the event dispatch thread, which offers them, and the game
+ * loop, which applies them. It is a bounded ring buffer that one thread offers to and one thread takes from, so it
+ * needs no locks. Presses are applied no closer together than a minimum spacing, so a fast player's presses wait
+ * their turn instead of being dropped; a press is only dropped when the queue is full.
+ * 
+ * Holding a key down makes the system repeat it. Repeats can be ignored, queued like any other press, or coalesced so
+ * that at most one repeat of a key is waiting at a time, which keeps a held key from building up a backlog of moves.
+ * 
+ * The time from each key event to the game loop applying it is measured, along with how many presses were dropped or
+ * coalesced away.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class InputQueue {
+
+	// Ways of handling a key the system repeats because it is held down
+	public static final int REPEAT_IGNORE = 0; // Only the first press counts
+	public static final int REPEAT_ALL = 1; // Every repeat is queued
+	public static final int REPEAT_COALESCE = 2; // A repeat is dropped if the same key is already the last one waiting
+
+	public static final int NO_INPUT = -1;
+
+	private static final int MAX_KEY_CODE = 1024; // Key codes above this aren't tracked as held
+	private static final int LATENCY_BUCKETS = 256; // Latencies are counted in one millisecond buckets up to this
+
+	private final int[] keys;
+	private final long[] eventTimes; // System.nanoTime() of each key event
+	private final int mask;
+	private final AtomicLong head; // Next slot to take, only advanced by the taking thread
+	private final AtomicLong tail; // Next slot to fill, only advanced by the offering thread
+	private final int repeatMode;
+	private final long spacing;
+
+	private final boolean[] isHeld; // Keys currently held down, only used by the offering thread
+	private long lastEventTime; // Event time of the last key taken
+
+	// Measurements, written only by one thread each
+	private volatile long numDropped;
+	private volatile long numCoalesced;
+	private volatile long numApplied;
+	private volatile long totalLatency;
+	private volatile long maxLatency;
+	private final AtomicIntegerArray latencies;
+
+	/**
+	 * Constructor that creates an empty queue
+	 * 
+	 * @param capacity the number of presses that can wait at once, rounded up to a power of two
+	 * 
+	 * @param repeatMode how repeats of a held key are handled, one of REPEAT_IGNORE, REPEAT_ALL or REPEAT_COALESCE
+	 * 
+	 * @param spacingMillis the least time between two presses being applied, in milliseconds
+	 */
+	public InputQueue(int capacity, int repeatMode, int spacingMillis) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		keys = new int[size];
+		eventTimes = new long[size];
+		mask = size - 1;
+		head = new AtomicLong();
+		tail = new AtomicLong();
+		this.repeatMode = repeatMode;
+		spacing = TimeUnit.MILLISECONDS.toNanos(spacingMillis);
+		isHeld = new boolean[MAX_KEY_CODE];
+		latencies = new AtomicIntegerArray(LATENCY_BUCKETS + 1);
+	}
+
+	/**
+	 * Offers a key press to the queue. This must only be called from one thread, normally the event dispatch thread.
+	 * 
+	 * @param keyCode the key that was pressed
+	 * 
+	 * @param eventTime the System.nanoTime() at which the key was pressed
+	 * 
+	 * @return whether the press was queued, or false if it was a repeat that was left out or the queue was full
+	 */
+	public boolean keyPressed(int keyCode, long eventTime) {
+		boolean isRepeat = keyCode >= 0 && keyCode < MAX_KEY_CODE && isHeld[keyCode];
+		if(keyCode >= 0 && keyCode < MAX_KEY_CODE) {
+			isHeld[keyCode] = true;
+		}
+
+		long t = tail.get();
+		if(isRepeat) {
+			if(repeatMode == REPEAT_IGNORE) {
+				++numCoalesced;
+				return false;
+			} else if(repeatMode == REPEAT_COALESCE && t != head.get() && keys[(int) (t - 1) & mask] == keyCode) {
+				// If the key was taken in the meantime, the worst case is one repeat fewer while the key is held
+				++numCoalesced;
+				return false;
+			}
+		}
+		if(t - head.get() == keys.length) {
+			++numDropped;
+			return false;
+		}
+		keys[(int) t & mask] = keyCode;
+		eventTimes[(int) t & mask] = eventTime;
+		tail.lazySet(t + 1); // Publishes the slot written above
+		return true;
+	}
+
+	/**
+	 * Notes that a key has been let go, so that the next press of it isn't taken for a repeat. This must be called
+	 * from the same thread as keyPressed.
+	 * 
+	 * @param keyCode the key that was released
+	 */
+	public void keyReleased(int keyCode) {
+		if(keyCode >= 0 && keyCode < MAX_KEY_CODE) {
+			isHeld[keyCode] = false;
+		}
+	}
+
+	/**
+	 * Returns whether a press is waiting to be taken
+	 * 
+	 * @return whether the queue has a press in it
+	 */
+	public boolean isEmpty() {
+		return head.get() == tail.get();
+	}
+
+	/**
+	 * Takes the oldest waiting press. This must only be called from one thread, normally the game loop's.
+	 * 
+	 * @return the key code of the press, or NO_INPUT if the queue is empty
+	 */
+	public int take() {
+		long h = head.get();
+		if(h == tail.get()) {
+			return NO_INPUT;
+		}
+		int keyCode = keys[(int) h & mask];
+		lastEventTime = eventTimes[(int) h & mask];
+		head.lazySet(h + 1); // Hands the slot back to the offering thread
+		return keyCode;
+	}
+
+	/**
+	 * Returns when the key event of the press last taken happened. This must only be called from the thread that
+	 * takes presses.
+	 * 
+	 * @return the System.nanoTime() of the key event, moved back by the time it waited to be dispatched
+	 */
+	public long getLastEventTime() {
+		return lastEventTime;
+	}
+
+	/**
+	 * Records that the press last taken has been applied to the game, measuring how long it took from the key event
+	 * 
+	 * @param time the System.nanoTime() at which the press was applied
+	 */
+	public void applied(long time) {
+		long latency = Math.max(0, time - lastEventTime);
+		totalLatency += latency;
+		maxLatency = Math.max(maxLatency, latency);
+		latencies.incrementAndGet((int) Math.min(TimeUnit.NANOSECONDS.toMillis(latency), LATENCY_BUCKETS));
+		++numApplied;
+	}
+
+	/**
+	 * Returns the least time between two presses being applied
+	 * 
+	 * @return the spacing, in nanoseconds
+	 */
+	public long getSpacing() {
+		return spacing;
+	}
+
+	/**
+	 * Returns the number of presses dropped because the queue was full
+	 * 
+	 * @return the number of dropped presses
+	 */
+	public long getNumDropped() {
+		return numDropped;
+	}
+
+	/**
+	 * Returns the number of repeats of a held key that were left out of the queue
+	 * 
+	 * @return the number of coalesced repeats
+	 */
+	public long getNumCoalesced() {
+		return numCoalesced;
+	}
+
+	/**
+	 * Returns the number of presses applied to the game
+	 * 
+	 * @return the number of applied presses
+	 */
+	public long getNumApplied() {
+		return numApplied;
+	}
+
+	/**
+	 * Returns the average time from a key event to the press being applied
+	 * 
+	 * @return the mean latency, in nanoseconds
+	 */
+	public long getMeanLatency() {
+		long applied = numApplied;
+		return applied == 0 ? 0 : totalLatency / applied;
+	}
+
+	/**
+	 * Returns the longest time from a key event to the press being applied
+	 * 
+	 * @return the largest latency, in nanoseconds
+	 */
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	/**
+	 * Returns the latency that the given fraction of applied presses were no slower than, rounded down to the
+	 * millisecond
+	 * 
+	 * @param fraction the fraction of presses, such as 0.99
+	 * 
+	 * @return the latency, in milliseconds, or LATENCY_BUCKETS if it is that long or longer
+	 */
+	public int getLatencyPercentile(double fraction) {
+		long target = (long) Math.ceil(numApplied * fraction);
+		long count = 0;
+		for(int millis = 0; millis != LATENCY_BUCKETS; ++millis) {
+			count += latencies.get(millis);
+			if(count >= target) {
+				return millis;
+			}
+		}
+		return LATENCY_BUCKETS;
+	}
+}
\ No newline at end of file
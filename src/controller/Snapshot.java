@@ -0,0 +1,163 @@
+package controller;
+
+import model.Board;
+
+/**
+ * This class is an unchanging picture of the game that the game loop hands to the view after every change. The view
+ * only ever draws snapshots, so it never reads the board while the game loop is changing it. Each snapshot also
+ * records when things last moved, so that the view can animate them between ticks.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Snapshot {
+
+	private final Board board;
+	private final int screen;
+	private final int level;
+	private final long tick;
+	private final int hintCell;
+	private final long tickTime;
+	private final int playerRow, playerCol;
+	private final int movedFromRow, movedFromCol;
+	private final long moveTime;
+
+	/**
+	 * Constructor that creates a snapshot
+	 * 
+	 * @param board a copy of the board, which nothing else changes
+	 * 
+	 * @param screen the screen being shown, such as Controller.PLAYING
+	 * 
+	 * @param level the level being played, starting from 0
+	 * 
+	 * @param tick the number of ticks run since the game started
+	 * 
+	 * @param hintCell the cell the hint points at, or Controller.NO_HINT
+	 * 
+	 * @param tickTime the System.nanoTime() of the last tick
+	 * 
+	 * @param playerRow the player's row
+	 * 
+	 * @param playerCol the player's column
+	 * 
+	 * @param movedFromRow the row the player last moved from
+	 * 
+	 * @param movedFromCol the column the player last moved from
+	 * 
+	 * @param moveTime the System.nanoTime() of the player's last move
+	 */
+	Snapshot(Board board, int screen, int level, long tick, int hintCell, long tickTime, int playerRow, int playerCol,
+			int movedFromRow, int movedFromCol, long moveTime) {
+		this.board = board;
+		this.screen = screen;
+		this.level = level;
+		this.tick = tick;
+		this.hintCell = hintCell;
+		this.tickTime = tickTime;
+		this.playerRow = playerRow;
+		this.playerCol = playerCol;
+		this.movedFromRow = movedFromRow;
+		this.movedFromCol = movedFromCol;
+		this.moveTime = moveTime;
+	}
+
+	/**
+	 * Returns the board as it was when the snapshot was taken
+	 * 
+	 * @return the board, which must not be changed
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Returns the screen being shown
+	 * 
+	 * @return one of Controller.START_MENU, PLAYING, TRANSITION_STATE, GAME_OVER or END_MENU
+	 */
+	public int getScreen() {
+		return screen;
+	}
+
+	/**
+	 * Returns the level being played
+	 * 
+	 * @return the level, starting from 0
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns the number of ticks run since the game started
+	 * 
+	 * @return the number of ticks
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Returns the cell the hint points at, which is the tile the player should move into or the player's own tile if
+	 * the player should wait
+	 * 
+	 * @return the index of the hinted cell, or Controller.NO_HINT if there is no hint showing
+	 */
+	public int getHintCell() {
+		return hintCell;
+	}
+
+	/**
+	 * Returns when the game last ticked. Objects that are falling moved down one tile at this time.
+	 * 
+	 * @return the System.nanoTime() of the last tick
+	 */
+	public long getTickTime() {
+		return tickTime;
+	}
+
+	/**
+	 * Returns the row the player is on
+	 * 
+	 * @return the player's row
+	 */
+	public int getPlayerRow() {
+		return playerRow;
+	}
+
+	/**
+	 * Returns the column the player is on
+	 * 
+	 * @return the player's column
+	 */
+	public int getPlayerCol() {
+		return playerCol;
+	}
+
+	/**
+	 * Returns the row the player was on before the last move
+	 * 
+	 * @return the player's previous row
+	 */
+	public int getMovedFromRow() {
+		return movedFromRow;
+	}
+
+	/**
+	 * Returns the column the player was on before the last move
+	 * 
+	 * @return the player's previous column
+	 */
+	public int getMovedFromCol() {
+		return movedFromCol;
+	}
+
+	/**
+	 * Returns when the player last moved
+	 * 
+	 * @return the System.nanoTime() of the player's last move
+	 */
+	public long getMoveTime() {
+		return moveTime;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,881 @@
+package env;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import model.LevelPack;
+import model.Model;
+import model.TileRules;
+
+/**
+ * This class steps a large batch of boards at once, such as for training players by reinforcement learning. Rather
+ * than keeping a model for every board, the state of every board lives in one contiguous buffer off the heap, in a
+ * slot of the same size for each board. A slot starts with the board's cells at one byte per cell, as Board stores
+ * them, followed by the player's cell, the number of orbs left and the cells of the board's objects and enemies in
+ * the order they're updated in, so a batch of a hundred thousand small boards takes a few tens of megabytes.
+ * 
+ * Each step splits the batch into runs of boards that are stepped in parallel. A worker thread applies the player's
+ * move, gravity and the enemies' moves to each board of its run in place, reading and writing the board's slot
+ * directly, by the same rules and in the same order as Model.step(), so every board plays out exactly as it would in
+ * a model of its own. Objects that can't fall are checked again every tick rather than put to sleep, and the enemies'
+ * walking distances to the player are worked out again whenever there are enemies to move, since the boards are small.
+ * A board whose level ended in the step, whether completed or lost, is started again from its level's starting layout
+ * before the step returns, so the cells and legal actions of every board are always the ones the next action applies
+ * to.
+ * 
+ * The rewards, ends and legal actions of the last step are kept in arrays that each step overwrites, so stepping
+ * doesn't allocate memory for them. Only one thread may step the environment at a time.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class BatchedEnvironment {
+
+	public static final int NUM_ACTIONS = 5; // Model.WAIT, UP, DOWN, LEFT and RIGHT
+	public static final float ORB_REWARD = 1; // For each orb that reaches the portal
+	public static final float LEVEL_COMPLETE_REWARD = 10;
+	public static final float GAME_OVER_REWARD = -10;
+
+	private static final int BOARDS_PER_TASK = 256; // Boards stepped by each task, in a run
+	private static final int FALLING = 0x80; // Bit of a cell that's set while the object in it is falling
+	private static final int TYPE_MASK = 0x7F;
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+	private static final int MAX_DISTANCE = 256; // Longest path an enemy follows, as in the model's flow field
+
+	// Offsets of a board's state after its cells, in bytes
+	private static final int PLAYER = 0; // Cell of the player
+	private static final int ORBS_LEFT = 4;
+	private static final int NUM_OBJECTS = 8; // Including the slots of objects destroyed since the last tick
+	private static final int NUM_ENEMIES = 12;
+	private static final int OBJECTS = 16; // Cell of each object, or -1 once destroyed, followed by each enemy
+
+	private final LevelPack levels;
+	private final int numBoards;
+	private final int[] boardLevels; // Level of each board
+	private final int[] widths; // Width of each level
+	private final int[] numCells; // Number of cells in each level
+	private final byte[][] startSlots; // Slot of each level at its start, or null for levels no board plays
+	private final int cellsSize; // Bytes of each slot's cells, with room for the largest level
+	private final int enemies; // Offset of the enemies after the cells
+	private final int stride; // Bytes from one board's slot to the next board's
+	private final ByteBuffer slots;
+
+	// Per-board results of the last step
+	private final float[] rewards;
+	private final boolean[] done;
+	private final boolean[] legalActions; // NUM_ACTIONS for each board
+
+	private final ExecutorService threads;
+	private final List<Callable<Void>> tasks;
+	private final ThreadLocal<Worker> workers;
+	private int[] actions; // Actions of the step being run
+
+	/**
+	 * Constructor that creates a batch of boards, each at the start of its level
+	 * 
+	 * @param levels the levels the boards play
+	 * 
+	 * @param boardLevels the level of each board, starting from 0
+	 * 
+	 * @param numThreads the number of threads to step boards on
+	 */
+	public BatchedEnvironment(LevelPack levels, int[] boardLevels, int numThreads) {
+		this.levels = levels;
+		this.boardLevels = boardLevels.clone();
+		numBoards = boardLevels.length;
+
+		// Every slot is as large as the largest level in the batch needs
+		Model model = new Model(levels);
+		widths = new int[levels.size()];
+		numCells = new int[levels.size()];
+		int largestCells = 0, mostObjects = 0, mostEnemies = 0;
+		for(int level : boardLevels) {
+			if(numCells[level] == 0) {
+				model.goToLevel(level);
+				widths[level] = model.getBoard().getWidth();
+				numCells[level] = model.getBoard().getWidth() * model.getBoard().getHeight();
+				largestCells = Math.max(largestCells, numCells[level]);
+				mostObjects = Math.max(mostObjects, model.getNumObjects());
+				mostEnemies = Math.max(mostEnemies, model.getNumEnemies());
+			}
+		}
+		cellsSize = (largestCells + 3) & ~3; // So the state after the cells is aligned
+		enemies = OBJECTS + 4 * mostObjects;
+		stride = cellsSize + enemies + 4 * mostEnemies;
+		if((long) stride * numBoards > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(numBoards + " boards of " + stride + " bytes don't fit in a buffer");
+		}
+		slots = ByteBuffer.allocateDirect(stride * numBoards).order(ByteOrder.nativeOrder());
+
+		// Lay out each level's starting slot once, to copy into a board's slot whenever it starts again
+		startSlots = new byte[levels.size()][];
+		for(int level = 0; level != levels.size(); ++level) {
+			if(numCells[level] != 0) {
+				model.goToLevel(level);
+				ByteBuffer start = ByteBuffer.allocate(stride).order(ByteOrder.nativeOrder());
+				start.put(model.saveState(), 0, numCells[level]);
+				start.putInt(cellsSize + PLAYER, model.getPlayerRow() * widths[level] + model.getPlayerCol());
+				start.putInt(cellsSize + ORBS_LEFT, model.getOrbsLeft());
+				start.putInt(cellsSize + NUM_OBJECTS, model.getNumObjects());
+				start.putInt(cellsSize + NUM_ENEMIES, model.getNumEnemies());
+				for(int i = 0; i != model.getNumObjects(); ++i) {
+					start.putInt(cellsSize + OBJECTS + 4 * i, model.getObject(i));
+				}
+				for(int i = 0; i != model.getNumEnemies(); ++i) {
+					start.putInt(cellsSize + enemies + 4 * i, model.getEnemy(i));
+				}
+				startSlots[level] = start.array();
+			}
+		}
+
+		rewards = new float[numBoards];
+		done = new boolean[numBoards];
+		legalActions = new boolean[numBoards * NUM_ACTIONS];
+
+		threads = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Batched environment");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		final int workerCells = largestCells;
+		workers = new ThreadLocal<Worker>() {
+			@Override
+			protected Worker initialValue() {
+				return new Worker(workerCells);
+			}
+		};
+		tasks = new ArrayList<Callable<Void>>();
+		for(int start = 0; start < numBoards; start += BOARDS_PER_TASK) {
+			final int from = start, to = Math.min(start + BOARDS_PER_TASK, numBoards);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					Worker worker = workers.get();
+					for(int board = from; board != to; ++board) {
+						worker.step(board, actions[board]);
+					}
+					return null;
+				}
+			});
+		}
+
+		Worker worker = workers.get();
+		for(int board = 0; board != numBoards; ++board) {
+			worker.restart(board);
+		}
+	}
+
+	/**
+	 * Applies one action to every board and advances each of them by one tick, as Model.step() does, then starts
+	 * again any board whose level ended
+	 * 
+	 * @param actions the action for each board, one of Model.WAIT, UP, DOWN, LEFT or RIGHT
+	 * 
+	 * @throws InterruptedException if the thread is interrupted while waiting for the boards to be stepped
+	 */
+	public void stepAll(int[] actions) throws InterruptedException {
+		if(actions.length != numBoards) {
+			throw new IllegalArgumentException(actions.length + " actions for " + numBoards + " boards");
+		}
+		this.actions = actions;
+		try {
+			for(Future<Void> result : threads.invokeAll(tasks)) {
+				result.get();
+			}
+		} catch(ExecutionException e) {
+			throw new IllegalStateException("Stepping a board failed", e.getCause());
+		} finally {
+			this.actions = null;
+		}
+	}
+
+	/**
+	 * Starts the given board again from the start of its level
+	 * 
+	 * @param board the number of the board
+	 */
+	public void reset(int board) {
+		workers.get().restart(board);
+	}
+
+	/**
+	 * Stops the environment's threads. The environment can't be stepped afterwards.
+	 */
+	public void close() {
+		threads.shutdownNow();
+	}
+
+	/**
+	 * Returns the number of boards in the batch
+	 * 
+	 * @return the number of boards
+	 */
+	public int getNumBoards() {
+		return numBoards;
+	}
+
+	/**
+	 * Returns the level the given board plays
+	 * 
+	 * @param board the number of the board
+	 * 
+	 * @return the level, starting from 0
+	 */
+	public int getLevel(int board) {
+		return boardLevels[board];
+	}
+
+	/**
+	 * Returns the number of columns on the given board
+	 * 
+	 * @param board the number of the board
+	 * 
+	 * @return the board's width
+	 */
+	public int getWidth(int board) {
+		return widths[boardLevels[board]];
+	}
+
+	/**
+	 * Returns the number of rows on the given board
+	 * 
+	 * @param board the number of the board
+	 * 
+	 * @return the board's height
+	 */
+	public int getHeight(int board) {
+		return numCells[boardLevels[board]] / widths[boardLevels[board]];
+	}
+
+	/**
+	 * Returns the cells of every board, which can be read without copying them. Board i's cells start at i times
+	 * getCellStride(), row by row, and are followed by the rest of the board's state. The low seven bits of each cell
+	 * are the type of its tile, such as Model.ORB, and the high bit is set while the object in it is falling.
+	 * 
+	 * @return a read-only view of the cells, which changes as the boards are stepped
+	 */
+	public ByteBuffer getCells() {
+		return slots.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the number of bytes from the start of one board's cells to the start of the next board's
+	 * 
+	 * @return the size of each board's slot
+	 */
+	public int getCellStride() {
+		return stride;
+	}
+
+	/**
+	 * Returns the row the player is on in the given board
+	 * 
+	 * @param board the number of the board
+	 * 
+	 * @return the player's row
+	 */
+	public int getPlayerRow(int board) {
+		return slots.getInt(board * stride + cellsSize + PLAYER) / getWidth(board);
+	}
+
+	/**
+	 * Returns the column the player is on in the given board
+	 * 
+	 * @param board the number of the board
+	 * 
+	 * @return the player's column
+	 */
+	public int getPlayerCol(int board) {
+		return slots.getInt(board * stride + cellsSize + PLAYER) % getWidth(board);
+	}
+
+	/**
+	 * Returns the number of orbs that still have to reach the portal on the given board
+	 * 
+	 * @param board the number of the board
+	 * 
+	 * @return the number of orbs left
+	 */
+	public int getOrbsLeft(int board) {
+		return slots.getInt(board * stride + cellsSize + ORBS_LEFT);
+	}
+
+	/**
+	 * Returns the reward each board earned in the last step: ORB_REWARD for each orb that reached the portal, plus
+	 * LEVEL_COMPLETE_REWARD if the level was completed or GAME_OVER_REWARD if the player was exploded
+	 * 
+	 * @return the reward of each board, which the next step overwrites
+	 */
+	public float[] getRewards() {
+		return rewards;
+	}
+
+	/**
+	 * Returns whether each board's level ended in the last step, after which the board was started again
+	 * 
+	 * @return whether each board's level ended, which the next step overwrites
+	 */
+	public boolean[] getDone() {
+		return done;
+	}
+
+	/**
+	 * Returns which actions would do anything on each board, as Model.canMove() decides. Board i's actions are at i
+	 * times NUM_ACTIONS, in the order Model.WAIT, UP, DOWN, LEFT and RIGHT.
+	 * 
+	 * @return whether each action of each board would do anything, which the next step overwrites
+	 */
+	public boolean[] getLegalActions() {
+		return legalActions;
+	}
+
+	/**
+	 * This class steps boards on one thread, applying the game's rules to one board's slot at a time
+	 */
+	private class Worker {
+		private final ByteBuffer slot; // View of the slots for the worker's own use
+		private final int[] centers; // Explosions still being worked through, innermost last
+		private final int[] nextTiles; // Position of the next tile each explosion will destroy, from 0 to 8
+		private final int[] destroyed; // Cells destroyed by the current explosion, in order
+		private final int[] destroyedBy; // Number of the explosion that last destroyed each cell
+		private final int[] distances; // Walking distance of each cell from the player
+		private final int[] measuredBy; // Number of the search that last set each cell's distance
+		private final int[] queue; // Cells whose distances are being spread to their neighbours
+		private int explosion; // Number of the current explosion
+		private int search; // Number of the current search for the enemies' paths
+
+		// The board being stepped
+		private int base; // Offset of the board's slot
+		private int width;
+		private int size; // Number of cells
+		private int state; // Model.PLAYING, LEVEL_COMPLETE or GAME_OVER
+
+		/**
+		 * Constructor that creates a worker for boards of up to the given number of cells
+		 * 
+		 * @param numCells the number of cells on the largest board
+		 */
+		Worker(int numCells) {
+			slot = slots.duplicate().order(ByteOrder.nativeOrder());
+			centers = new int[numCells + 1];
+			nextTiles = new int[numCells + 1];
+			destroyed = new int[numCells];
+			destroyedBy = new int[numCells];
+			distances = new int[numCells];
+			measuredBy = new int[numCells];
+			queue = new int[numCells];
+		}
+
+		/**
+		 * Steps a board and records what came of it, starting the board again if its level ended
+		 * 
+		 * @param board the number of the board
+		 * 
+		 * @param action the action to apply
+		 */
+		void step(int board, int action) {
+			select(board);
+			int orbs = slot.getInt(base + cellsSize + ORBS_LEFT);
+			state = Model.PLAYING;
+			move(action);
+			gravity();
+			if(state != Model.GAME_OVER) {
+				enemyMove(); // Nothing an enemy does can end the game any other way
+			}
+			float reward = (orbs - slot.getInt(base + cellsSize + ORBS_LEFT)) * ORB_REWARD;
+			if(state == Model.LEVEL_COMPLETE) {
+				reward += LEVEL_COMPLETE_REWARD;
+			} else if(state == Model.GAME_OVER) {
+				reward += GAME_OVER_REWARD;
+			}
+			rewards[board] = reward;
+			done[board] = state != Model.PLAYING;
+			if(done[board]) {
+				restart(board);
+			} else {
+				findLegalActions(board);
+			}
+		}
+
+		/**
+		 * Starts a board from the start of its level
+		 * 
+		 * @param board the number of the board
+		 */
+		void restart(int board) {
+			select(board);
+			slot.position(base);
+			slot.put(startSlots[boardLevels[board]]);
+			findLegalActions(board);
+		}
+
+		/**
+		 * Makes the given board the one being stepped
+		 * 
+		 * @param board the number of the board
+		 */
+		private void select(int board) {
+			base = board * stride;
+			width = widths[boardLevels[board]];
+			size = numCells[boardLevels[board]];
+		}
+
+		/**
+		 * Works out which actions would do anything on the board, as Model.canMove() does
+		 * 
+		 * @param board the number of the board
+		 */
+		private void findLegalActions(int board) {
+			int player = slot.getInt(base + cellsSize + PLAYER);
+			boolean alive = type(player) == Model.PLAYER;
+			legalActions[board * NUM_ACTIONS + Model.WAIT] = true;
+			for(int action = Model.UP; action != NUM_ACTIONS; ++action) {
+				int target = player + offset(action);
+				char targetType = type(target);
+				legalActions[board * NUM_ACTIONS + action] = alive && TileRules.canMoveInto(Model.PLAYER, targetType)
+						&& (targetType == Model.SOFT_SAND || targetType == Model.BACKGROUND
+								|| targetType == Model.MUMMY || canPush(target, targetType, offset(action)));
+			}
+		}
+
+		/**
+		 * Moves the player one tile in the direction of the action if possible, pushing an object in the way or
+		 * exploding on walking into an enemy, as Model.playerMove() does
+		 * 
+		 * @param action the action, one of Model.WAIT, UP, DOWN, LEFT or RIGHT
+		 */
+		private void move(int action) {
+			int player = slot.getInt(base + cellsSize + PLAYER);
+			if(action == Model.WAIT || type(player) != Model.PLAYER) {
+				return;
+			}
+			int offset = offset(action);
+			int target = player + offset;
+			char targetType = type(target);
+			if(!TileRules.canMoveInto(Model.PLAYER, targetType)) {
+				return;
+			}
+			if(targetType == Model.SOFT_SAND || targetType == Model.BACKGROUND) {
+				setType(target, Model.PLAYER);
+				setType(player, Model.BACKGROUND);
+				slot.putInt(base + cellsSize + PLAYER, target);
+			} else if(targetType == Model.MUMMY) {
+				explode(player);
+			} else if(canPush(target, targetType, offset)) {
+				int beyond = target + offset;
+				setType(beyond, targetType);
+				setFalling(beyond, isFalling(target));
+				setType(target, Model.PLAYER);
+				setFalling(target, false);
+				int i = find(OBJECTS, slot.getInt(base + cellsSize + NUM_OBJECTS), target);
+				if(i != -1) {
+					slot.putInt(base + cellsSize + OBJECTS + 4 * i, beyond);
+				}
+				setType(player, Model.BACKGROUND);
+				slot.putInt(base + cellsSize + PLAYER, target);
+			}
+		}
+
+		/**
+		 * Returns whether the player can push an object, which needs room behind it and the object not to be falling
+		 * or about to fall
+		 * 
+		 * @param target the cell of the object
+		 * 
+		 * @param targetType the type of the object
+		 * 
+		 * @param offset the difference in cell index of the push
+		 * 
+		 * @return whether the object can be pushed
+		 */
+		private boolean canPush(int target, char targetType, int offset) {
+			return TileRules.canMoveInto(targetType, type(target + offset)) && !isFalling(target)
+					&& !(TileRules.canFall(targetType) && TileRules.canMoveInto(targetType, type(target + width)));
+		}
+
+		/**
+		 * Lowers every object that can fall by one tile, from the last object in update order to the first, as
+		 * Model.gravity() does. An orb falling into the portal leaves the board, and a falling object landing on
+		 * something it explodes on sets off an explosion.
+		 */
+		private void gravity() {
+			int numObjects = compact(OBJECTS, NUM_OBJECTS);
+			for(int i = numObjects - 1; i != -1; --i) {
+				int t = slot.getInt(base + cellsSize + OBJECTS + 4 * i);
+				if(t == -1) {
+					continue; // Destroyed earlier in this tick
+				}
+				int below = t + width;
+				char type = type(t);
+				char belowType = type(below);
+				if(TileRules.canMoveInto(type, belowType)) {
+					if(belowType == Model.PORTAL) {
+						slot.putInt(base + cellsSize + OBJECTS + 4 * i, -1);
+						int orbs = slot.getInt(base + cellsSize + ORBS_LEFT) - 1;
+						slot.putInt(base + cellsSize + ORBS_LEFT, orbs);
+						if(orbs == 0) {
+							state = Model.LEVEL_COMPLETE;
+							return;
+						}
+					} else {
+						setType(below, type);
+						setFalling(below, true);
+						slot.putInt(base + cellsSize + OBJECTS + 4 * i, below);
+					}
+					setType(t, Model.BACKGROUND);
+					setFalling(t, false);
+				} else if(isFalling(t) && TileRules.explodesOn(type, belowType)) {
+					explode(t);
+				} else {
+					setFalling(t, false);
+				}
+			}
+		}
+
+		/**
+		 * Moves each enemy one step closer to the player, from the last enemy in update order to the first, as
+		 * Model.enemyMove() does
+		 */
+		private void enemyMove() {
+			int numEnemies = compact(enemies, NUM_ENEMIES);
+			if(numEnemies == 0) {
+				return;
+			}
+			findDistances(slot.getInt(base + cellsSize + PLAYER));
+			for(int i = numEnemies - 1; i != -1 && state != Model.GAME_OVER; --i) {
+				int enemy = slot.getInt(base + cellsSize + enemies + 4 * i);
+				if(enemy != -1) {
+					mummyMove(i, enemy);
+				}
+			}
+		}
+
+		/**
+		 * Moves a mummy one step along the shortest path to the player, or if the player can't be reached, to the
+		 * neighbour closest to the player in a straight line, exploding it if it steps into the player
+		 * 
+		 * @param i the mummy's place in the enemy list
+		 * 
+		 * @param mummyCell the mummy's cell
+		 */
+		private void mummyMove(int i, int mummyCell) {
+			char mummy = type(mummyCell);
+			int best = mummyCell;
+			if(distance(mummyCell) != UNREACHABLE) {
+				// Step to the neighbour closest to the player, preferring down, up, right and then left
+				best = closerStep(mummy, mummyCell + width, best);
+				best = closerStep(mummy, mummyCell - width, best);
+				best = closerStep(mummy, mummyCell + 1, best);
+				best = closerStep(mummy, mummyCell - 1, best);
+			} else {
+				int player = slot.getInt(base + cellsSize + PLAYER);
+				int row = mummyCell / width, col = mummyCell % width;
+				int playerRow = player / width, playerCol = player % width;
+				int bestRow = row, bestCol = col;
+				int lowestDistance = distanceSquared(row, col, playerRow, playerCol);
+				if(TileRules.canMoveInto(mummy, type(mummyCell + width))
+						&& distanceSquared(row + 1, col, playerRow, playerCol) < lowestDistance) {
+					bestRow = row + 1;
+					lowestDistance = distanceSquared(bestRow, bestCol, playerRow, playerCol);
+				} else if(TileRules.canMoveInto(mummy, type(mummyCell - width))
+						&& distanceSquared(row - 1, col, playerRow, playerCol) < lowestDistance) {
+					bestRow = row - 1;
+					lowestDistance = distanceSquared(bestRow, bestCol, playerRow, playerCol);
+				}
+				if(TileRules.canMoveInto(mummy, type(mummyCell + 1))
+						&& distanceSquared(row, col + 1, playerRow, playerCol) < lowestDistance) {
+					bestRow = row;
+					bestCol = col + 1;
+				} else if(TileRules.canMoveInto(mummy, type(mummyCell - 1))
+						&& distanceSquared(row, col - 1, playerRow, playerCol) < lowestDistance) {
+					bestRow = row;
+					bestCol = col - 1;
+				}
+				best = bestRow * width + bestCol;
+			}
+
+			if(best != mummyCell) {
+				if(type(best) == Model.PLAYER) {
+					explode(mummyCell);
+					return;
+				}
+				setType(best, Model.MUMMY);
+				setType(mummyCell, Model.BACKGROUND);
+				slot.putInt(base + cellsSize + enemies + 4 * i, best);
+			}
+		}
+
+		/**
+		 * Returns the given neighbour if an enemy can step into it and it's closer to the player than the best step
+		 * found so far
+		 * 
+		 * @param enemy the type of the enemy
+		 * 
+		 * @param neighbour the neighbouring cell
+		 * 
+		 * @param best the best cell to step into so far
+		 * 
+		 * @return the best cell to step into
+		 */
+		private int closerStep(char enemy, int neighbour, int best) {
+			if(TileRules.canMoveInto(enemy, type(neighbour)) && distance(neighbour) < distance(best)) {
+				return neighbour;
+			}
+			return best;
+		}
+
+		/**
+		 * Works out the walking distance of every cell from the player through empty tiles, the player and enemies,
+		 * breadth first, as the model's flow field holds them
+		 * 
+		 * @param player the player's cell
+		 */
+		private void findDistances(int player) {
+			++search;
+			measuredBy[player] = search;
+			distances[player] = 0;
+			queue[0] = player;
+			int head = 0, tail = 1;
+			while(head != tail) {
+				int cell = queue[head++];
+				int distance = distances[cell] + 1;
+				tail = reach(cell + width, distance, tail);
+				tail = reach(cell - width, distance, tail);
+				tail = reach(cell + 1, distance, tail);
+				tail = reach(cell - 1, distance, tail);
+			}
+		}
+
+		/**
+		 * Sets the distance of a cell an enemy can walk through if it hasn't been reached yet, queueing it
+		 * 
+		 * @param cell the cell, which may be off the board
+		 * 
+		 * @param distance the distance of the path through the cell's neighbour
+		 * 
+		 * @param tail the end of the queue
+		 * 
+		 * @return the new end of the queue
+		 */
+		private int reach(int cell, int distance, int tail) {
+			if(cell < 0 || cell >= size || measuredBy[cell] == search || distance > MAX_DISTANCE) {
+				return tail;
+			}
+			char type = type(cell);
+			if(type != Model.BACKGROUND && type != Model.PLAYER && type != Model.MUMMY) {
+				return tail;
+			}
+			measuredBy[cell] = search;
+			distances[cell] = distance;
+			queue[tail] = cell;
+			return tail + 1;
+		}
+
+		/**
+		 * Returns the walking distance of a cell from the player, as found by the last search
+		 * 
+		 * @param cell the cell
+		 * 
+		 * @return the number of steps to the player, or UNREACHABLE
+		 */
+		private int distance(int cell) {
+			return measuredBy[cell] == search ? distances[cell] : UNREACHABLE;
+		}
+
+		/**
+		 * Destroys the tiles an explosion centered on the given cell reaches, following chain explosions through
+		 * bombs, mummies and the player in the same order as the model's Explosion, and ends the game if the player is
+		 * caught in it. The whole chain is worked out before any tile is cleared.
+		 * 
+		 * @param center the center cell
+		 */
+		private void explode(int center) {
+			++explosion;
+			int numDestroyed = 0;
+			boolean hitPlayer = false;
+			centers[0] = center;
+			nextTiles[0] = 0;
+			int depth = 1;
+			while(depth != 0) {
+				int top = depth - 1;
+				int tile = nextTiles[top];
+				if(tile == 9) {
+					--depth;
+					continue;
+				}
+				nextTiles[top] = tile + 1;
+
+				int target = centers[top] + (tile / 3 - 1) * width + (tile % 3 - 1);
+				char type = destroyedBy[target] == explosion ? Model.BACKGROUND : type(target);
+				if(!TileRules.canExplode(type)) {
+					continue;
+				}
+				destroyedBy[target] = explosion;
+				destroyed[numDestroyed++] = target;
+				if(type == Model.PLAYER) {
+					// The explosion stops once the player has exploded
+					hitPlayer = true;
+					nextTiles[top] = 9;
+				}
+				if((type == Model.PLAYER || type == Model.BOMB || type == Model.MUMMY) && tile != 4) {
+					centers[depth] = target; // Causes a chain explosion
+					nextTiles[depth] = 0;
+					++depth;
+				}
+			}
+
+			int numObjects = slot.getInt(base + cellsSize + NUM_OBJECTS);
+			int numEnemies = slot.getInt(base + cellsSize + NUM_ENEMIES);
+			for(int i = 0; i != numDestroyed; ++i) {
+				int target = destroyed[i];
+				int object = find(OBJECTS, numObjects, target);
+				if(object != -1) {
+					slot.putInt(base + cellsSize + OBJECTS + 4 * object, -1);
+				}
+				int enemy = find(enemies, numEnemies, target);
+				if(enemy != -1) {
+					slot.putInt(base + cellsSize + enemies + 4 * enemy, -1);
+				}
+				setType(target, Model.BACKGROUND);
+			}
+			if(hitPlayer) {
+				state = Model.GAME_OVER;
+			}
+		}
+
+		/**
+		 * Returns the place in a list of the object or enemy in the given cell
+		 * 
+		 * @param list the offset of the list after the cells
+		 * 
+		 * @param length the number of places in the list
+		 * 
+		 * @param cell the cell
+		 * 
+		 * @return the place in the list, or -1 if nothing in the list is in the cell
+		 */
+		private int find(int list, int length, int cell) {
+			for(int i = 0; i != length; ++i) {
+				if(slot.getInt(base + cellsSize + list + 4 * i) == cell) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Drops the places of destroyed objects or enemies from a list, keeping the rest in order
+		 * 
+		 * @param list the offset of the list after the cells
+		 * 
+		 * @param lengthOffset the offset of the list's length after the cells
+		 * 
+		 * @return the new length of the list
+		 */
+		private int compact(int list, int lengthOffset) {
+			int start = base + cellsSize + list;
+			int length = slot.getInt(base + cellsSize + lengthOffset);
+			int kept = 0;
+			for(int i = 0; i != length; ++i) {
+				int cell = slot.getInt(start + 4 * i);
+				if(cell != -1) {
+					slot.putInt(start + 4 * kept++, cell);
+				}
+			}
+			slot.putInt(base + cellsSize + lengthOffset, kept);
+			return kept;
+		}
+
+		/**
+		 * Returns the type of the tile in a cell of the board
+		 * 
+		 * @param cell the cell
+		 * 
+		 * @return the type of the tile
+		 */
+		private char type(int cell) {
+			return (char) (slot.get(base + cell) & TYPE_MASK);
+		}
+
+		/**
+		 * Returns whether the object in a cell of the board is falling
+		 * 
+		 * @param cell the cell
+		 * 
+		 * @return whether the object is falling
+		 */
+		private boolean isFalling(int cell) {
+			return (slot.get(base + cell) & FALLING) != 0;
+		}
+
+		/**
+		 * Changes the type of the tile in a cell of the board, keeping whether it's falling, as Board does
+		 * 
+		 * @param cell the cell
+		 * 
+		 * @param type the new type of the tile
+		 */
+		private void setType(int cell, char type) {
+			slot.put(base + cell, (byte) ((slot.get(base + cell) & FALLING) | type));
+		}
+
+		/**
+		 * Sets whether the object in a cell of the board is falling
+		 * 
+		 * @param cell the cell
+		 * 
+		 * @param isFalling whether the object is falling
+		 */
+		private void setFalling(int cell, boolean isFalling) {
+			int contents = slot.get(base + cell);
+			slot.put(base + cell, (byte) (isFalling ? contents | FALLING : contents & TYPE_MASK));
+		}
+
+		/**
+		 * Returns the difference in cell index made by the given action
+		 * 
+		 * @param action one of Model.UP, DOWN, LEFT or RIGHT
+		 * 
+		 * @return the difference in cell index
+		 */
+		private int offset(int action) {
+			switch(action) {
+			case Model.UP:
+				return -width;
+			case Model.DOWN:
+				return width;
+			case Model.LEFT:
+				return -1;
+			default:
+				return 1;
+			}
+		}
+	}
+
+	/**
+	 * Finds the square of the distance between two points, which compares the same way as the distance itself
+	 * 
+	 * @param row1 row of the first point
+	 * 
+	 * @param col1 column of the first point
+	 * 
+	 * @param row2 row of the second point
+	 * 
+	 * @param col2 column of the second point
+	 * 
+	 * @return the squared distance between the two points
+	 */
+	private static int distanceSquared(int row1, int col1, int row2, int col2) {
+		return (row2 - row1) * (row2 - row1) + (col2 - col1) * (col2 - col1);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,412 @@
+package generator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.LevelTemplate;
+import model.Model;
+import solver.Solution;
+import solver.Solver;
+
+/**
+ * This class generates new levels at random and keeps only the ones that can be completed. Each candidate level is a
+ * walled box of open space with ledges of hard sand and granite, a portal in the floor, and the player, orbs, rocks,
+ * bombs and mummies scattered through it. Objects are often held up by soft sand, which the player has to dig away in
+ * the right order. Every candidate is checked by the solver, which plays it with
+ * the game's own rules, and is kept only if the solver completes it within a bounded number of states and the fewest
+ * moves that complete it, found by the solver's optimal mode, are at least a minimum number.
+ * 
+ * Most candidates are thrown away, so the cheap checks come first. A candidate with an orb that nothing could ever
+ * move to the portal is thrown away without a search. The first search, for any solution at all, gets only a tenth of
+ * the states, since a candidate it takes longer over is almost never finished by the optimal search within the whole
+ * budget. The solvers play the candidate's template directly rather than a level pack made for it.
+ * 
+ * Candidates are generated and checked on several threads at once. Each candidate has its own random number generator
+ * seeded from the batch's seed and the candidate's number, and is checked by a solver running on a single thread, so
+ * the same seed always generates the same levels in the same order however many threads are used.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class LevelGenerator {
+
+	public static final int DEFAULT_WIDTH = 18;
+	public static final int DEFAULT_HEIGHT = 12;
+	public static final int DEFAULT_MAX_STATES = 10000;
+	public static final int DEFAULT_MIN_MOVES = 12;
+
+	private static final int SOFT_SAND_PERCENT = 5; // Chance of each open tile being soft sand
+	private static final int PLUG_PERCENT = 60; // Chance of an object being held up by a plug of soft sand
+	private static final int CELLS_PER_LEDGE = 24;
+	private static final int GRANITE_PERCENT = 30; // Chance of a ledge being granite rather than hard sand
+	private static final int MAX_ORBS = 2;
+	private static final int MAX_ROCKS = 3;
+	private static final int MAX_BOMBS = 1;
+	private static final int MAX_MUMMIES = 1;
+	private static final int SEARCH_WEIGHT = 4; // Heuristic weight of the first check, since any solution will do
+	private static final int SEARCH_FRACTION = 10; // Share of the states the first check gets, as one in this many
+	private static final int CANDIDATES_PER_THREAD = 4; // Candidates being checked at once for each thread
+
+	private final int width;
+	private final int height;
+	private final int maxStates;
+	private final int minMoves;
+	private final int numThreads;
+
+	// Outcomes of the candidates checked so far
+	private final AtomicLong numCandidates = new AtomicLong();
+	private final AtomicLong numUnsolvable = new AtomicLong();
+	private final AtomicLong numGaveUp = new AtomicLong();
+	private final AtomicLong numTooEasy = new AtomicLong();
+
+	/**
+	 * Constructor that creates a generator
+	 * 
+	 * @param width the number of columns in each level, including the walls
+	 * 
+	 * @param height the number of rows in each level, including the walls
+	 * 
+	 * @param maxStates the most states the solver searches before giving up on a candidate
+	 * 
+	 * @param minMoves the fewest moves a level's solution can take for the level to be kept
+	 * 
+	 * @param numThreads the number of candidates to check at once
+	 */
+	public LevelGenerator(int width, int height, int maxStates, int minMoves, int numThreads) {
+		if(width < 4 || height < 4) {
+			throw new IllegalArgumentException("Levels must be at least 4 by 4 tiles");
+		}
+		this.width = width;
+		this.height = height;
+		this.maxStates = maxStates;
+		this.minMoves = minMoves;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Generates the given number of levels that can be completed. The levels are the first ones to pass the checks
+	 * among the candidates numbered from 0, in order.
+	 * 
+	 * @param seed the seed that the candidates' random number generators are made from
+	 * 
+	 * @param count the number of levels to generate
+	 * 
+	 * @return the levels, in order
+	 * 
+	 * @throws InterruptedException if the thread is interrupted while waiting for candidates to be checked
+	 */
+	public List<LevelTemplate> generate(final long seed, int count) throws InterruptedException {
+		final List<ForkJoinPool> pools = Collections.synchronizedList(new ArrayList<ForkJoinPool>());
+		// A quick solver to find out whether a candidate can be completed, and an optimal one to count its moves
+		final ThreadLocal<Solver[]> solvers = new ThreadLocal<Solver[]>() {
+			@Override
+			protected Solver[] initialValue() {
+				ForkJoinPool pool = new ForkJoinPool(1);
+				pools.add(pool);
+				int movesPerTick = Solver.DEFAULT_MOVES_PER_TICK;
+				int searchStates = Math.max(maxStates / SEARCH_FRACTION, 1);
+				return new Solver[] { new Solver(pool, movesPerTick, SEARCH_WEIGHT, searchStates),
+						new Solver(pool, movesPerTick, Solver.OPTIMAL, maxStates) };
+			}
+		};
+		ExecutorService workers = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Level generator");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		List<LevelTemplate> levels = new ArrayList<LevelTemplate>();
+		try {
+			// Candidates are submitted ahead of the one being waited for, and taken in the order they were numbered
+			Queue<Future<LevelTemplate>> checking = new ArrayDeque<Future<LevelTemplate>>();
+			int next = 0;
+			while(levels.size() != count) {
+				while(checking.size() != numThreads * CANDIDATES_PER_THREAD) {
+					final int index = next++;
+					checking.add(workers.submit(new Callable<LevelTemplate>() {
+						@Override
+						public LevelTemplate call() {
+							LevelTemplate level = candidate(seed, index);
+							return check(solvers.get()[0], solvers.get()[1], level) ? level : null;
+						}
+					}));
+				}
+				LevelTemplate level = checking.remove().get();
+				if(level != null) {
+					levels.add(level);
+				}
+			}
+		} catch(ExecutionException e) {
+			throw new IllegalStateException("Checking a candidate level failed", e.getCause());
+		} finally {
+			workers.shutdownNow();
+			synchronized(pools) {
+				for(ForkJoinPool pool : pools) {
+					pool.shutdownNow();
+				}
+			}
+		}
+		return levels;
+	}
+
+	/**
+	 * Lays out a candidate level at random
+	 * 
+	 * @param seed the seed of the batch being generated
+	 * 
+	 * @param index the number of the candidate within the batch
+	 * 
+	 * @return the candidate level
+	 */
+	public LevelTemplate candidate(long seed, int index) {
+		Random random = new Random(mix(seed + index * 0x9E3779B97F4A7C15L));
+		char[] types = new char[width * height];
+
+		// Walls all round, with soft sand and open space inside
+		for(int row = 0; row != height; ++row) {
+			for(int col = 0; col != width; ++col) {
+				if(row == 0 || row == height - 1 || col == 0 || col == width - 1) {
+					types[row * width + col] = Model.HARD_SAND;
+				} else if(random.nextInt(100) < SOFT_SAND_PERCENT) {
+					types[row * width + col] = Model.SOFT_SAND;
+				} else {
+					types[row * width + col] = Model.BACKGROUND;
+				}
+			}
+		}
+
+		// Ledges that objects rest on and the player has to find a way around
+		int numLedges = (width - 2) * (height - 2) / CELLS_PER_LEDGE;
+		for(int i = 0; i != numLedges; ++i) {
+			char type = random.nextInt(100) < GRANITE_PERCENT ? Model.GRANITE : Model.HARD_SAND;
+			int row = 2 + random.nextInt(height - 3);
+			int col = 1 + random.nextInt(width - 2);
+			int length = Math.min(2 + random.nextInt(Math.max((width - 2) / 3, 1)), width - 1 - col);
+			for(int j = 0; j != length; ++j) {
+				types[row * width + col + j] = type;
+			}
+		}
+
+		types[(height - 1) * width + 1 + random.nextInt(width - 2)] = Model.PORTAL;
+		place(types, random, Model.PLAYER, 1, 1);
+		place(types, random, Model.ORB, 1 + random.nextInt(MAX_ORBS), 2); // Orbs against a wall can't be pushed
+		place(types, random, Model.ROCK, random.nextInt(MAX_ROCKS + 1), 1);
+		place(types, random, Model.BOMB, random.nextInt(MAX_BOMBS + 1), 1);
+		place(types, random, Model.MUMMY, random.nextInt(MAX_MUMMIES + 1), 1);
+
+		// Plugs of soft sand under objects, which hold them up until the player digs them away
+		for(int cell = width; cell != types.length - width; ++cell) {
+			char type = types[cell];
+			if((type == Model.ORB || type == Model.ROCK || type == Model.BOMB) && types[cell + width] == Model.BACKGROUND
+					&& random.nextInt(100) < PLUG_PERCENT) {
+				types[cell + width] = Model.SOFT_SAND;
+			}
+		}
+		return new LevelTemplate(width, height, types);
+	}
+
+	/**
+	 * Returns the number of candidates checked so far
+	 * 
+	 * @return the number of candidates
+	 */
+	public long getNumCandidates() {
+		return numCandidates.get();
+	}
+
+	/**
+	 * Returns the number of candidates that were thrown away because they can't be completed, including those with an
+	 * orb that can never reach the portal, which aren't searched
+	 * 
+	 * @return the number of unsolvable candidates
+	 */
+	public long getNumUnsolvable() {
+		return numUnsolvable.get();
+	}
+
+	/**
+	 * Returns the number of candidates that were thrown away because the solver gave up on them
+	 * 
+	 * @return the number of candidates given up on
+	 */
+	public long getNumGaveUp() {
+		return numGaveUp.get();
+	}
+
+	/**
+	 * Returns the number of candidates that were thrown away because they took too few moves to complete
+	 * 
+	 * @return the number of candidates that were too easy
+	 */
+	public long getNumTooEasy() {
+		return numTooEasy.get();
+	}
+
+	/**
+	 * Checks whether a candidate level can be completed and isn't too easy. Any solution is looked for first, since
+	 * that's quick, and the fewest moves are only counted for a level that can be completed in enough moves that way.
+	 * 
+	 * @param solver the solver to look for any solution with
+	 * 
+	 * @param optimalSolver the solver to find the fewest moves with
+	 * 
+	 * @param level the candidate level
+	 * 
+	 * @return whether the level should be kept
+	 */
+	private boolean check(Solver solver, Solver optimalSolver, LevelTemplate level) {
+		numCandidates.incrementAndGet();
+		if(!orbsCanReachPortal(level)) {
+			numUnsolvable.incrementAndGet();
+			return false;
+		}
+		Solution solution = solver.solve(level);
+		if(solution.getResult() == Solution.SOLVED && solution.getNumMoves() >= minMoves) {
+			solution = optimalSolver.solve(level);
+		}
+		if(solution.getResult() == Solution.UNSOLVABLE) {
+			numUnsolvable.incrementAndGet();
+			return false;
+		} else if(solution.getResult() == Solution.GAVE_UP) {
+			numGaveUp.incrementAndGet();
+			return false;
+		} else if(solution.getNumMoves() < minMoves) {
+			numTooEasy.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether every orb in a level has a way to a portal that nothing permanent blocks. An orb only moves by
+	 * falling or by being pushed sideways by the player on its far side, and only enters a portal from above, so the
+	 * cells an orb could reach a portal from are found backwards from the portals over those moves. Hard sand never
+	 * changes, and neither does granite in a level with no bombs or mummies to blow it up, so an orb resting on either
+	 * against a wall, or shut in by them, is never reached.
+	 * 
+	 * @param level the candidate level
+	 * 
+	 * @return whether no orb is blocked for good
+	 */
+	private static boolean orbsCanReachPortal(LevelTemplate level) {
+		int width = level.getWidth();
+		int numCells = width * level.getHeight();
+		char[] types = new char[numCells];
+		boolean explosive = false;
+		for(int cell = 0; cell != numCells; ++cell) {
+			types[cell] = level.getType(cell / width, cell % width);
+			explosive |= types[cell] == Model.BOMB || types[cell] == Model.MUMMY;
+		}
+
+		boolean[] reached = new boolean[numCells];
+		int[] queue = new int[numCells];
+		int tail = 0;
+		for(int cell = 0; cell != numCells; ++cell) {
+			if(types[cell] == Model.PORTAL) {
+				reached[cell] = true;
+				queue[tail++] = cell;
+			}
+		}
+		for(int head = 0; head != tail; ++head) {
+			int cell = queue[head];
+			// An orb above the cell falls into it
+			int above = cell - width;
+			if(above >= 0 && !reached[above] && !isPermanent(types[above], explosive)) {
+				reached[above] = true;
+				queue[tail++] = above;
+			}
+			if(types[cell] == Model.PORTAL) {
+				continue; // Pushing an orb onto a portal destroys the portal instead
+			}
+			// An orb beside the cell is pushed into it by the player on its far side
+			for(int side = -1; side <= 1; side += 2) {
+				int from = cell + side, player = cell + 2 * side;
+				if(player < 0 || player >= numCells || player / width != cell / width || reached[from]
+						|| isPermanent(types[from], explosive) || isPermanent(types[player], explosive)
+						|| types[from] == Model.PORTAL || types[player] == Model.PORTAL) {
+					continue;
+				}
+				reached[from] = true;
+				queue[tail++] = from;
+			}
+		}
+
+		for(int cell = 0; cell != numCells; ++cell) {
+			if(types[cell] == Model.ORB && !reached[cell]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether a tile will always be there, so nothing can ever move into its cell
+	 * 
+	 * @param type the type of the tile
+	 * 
+	 * @param explosive whether the level has bombs or mummies that could blow up granite
+	 * 
+	 * @return whether the tile is permanent
+	 */
+	private static boolean isPermanent(char type, boolean explosive) {
+		return type == Model.HARD_SAND || type == Model.GRANITE && !explosive;
+	}
+
+	/**
+	 * Puts objects of the given type on randomly chosen tiles that are soft sand or open space, or on as many of them
+	 * as there are
+	 * 
+	 * @param types the type of each tile of the level
+	 * 
+	 * @param random the candidate's random number generator
+	 * 
+	 * @param type the type of object to place
+	 * 
+	 * @param count the number of objects to place
+	 * 
+	 * @param margin the number of columns to keep the objects away from the sides of the level
+	 */
+	private void place(char[] types, Random random, char type, int count, int margin) {
+		int[] free = new int[types.length];
+		int numFree = 0;
+		for(int cell = 0; cell != types.length; ++cell) {
+			int col = cell % width;
+			if((types[cell] == Model.SOFT_SAND || types[cell] == Model.BACKGROUND) && col >= margin
+					&& col < width - margin) {
+				free[numFree++] = cell;
+			}
+		}
+		for(int i = 0; i != count && numFree != 0; ++i) {
+			int j = random.nextInt(numFree);
+			types[free[j]] = type;
+			free[j] = free[--numFree];
+		}
+	}
+
+	/**
+	 * Scrambles the bits of a number, so that seeds that are close together give unrelated random numbers
+	 * 
+	 * @param z the number to scramble
+	 * 
+	 * @return the scrambled number
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package host;
+
+import model.Model;
+
+/**
+ * This interface plays a game on the session host, choosing the player's input for each tick. It is called on the
+ * thread of the shard ticking its session, and never from two threads at once.
+ * 
+ * @author Jeffrey Sun
+ */
+public interface Bot {
+
+	/**
+	 * Called before each tick to choose the player's input for it
+	 * 
+	 * @param model the session's game, which must not be changed
+	 * 
+	 * @return one of Model.WAIT, UP, DOWN, LEFT or RIGHT
+	 */
+	int nextInput(Model model);
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package host;
+
+import model.LevelPack;
+import model.Model;
+
+/**
+ * This class is one game running on the session host, played by a bot. A session has its own model and shares only
+ * the level templates with the other sessions, so sessions never affect each other. A completed level moves on to
+ * the next one, a game over restarts the level, and completing the game starts again from the first level.
+ * 
+ * Each session is ticked by a single shard thread. Its measurements are written only by that thread and can be read
+ * from any other.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Session {
+
+	private final int id;
+	private final Model model;
+	private final Bot bot;
+	private volatile boolean closed;
+
+	// Measurements, written only by the shard ticking the session
+	private volatile long numTicks;
+	private volatile long totalLatency; // Nanoseconds from each tick's deadline to the tick finishing, summed
+	private volatile long maxLatency;
+	private volatile int levelsComplete;
+	private volatile int gamesOver;
+
+	/**
+	 * Constructor that creates a session starting at the first level
+	 * 
+	 * @param id the number of the session
+	 * 
+	 * @param levels the levels to play, shared with the other sessions
+	 * 
+	 * @param bot what plays the game
+	 */
+	Session(int id, LevelPack levels, Bot bot) {
+		this.id = id;
+		this.bot = bot;
+		model = new Model(levels);
+	}
+
+	/**
+	 * Applies the bot's input and advances the game by one tick, moving on from a completed level or game over first
+	 * 
+	 * @param deadline the System.nanoTime() the tick was due at, which its latency is measured from
+	 */
+	void tick(long deadline) {
+		int state = model.getState();
+		if(state == Model.LEVEL_COMPLETE) {
+			++levelsComplete;
+			model.nextLevel();
+		} else if(state == Model.GAME_OVER) {
+			++gamesOver;
+			model.restartLevel();
+		} else if(state == Model.GAME_COMPLETE) {
+			model.goToLevel(0);
+		}
+		model.step(bot.nextInput(model));
+
+		long latency = Math.max(0, System.nanoTime() - deadline);
+		totalLatency += latency;
+		maxLatency = Math.max(maxLatency, latency);
+		++numTicks;
+	}
+
+	/**
+	 * Stops the session. Its shard drops it before the next batch of ticks.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	/**
+	 * Returns whether the session has been stopped
+	 * 
+	 * @return whether the session has been closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Returns the number of the session
+	 * 
+	 * @return the session's number, starting from 0 in the order sessions were added
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the number of ticks the session has run
+	 * 
+	 * @return the number of ticks
+	 */
+	public long getNumTicks() {
+		return numTicks;
+	}
+
+	/**
+	 * Returns how long the session's ticks took to finish after they were due on average, which includes the time
+	 * spent waiting for the sessions ticked before it in the same batch
+	 * 
+	 * @return the mean latency, in nanoseconds
+	 */
+	public long getMeanLatency() {
+		long ticks = numTicks;
+		return ticks == 0 ? 0 : totalLatency / ticks;
+	}
+
+	/**
+	 * Returns the longest any of the session's ticks took to finish after it was due
+	 * 
+	 * @return the largest latency, in nanoseconds
+	 */
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	/**
+	 * Returns the number of levels the bot has completed
+	 * 
+	 * @return the number of levels complete
+	 */
+	public int getLevelsComplete() {
+		return levelsComplete;
+	}
+
+	/**
+	 * Returns the number of times the player has been exploded
+	 * 
+	 * @return the number of games over
+	 */
+	public int getGamesOver() {
+		return gamesOver;
+	}
+}
\ No newline at end of file
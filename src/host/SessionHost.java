@@ -0,0 +1,213 @@
+package host;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import model.LevelPack;
+
+/**
+ * This class runs any number of independent games at once without a window, such as for bot tournaments and load
+ * testing. Sessions are spread evenly over a fixed number of shards, normally one per core, and each shard's thread
+ * ticks all of its sessions in turn as one batch. A thousand games cost a handful of threads rather than a thousand,
+ * and a session's tick runs on the same thread every time, next to the other sessions in its batch.
+ * 
+ * With a tick period, each shard ticks its batch on a fixed grid of deadlines like the game loop does, skipping the
+ * ticks there was no time for. With no period, shards tick their batches back to back as fast as they can, which
+ * measures how many ticks per second the host can sustain.
+ * 
+ * Every session plays the same level pack, whose level templates are shared rather than copied for each session.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class SessionHost {
+
+	private final LevelPack levels;
+	private final long period; // Nanoseconds between ticks, or 0 to tick as fast as possible
+	private final List<Shard> shards;
+	private final List<Session> sessions; // Every session added, in order
+	private volatile boolean running;
+
+	/**
+	 * Constructor that creates a host with no sessions, which doesn't tick until started
+	 * 
+	 * @param levels the levels every session plays
+	 * 
+	 * @param numShards the number of threads to tick sessions on
+	 * 
+	 * @param periodMillis the time between each session's ticks in milliseconds, or 0 to tick as fast as possible
+	 */
+	public SessionHost(LevelPack levels, int numShards, int periodMillis) {
+		this.levels = levels;
+		period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+		shards = new ArrayList<Shard>();
+		for(int i = 0; i != numShards; ++i) {
+			shards.add(new Shard(i));
+		}
+		sessions = new ArrayList<Session>();
+	}
+
+	/**
+	 * Creates a new session starting at the first level and hands it to the shard with the fewest sessions. Sessions
+	 * can be added before or after the host has started.
+	 * 
+	 * @param bot what plays the session's game
+	 * 
+	 * @return the new session
+	 */
+	public synchronized Session addSession(Bot bot) {
+		Session session = new Session(sessions.size(), levels, bot);
+		sessions.add(session);
+		Shard emptiest = shards.get(0);
+		for(Shard shard : shards) {
+			if(shard.size < emptiest.size) {
+				emptiest = shard;
+			}
+		}
+		++emptiest.size;
+		emptiest.added.add(session);
+		return session;
+	}
+
+	/**
+	 * Starts ticking the sessions, each shard on its own thread
+	 */
+	public void start() {
+		running = true;
+		for(Shard shard : shards) {
+			shard.thread.start();
+		}
+	}
+
+	/**
+	 * Stops ticking and waits for each shard to finish its current batch
+	 */
+	public void stop() {
+		running = false;
+		for(Shard shard : shards) {
+			LockSupport.unpark(shard.thread);
+			try {
+				shard.thread.join();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns every session added, including ones that have since been closed
+	 * 
+	 * @return the sessions, in the order they were added
+	 */
+	public synchronized List<Session> getSessions() {
+		return Collections.unmodifiableList(new ArrayList<Session>(sessions));
+	}
+
+	/**
+	 * Returns the number of session ticks run so far, across every shard
+	 * 
+	 * @return the number of ticks
+	 */
+	public long getNumTicks() {
+		long ticks = 0;
+		for(Shard shard : shards) {
+			ticks += shard.numTicks;
+		}
+		return ticks;
+	}
+
+	/**
+	 * Returns the number of batches skipped because a shard fell a whole period or more behind, across every shard
+	 * 
+	 * @return the number of missed deadlines
+	 */
+	public long getMissedDeadlines() {
+		long missed = 0;
+		for(Shard shard : shards) {
+			missed += shard.missedDeadlines;
+		}
+		return missed;
+	}
+
+	/**
+	 * This class ticks a share of the host's sessions on its own thread
+	 */
+	private class Shard implements Runnable {
+		private final Thread thread;
+		private final ConcurrentLinkedQueue<Session> added; // Sessions waiting to join the batch
+		private final List<Session> batch; // Owned by the shard's thread
+		private int size; // Sessions handed to the shard and not yet dropped, guarded by the host
+
+		// Measurements, written only by the shard's thread
+		private volatile long numTicks;
+		private volatile long missedDeadlines;
+
+		/**
+		 * Constructor that creates a shard with no sessions
+		 * 
+		 * @param index the number of the shard, used to name its thread
+		 */
+		Shard(int index) {
+			added = new ConcurrentLinkedQueue<Session>();
+			batch = new ArrayList<Session>();
+			thread = new Thread(this, "Session shard " + index);
+			thread.setDaemon(true);
+		}
+
+		/**
+		 * Ticks the shard's batch of sessions at each deadline until the host stops
+		 */
+		@Override
+		public void run() {
+			long deadline = System.nanoTime();
+			while(running) {
+				long now = System.nanoTime();
+				if(period == 0) {
+					deadline = now;
+				} else if(now - deadline < 0) {
+					LockSupport.parkNanos(this, deadline - now);
+					continue;
+				} else if(now - deadline >= period) {
+					// Skip the batches there was no time for, staying on the same grid of deadlines
+					missedDeadlines += (now - deadline) / period;
+					deadline += (now - deadline) / period * period;
+				}
+
+				for(Session session = added.poll(); session != null; session = added.poll()) {
+					batch.add(session);
+				}
+				int ticked = 0;
+				for(int i = batch.size() - 1; i != -1; --i) {
+					Session session = batch.get(i);
+					if(session.isClosed()) {
+						dropSession(i);
+					} else {
+						session.tick(deadline);
+						++ticked;
+					}
+				}
+				numTicks += ticked;
+				deadline += period;
+			}
+		}
+
+		/**
+		 * Removes a closed session from the batch by moving the last session into its place
+		 * 
+		 * @param i the session's position in the batch
+		 */
+		private void dropSession(int i) {
+			Session last = batch.remove(batch.size() - 1);
+			if(i != batch.size()) {
+				batch.set(i, last);
+			}
+			synchronized(SessionHost.this) {
+				--size;
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class is a Java Flight Recorder event spanning the working out and clearing of one chain of explosions
+ * 
+ * @author Jeffrey Sun
+ */
+@Name("cryptraider.Explosion")
+@Label("Explosion")
+@Category("Crypt Raider")
+@Description("A chain of explosions set off by one object")
+@StackTrace(false)
+public final class ExplosionEvent extends Event {
+
+	@Label("Level")
+	private int level;
+
+	@Label("Tick")
+	@Description("Number of ticks run since the game started")
+	private long tick;
+
+	@Label("Row")
+	@Description("Row of the tile the chain started from")
+	private int row;
+
+	@Label("Column")
+	@Description("Column of the tile the chain started from")
+	private int col;
+
+	@Label("Tiles Destroyed")
+	@Description("Number of tiles cleared by the whole chain")
+	private int size;
+
+	@Label("Hit Player")
+	private boolean hitPlayer;
+
+	/**
+	 * Ends the event and records it, if the flight recorder is recording it
+	 * 
+	 * @param level the level being played, starting from 0
+	 * 
+	 * @param tick the number of ticks run since the game started
+	 * 
+	 * @param row the row of the tile the chain started from
+	 * 
+	 * @param col the column of the tile the chain started from
+	 * 
+	 * @param size the number of tiles the chain cleared
+	 * 
+	 * @param hitPlayer whether the player was caught in the chain
+	 */
+	public void commit(int level, long tick, int row, int col, int size, boolean hitPlayer) {
+		this.level = level;
+		this.tick = tick;
+		this.row = row;
+		this.col = col;
+		this.size = size;
+		this.hitPlayer = hitPlayer;
+		commit();
+	}
+}
\ No newline at end of file
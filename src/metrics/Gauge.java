@@ -0,0 +1,50 @@
+package metrics;
+
+/**
+ * This class holds the latest value of something that goes up and down, such as the number of enemies on the board
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Gauge {
+
+	private final String name;
+	private volatile long value;
+
+	/**
+	 * Constructor that creates a gauge reading 0
+	 * 
+	 * @param name the name the gauge is shown and published under
+	 */
+	Gauge(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the gauge
+	 * 
+	 * @return the name the gauge is shown and published under
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Sets the value of the gauge, if metrics are being recorded
+	 * 
+	 * @param value the new value
+	 */
+	public void set(long value) {
+		if(Metrics.isEnabled()) {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Returns the latest value of the gauge
+	 * 
+	 * @return the latest value
+	 */
+	public long get() {
+		return value;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts how often each duration was recorded, so that percentiles can be read back at any time. Like an
+ * HDR histogram, values are counted in buckets that double in width with every power of two, each split into equal
+ * sub-buckets, so any value up to the largest long is recorded to within about 6% in a fixed, small array. Recording
+ * a value never allocates, and values can be read from another thread while they're being recorded.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // Buckets for each power of two
+	private static final int NUM_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final String name;
+	private final AtomicLongArray counts;
+	private final AtomicLong count;
+	private final AtomicLong total;
+	private final AtomicLong max;
+
+	/**
+	 * Constructor that creates an empty histogram
+	 * 
+	 * @param name the name the histogram is shown and published under
+	 */
+	Histogram(String name) {
+		this.name = name;
+		counts = new AtomicLongArray(NUM_BUCKETS);
+		count = new AtomicLong();
+		total = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Returns the name of the histogram
+	 * 
+	 * @return the name the histogram is shown and published under
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Records a value, if metrics are being recorded
+	 * 
+	 * @param value the value to record, usually in nanoseconds
+	 */
+	public void record(long value) {
+		if(!Metrics.isEnabled()) {
+			return;
+		}
+		value = Math.max(value, 0);
+		counts.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long largest = max.get();
+		while(value > largest && !max.compareAndSet(largest, value)) {
+			largest = max.get();
+		}
+	}
+
+	/**
+	 * Records the time since the given start, as returned by Metrics.start()
+	 * 
+	 * @param start the System.nanoTime() at the start, or 0 if metrics weren't being recorded then
+	 */
+	public void stop(long start) {
+		if(start != 0) {
+			record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Returns the number of values recorded
+	 * 
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the average of the values recorded
+	 * 
+	 * @return the mean value, or 0 if none have been recorded
+	 */
+	public long getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : total.get() / n;
+	}
+
+	/**
+	 * Returns the largest value recorded
+	 * 
+	 * @return the largest value, or 0 if none have been recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the value that the given fraction of recorded values were no larger than, to within the width of its
+	 * bucket
+	 * 
+	 * @param fraction the fraction of values, such as 0.99
+	 * 
+	 * @return the largest value in the bucket holding that value, or 0 if none have been recorded
+	 */
+	public long getPercentile(double fraction) {
+		long target = Math.max(1, (long) Math.ceil(count.get() * fraction));
+		long seen = 0;
+		for(int i = 0; i != NUM_BUCKETS; ++i) {
+			seen += counts.get(i);
+			if(seen >= target) {
+				return Math.min(lowestValue(i + 1) - 1, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forgets every value recorded so far
+	 */
+	public void reset() {
+		for(int i = 0; i != NUM_BUCKETS; ++i) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Returns the bucket a value is counted in. Values below SUB_BUCKETS have a bucket each, and larger values are
+	 * counted by their highest SUB_BUCKET_BITS + 1 bits.
+	 * 
+	 * @param value the value, which isn't negative
+	 * 
+	 * @return the index of the value's bucket
+	 */
+	private static int bucket(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * Returns the smallest value counted in a bucket
+	 * 
+	 * @param bucket the index of the bucket
+	 * 
+	 * @return the smallest value in the bucket, or Long.MAX_VALUE past the last bucket
+	 */
+	private static long lowestValue(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		} else if(bucket == NUM_BUCKETS) {
+			return Long.MAX_VALUE; // Past the largest long
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+	}
+}
\ No newline at end of file
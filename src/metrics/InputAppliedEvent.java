@@ -0,0 +1,57 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * This class is a Java Flight Recorder event spanning the game loop applying one key press, along with how long the
+ * press waited between its key event and being applied
+ * 
+ * @author Jeffrey Sun
+ */
+@Name("cryptraider.InputApplied")
+@Label("Input Applied")
+@Category("Crypt Raider")
+@Description("A key press being applied to the game")
+@StackTrace(false)
+public final class InputAppliedEvent extends Event {
+
+	@Label("Level")
+	private int level;
+
+	@Label("Tick")
+	@Description("Number of ticks run since the game started")
+	private long tick;
+
+	@Label("Key Code")
+	private int keyCode;
+
+	@Label("Latency")
+	@Description("Time from the key event to the press being applied")
+	@Timespan(Timespan.NANOSECONDS)
+	private long latency;
+
+	/**
+	 * Ends the event and records it, if the flight recorder is recording it
+	 * 
+	 * @param level the level being played, starting from 0
+	 * 
+	 * @param tick the number of ticks run since the game started
+	 * 
+	 * @param keyCode the key that was pressed
+	 * 
+	 * @param latency the time from the key event to the press being applied, in nanoseconds
+	 */
+	public void commit(int level, long tick, int keyCode, long latency) {
+		this.level = level;
+		this.tick = tick;
+		this.keyCode = keyCode;
+		this.latency = latency;
+		commit();
+	}
+}
\ No newline at end of file
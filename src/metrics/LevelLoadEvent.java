@@ -0,0 +1,49 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class is a Java Flight Recorder event spanning the reading of one level's starting layout, either from the
+ * level pack or by parsing its text file. Upcoming levels are read in the background, so this event usually happens
+ * on the level loader's thread.
+ * 
+ * @author Jeffrey Sun
+ */
+@Name("cryptraider.LevelLoad")
+@Label("Level Load")
+@Category("Crypt Raider")
+@Description("Reading a level's starting layout")
+public final class LevelLoadEvent extends Event {
+
+	@Label("Level")
+	@Description("Level being read, starting from 0")
+	private int level;
+
+	@Label("Tick")
+	@Description("Number of ticks run since the game started when the level was asked for")
+	private long tick;
+
+	@Label("From Pack")
+	@Description("Whether the level came from the compiled level pack rather than a text file")
+	private boolean fromPack;
+
+	/**
+	 * Ends the event and records it, if the flight recorder is recording it
+	 * 
+	 * @param level the level read, starting from 0
+	 * 
+	 * @param tick the number of ticks run since the game started when the level was asked for
+	 * 
+	 * @param fromPack whether the level came from the level pack rather than a text file
+	 */
+	public void commit(int level, long tick, boolean fromPack) {
+		this.level = level;
+		this.tick = tick;
+		this.fromPack = fromPack;
+		commit();
+	}
+}
\ No newline at end of file
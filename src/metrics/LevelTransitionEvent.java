@@ -0,0 +1,57 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * This class is a Java Flight Recorder event spanning a transition between levels, from the level being completed to
+ * the next one starting. Most of that time is spent on the transition screen waiting for the player, so the time
+ * taken to start the next level once asked is recorded separately.
+ * 
+ * @author Jeffrey Sun
+ */
+@Name("cryptraider.LevelTransition")
+@Label("Level Transition")
+@Category("Crypt Raider")
+@Description("From completing a level to starting the next one")
+public final class LevelTransitionEvent extends Event {
+
+	@Label("From Level")
+	private int fromLevel;
+
+	@Label("Level")
+	@Description("Level started, starting from 0")
+	private int level;
+
+	@Label("Tick")
+	@Description("Number of ticks run since the game started")
+	private long tick;
+
+	@Label("Start Time")
+	@Description("Time taken to start the next level once the player asked for it")
+	@Timespan(Timespan.NANOSECONDS)
+	private long startTime;
+
+	/**
+	 * Ends the event and records it, if the flight recorder is recording it
+	 * 
+	 * @param fromLevel the level completed, starting from 0
+	 * 
+	 * @param level the level started, starting from 0
+	 * 
+	 * @param tick the number of ticks run since the game started
+	 * 
+	 * @param startTime the time taken to start the next level, in nanoseconds
+	 */
+	public void commit(int fromLevel, int level, long tick, long startTime) {
+		this.fromLevel = fromLevel;
+		this.level = level;
+		this.tick = tick;
+		this.startTime = startTime;
+		commit();
+	}
+}
\ No newline at end of file
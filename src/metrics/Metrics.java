@@ -0,0 +1,111 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class holds the game's metrics: how long each part of a tick and each frame takes, and how many objects are
+ * moving. Recording is off until enabled, and while it's off timing a part of the game costs a single read of a
+ * flag. While it's on, recording never allocates.
+ * 
+ * The metrics can be read directly, through JMX under the name cryptraider:type=Metrics once registerMBean() has been
+ * called, or on the overlay the view shows.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Metrics {
+
+	public static final String MBEAN_NAME = "cryptraider:type=Metrics";
+
+	// Times, in nanoseconds
+	public static final Histogram GRAVITY = new Histogram("gravity");
+	public static final Histogram ENEMY_MOVE = new Histogram("enemyMove");
+	public static final Histogram PLAYER_MOVE = new Histogram("playerMove");
+	public static final Histogram EXPLOSION = new Histogram("explosion");
+	public static final Histogram PAINT = new Histogram("paint");
+	public static final Histogram TICK_LATENESS = new Histogram("tickLateness");
+
+	public static final Gauge FALLING_OBJECTS = new Gauge("fallingObjects"); // Objects that fell in the last tick
+	public static final Gauge MUMMIES = new Gauge("mummies");
+
+	private static final List<Histogram> histograms = Collections.unmodifiableList(
+			Arrays.asList(GRAVITY, ENEMY_MOVE, PLAYER_MOVE, EXPLOSION, PAINT, TICK_LATENESS));
+	private static final List<Gauge> gauges = Collections.unmodifiableList(Arrays.asList(FALLING_OBJECTS, MUMMIES));
+
+	private static volatile boolean enabled = Boolean.getBoolean("cryptraider.metrics");
+
+	private Metrics() {}
+
+	/**
+	 * Returns whether metrics are being recorded
+	 * 
+	 * @return whether metrics are being recorded
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns recording metrics on or off. Metrics are off unless the cryptraider.metrics system property is true.
+	 * 
+	 * @param isEnabled whether to record metrics
+	 */
+	public static void setEnabled(boolean isEnabled) {
+		enabled = isEnabled;
+	}
+
+	/**
+	 * Starts timing something, to be recorded by passing the result to Histogram.stop()
+	 * 
+	 * @return the System.nanoTime() now, or 0 if metrics aren't being recorded
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Returns every histogram
+	 * 
+	 * @return the histograms, in the order they're shown
+	 */
+	public static List<Histogram> getHistograms() {
+		return histograms;
+	}
+
+	/**
+	 * Returns every gauge
+	 * 
+	 * @return the gauges, in the order they're shown
+	 */
+	public static List<Gauge> getGauges() {
+		return gauges;
+	}
+
+	/**
+	 * Forgets every value recorded so far
+	 */
+	public static void reset() {
+		for(Histogram histogram : histograms) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Publishes the metrics through JMX, so that tools such as JConsole can read them and turn recording on and off
+	 */
+	public static void registerMBean() {
+		try {
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			if(!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), name);
+			}
+		} catch(JMException e) {
+			e.printStackTrace();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+/**
+ * This class publishes the metrics through JMX. Each histogram appears as its count and its mean, median, 99th
+ * percentile and largest value in microseconds, such as gravityP99Micros, and each gauge under its own name. The
+ * Enabled attribute turns recording on and off, and the reset operation forgets every value recorded so far.
+ * 
+ * @author Jeffrey Sun
+ */
+final class MetricsBean implements DynamicMBean {
+
+	private static final String ENABLED = "Enabled";
+	private static final String[] STATISTICS = { "Count", "MeanMicros", "P50Micros", "P99Micros", "MaxMicros" };
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		if(attribute.equals(ENABLED)) {
+			return Metrics.isEnabled();
+		}
+		for(Gauge gauge : Metrics.getGauges()) {
+			if(attribute.equals(gauge.getName())) {
+				return gauge.get();
+			}
+		}
+		for(Histogram histogram : Metrics.getHistograms()) {
+			if(!attribute.startsWith(histogram.getName())) {
+				continue;
+			}
+			String statistic = attribute.substring(histogram.getName().length());
+			if(statistic.equals("Count")) {
+				return histogram.getCount();
+			} else if(statistic.equals("MeanMicros")) {
+				return histogram.getMean() / 1e3;
+			} else if(statistic.equals("P50Micros")) {
+				return histogram.getPercentile(0.5) / 1e3;
+			} else if(statistic.equals("P99Micros")) {
+				return histogram.getPercentile(0.99) / 1e3;
+			} else if(statistic.equals("MaxMicros")) {
+				return histogram.getMax() / 1e3;
+			}
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException {
+		if(!attribute.getName().equals(ENABLED)) {
+			throw new AttributeNotFoundException(attribute.getName() + " can't be set");
+		}
+		if(!(attribute.getValue() instanceof Boolean)) {
+			throw new InvalidAttributeValueException(ENABLED + " must be a boolean");
+		}
+		Metrics.setEnabled((Boolean) attribute.getValue());
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for(String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			} catch(AttributeNotFoundException e) {
+				// Attributes that don't exist are left out of the list
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		AttributeList set = new AttributeList();
+		for(Attribute attribute : attributes.asList()) {
+			try {
+				setAttribute(attribute);
+				set.add(attribute);
+			} catch(AttributeNotFoundException | InvalidAttributeValueException e) {
+				// Attributes that can't be set are left out of the list
+			}
+		}
+		return set;
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		if(actionName.equals("reset")) {
+			Metrics.reset();
+			return null;
+		}
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+		attributes.add(new MBeanAttributeInfo(ENABLED, "boolean", "Whether metrics are being recorded", true, true,
+				true));
+		for(Histogram histogram : Metrics.getHistograms()) {
+			for(String statistic : STATISTICS) {
+				String type = statistic.equals("Count") ? "long" : "double";
+				attributes.add(new MBeanAttributeInfo(histogram.getName() + statistic, type,
+						statistic + " of " + histogram.getName(), true, false, false));
+			}
+		}
+		for(Gauge gauge : Metrics.getGauges()) {
+			attributes.add(new MBeanAttributeInfo(gauge.getName(), "long", "Latest " + gauge.getName(), true, false,
+					false));
+		}
+		MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Forgets every value recorded so far",
+				new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+		return new MBeanInfo(getClass().getName(), "Crypt Raider metrics",
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null,
+				new MBeanOperationInfo[] { reset }, null);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class is a Java Flight Recorder event spanning one paint of the level, which is either a full repaint of the
+ * view or a partial one of the tiles that changed
+ * 
+ * @author Jeffrey Sun
+ */
+@Name("cryptraider.Repaint")
+@Label("Repaint")
+@Category("Crypt Raider")
+@Description("Painting the level, in full or in part")
+@StackTrace(false)
+public final class RepaintEvent extends Event {
+
+	@Label("Level")
+	private int level;
+
+	@Label("Tick")
+	@Description("Number of ticks run since the game started when the snapshot being painted was taken")
+	private long tick;
+
+	@Label("Full")
+	@Description("Whether the whole view was painted rather than only the tiles that changed")
+	private boolean full;
+
+	@Label("Area")
+	@Description("Number of pixels painted")
+	private long area;
+
+	/**
+	 * Ends the event and records it, if the flight recorder is recording it
+	 * 
+	 * @param level the level being painted, starting from 0
+	 * 
+	 * @param tick the number of ticks run since the game started when the snapshot was taken
+	 * 
+	 * @param full whether the whole view was painted
+	 * 
+	 * @param area the number of pixels painted
+	 */
+	public void commit(int level, long tick, boolean full, long area) {
+		this.level = level;
+		this.tick = tick;
+		this.full = full;
+		this.area = area;
+		commit();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class is a Java Flight Recorder event spanning one tick of the game, from its start to its end, so that
+ * recorded CPU samples and garbage collections can be matched to the ticks they happened in
+ * 
+ * @author Jeffrey Sun
+ */
+@Name("cryptraider.Tick")
+@Label("Tick")
+@Category("Crypt Raider")
+@Description("One tick of the game loop")
+@StackTrace(false)
+public final class TickEvent extends Event {
+
+	@Label("Level")
+	private int level;
+
+	@Label("Tick")
+	@Description("Number of ticks run since the game started, counting this one")
+	private long tick;
+
+	/**
+	 * Ends the event and records it, if the flight recorder is recording it
+	 * 
+	 * @param level the level being played, starting from 0
+	 * 
+	 * @param tick the number of ticks run since the game started
+	 */
+	public void commit(int level, long tick) {
+		this.level = level;
+		this.tick = tick;
+		commit();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,555 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * This class stores a game board of any size, one byte per cell, indexed by row * width + col. The low bits of each
+ * cell hold the tile type and the high bit stores whether the object in the cell is falling.
+ * 
+ * The cells are kept in chunks of CHUNK_SIZE consecutive cells, so a cell's chunk is found with a shift, and a board's
+ * own last chunk only has room for the cells left over, so a small board takes no more than its cells. Chunks are
+ * copied on write: copying a board only copies the list of chunks, and a chunk is only duplicated the first time
+ * either board changes it. Chunks whose cells are all the same, such as the solid rock around a large map, are
+ * shared by every board that has one, so boards cost memory in proportion to the parts that differ rather than their
+ * area.
+ * 
+ * Reading the board is public so the view can draw it, while changing it is left to the model.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Board {
+
+	static final int CHUNK_BITS = 12;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS; // Cells per chunk
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static final int TYPE_MASK = 0x7F;
+	private static final int FALLING = 0x80;
+	private static final long NO_CHECKSUM = -1;
+
+	private static final byte[][] uniformChunks = new byte[256][]; // Shared chunks with every cell the same
+	private static final int[][] CHUNK_SHIFT = byteTables(crcShift(CHUNK_SIZE)); // Moves a checksum past a chunk
+
+	private final int width;
+	private final int height;
+	private final int numCells;
+	private final byte[][] chunks;
+	private final boolean[] owned; // Whether each chunk belongs to this board alone, and so can be changed in place
+	private final long[] checksums; // CRC-32 of each chunk, or NO_CHECKSUM if it has changed since it was worked out
+	private long[] lastChunkShift; // Moves a checksum past the last chunk, if it's shorter than the others
+	private CRC32 chunkCrc; // Works out the checksums of changed chunks, created the first time one is needed
+	private ChangeJournal journal; // Records changed cells, or null if changes aren't being recorded
+	private History history; // Records old cell contents for rewinding, or null if the board isn't being recorded
+
+	/**
+	 * Constructor that creates an empty board with the given dimensions
+	 * 
+	 * @param width the number of columns on the board
+	 * 
+	 * @param height the number of rows on the board
+	 */
+	Board(int width, int height) {
+		this.width = width;
+		this.height = height;
+		numCells = width * height;
+		chunks = new byte[(numCells + CHUNK_MASK) >>> CHUNK_BITS][];
+		owned = new boolean[chunks.length];
+		checksums = new long[chunks.length];
+		Arrays.fill(chunks, uniformChunk((byte) 0));
+		Arrays.fill(checksums, NO_CHECKSUM);
+	}
+
+	/**
+	 * Returns a copy of this board, which can be read on another thread while this board carries on changing. Only
+	 * the list of chunks is copied, so this costs as much as the number of chunks rather than the number of cells.
+	 * 
+	 * @return a new board with the same cells as this one
+	 */
+	public Board copy() {
+		Board board = new Board(width, height);
+		board.copyFrom(this);
+		return board;
+	}
+
+	/**
+	 * Overwrites the cells of this board with the cells of a board of the same size, sharing its chunks until either
+	 * board changes them
+	 * 
+	 * @param other the board to copy the cells from
+	 */
+	void copyFrom(Board other) {
+		System.arraycopy(other.chunks, 0, chunks, 0, chunks.length);
+		System.arraycopy(other.checksums, 0, checksums, 0, chunks.length);
+		Arrays.fill(owned, false);
+		for(int c = 0; c != chunks.length; ++c) {
+			if(other.owned[c]) {
+				other.owned[c] = false; // Only written when set, so boards that are never changed are safe to share
+			}
+		}
+		if(journal != null) {
+			journal.recordAll();
+		}
+	}
+
+	/**
+	 * Overwrites the cells of this board with bytes read from the given buffer
+	 * 
+	 * @param buffer the buffer to read from
+	 * 
+	 * @param offset the position in the buffer of the first cell
+	 */
+	void read(ByteBuffer buffer, int offset) {
+		for(int c = 0; c != chunks.length; ++c) {
+			if(!owned[c]) {
+				chunks[c] = new byte[chunkLength(c)];
+				owned[c] = true;
+			}
+			buffer.get(offset + (c << CHUNK_BITS), chunks[c], 0, chunkLength(c));
+			checksums[c] = NO_CHECKSUM;
+		}
+		if(journal != null) {
+			journal.recordAll();
+		}
+	}
+
+	/**
+	 * Writes the cells of this board to the given stream, one byte per cell
+	 * 
+	 * @param out the stream to write to
+	 * 
+	 * @throws IOException if the stream can't be written
+	 */
+	void write(OutputStream out) throws IOException {
+		for(int c = 0; c != chunks.length; ++c) {
+			out.write(chunks[c], 0, chunkLength(c));
+		}
+	}
+
+	/**
+	 * Writes the cells of this board to the given buffer, one byte per cell
+	 * 
+	 * @param buffer the buffer to write to
+	 * 
+	 * @param offset the position in the buffer for the first cell
+	 */
+	void write(ByteBuffer buffer, int offset) {
+		for(int c = 0; c != chunks.length; ++c) {
+			buffer.put(offset + (c << CHUNK_BITS), chunks[c], 0, chunkLength(c));
+		}
+	}
+
+	/**
+	 * Replaces every chunk whose cells are all the same with the shared chunk for those contents, so that the large
+	 * unchanging areas of a level take no memory of their own
+	 */
+	void compress() {
+		for(int c = 0; c != chunks.length; ++c) {
+			if(uniformType(c) == -1) {
+				continue;
+			}
+			byte[] shared = uniformChunk(chunks[c][0]);
+			if(chunks[c] != shared) {
+				chunks[c] = shared;
+				owned[c] = false;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of columns on the board
+	 * 
+	 * @return the number of columns on the board
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of rows on the board
+	 * 
+	 * @return the number of rows on the board
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the type of the tile at the given position
+	 * 
+	 * @param row the row of the tile
+	 * 
+	 * @param col the column of the tile
+	 * 
+	 * @return character representing the tile's type
+	 */
+	public char getType(int row, int col) {
+		return type(row * width + col);
+	}
+
+	/**
+	 * Returns whether the object at the given position is falling
+	 * 
+	 * @param row the row of the tile
+	 * 
+	 * @param col the column of the tile
+	 * 
+	 * @return whether the object is currently falling
+	 */
+	public boolean isFalling(int row, int col) {
+		return falling(row * width + col);
+	}
+
+	/**
+	 * Finds the next cell whose contents differ from those of another board of the same size. Chunks the two boards
+	 * share are skipped without being compared, so comparing a board with a recent copy of itself costs as much as
+	 * the chunks changed since.
+	 * 
+	 * @param other the board to compare with
+	 * 
+	 * @param from the index of the first cell to compare
+	 * 
+	 * @return the index of the first differing cell at or after from, or -1 if there isn't one
+	 */
+	public int nextDifference(Board other, int from) {
+		for(int i = from; i < numCells; i = (i | CHUNK_MASK) + 1) {
+			byte[] chunk = chunks[i >>> CHUNK_BITS], otherChunk = other.chunks[i >>> CHUNK_BITS];
+			if(chunk == otherChunk) {
+				continue;
+			}
+			int end = Math.min((i | CHUNK_MASK) + 1, numCells);
+			for(int j = i; j != end; ++j) {
+				if(chunk[j & CHUNK_MASK] != otherChunk[j & CHUNK_MASK]) {
+					return j;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a CRC-32 checksum of every cell, including the falling flags, for checking that two boards match. The
+	 * checksum of each chunk is kept until the chunk changes, so this costs as much as the chunks changed since the
+	 * last call rather than the size of the board.
+	 * 
+	 * @return the checksum of the board
+	 */
+	public int checksum() {
+		long crc = 0;
+		for(int c = 0; c != chunks.length; ++c) {
+			if(checksums[c] == NO_CHECKSUM) {
+				if(chunkCrc == null) {
+					chunkCrc = new CRC32();
+				} else {
+					chunkCrc.reset();
+				}
+				chunkCrc.update(chunks[c], 0, chunkLength(c));
+				checksums[c] = chunkCrc.getValue();
+			}
+			if(c != 0) {
+				if(chunkLength(c) == CHUNK_SIZE) {
+					crc = (CHUNK_SHIFT[0][(int) crc & 0xFF] ^ CHUNK_SHIFT[1][(int) (crc >>> 8) & 0xFF]
+							^ CHUNK_SHIFT[2][(int) (crc >>> 16) & 0xFF] ^ CHUNK_SHIFT[3][(int) (crc >>> 24)])
+							& 0xFFFFFFFFL;
+				} else {
+					if(lastChunkShift == null) {
+						lastChunkShift = crcShift(chunkLength(c));
+					}
+					crc = multiply(lastChunkShift, crc);
+				}
+			}
+			crc ^= checksums[c];
+		}
+		return (int) crc;
+	}
+
+	/**
+	 * Returns the index of the cell at the given position
+	 * 
+	 * @param row the row of the cell
+	 * 
+	 * @param col the column of the cell
+	 * 
+	 * @return the index of the cell
+	 */
+	int index(int row, int col) {
+		return row * width + col;
+	}
+
+	/**
+	 * Returns the type of the tile in the given cell
+	 * 
+	 * @param i the index of the cell
+	 * 
+	 * @return character representing the tile's type
+	 */
+	char type(int i) {
+		return (char) (chunks[i >>> CHUNK_BITS][i & CHUNK_MASK] & TYPE_MASK);
+	}
+
+	/**
+	 * Returns whether the object in the given cell is falling
+	 * 
+	 * @param i the index of the cell
+	 * 
+	 * @return whether the object is currently falling
+	 */
+	boolean falling(int i) {
+		return (chunks[i >>> CHUNK_BITS][i & CHUNK_MASK] & FALLING) != 0;
+	}
+
+	/**
+	 * Returns the type of every tile in the given chunk if they're all the same
+	 * 
+	 * @param chunk the index of the chunk, which holds the cells from chunk * CHUNK_SIZE onwards
+	 * 
+	 * @return the type of the chunk's tiles, or -1 if they differ or any of them is falling
+	 */
+	int uniformType(int chunk) {
+		byte[] cells = chunks[chunk];
+		byte first = cells[0];
+		if(cells == uniformChunks[first & 0xFF]) {
+			return first & TYPE_MASK;
+		}
+		if((first & FALLING) != 0) {
+			return -1;
+		}
+		for(int i = chunkLength(chunk) - 1; i != 0; --i) {
+			if(cells[i] != first) {
+				return -1;
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Returns the number of chunks the cells are kept in
+	 * 
+	 * @return the number of chunks
+	 */
+	int getNumChunks() {
+		return chunks.length;
+	}
+
+	/**
+	 * Sets the type of the tile in the given cell, keeping its falling flag
+	 * 
+	 * @param i the index of the cell
+	 * 
+	 * @param type the new type of the tile
+	 */
+	void setType(int i, char type) {
+		set(i, (byte) ((chunks[i >>> CHUNK_BITS][i & CHUNK_MASK] & FALLING) | type));
+	}
+
+	/**
+	 * Sets whether the object in the given cell is falling
+	 * 
+	 * @param i the index of the cell
+	 * 
+	 * @param isFalling whether the object is currently falling
+	 */
+	void setFalling(int i, boolean isFalling) {
+		byte cell = chunks[i >>> CHUNK_BITS][i & CHUNK_MASK];
+		set(i, (byte) (isFalling ? cell | FALLING : cell & TYPE_MASK));
+	}
+
+	/**
+	 * Starts recording changed cells in the given journal, which is told the whole board has changed
+	 * 
+	 * @param journal the journal to record changes in, or null to stop recording
+	 */
+	void setJournal(ChangeJournal journal) {
+		this.journal = journal;
+		if(journal != null) {
+			journal.resize(numCells);
+			journal.recordAll();
+		}
+	}
+
+	/**
+	 * Starts recording the old contents of every changed cell in the given history, so that it can be rewound
+	 * 
+	 * @param history the history to record changes in, or null to stop recording
+	 */
+	void setHistory(History history) {
+		this.history = history;
+	}
+
+	/**
+	 * Puts back the old contents of a cell while rewinding, without recording it in the history
+	 * 
+	 * @param i the index of the cell
+	 * 
+	 * @param cell the old contents of the cell
+	 */
+	void restore(int i, byte cell) {
+		byte[] chunk = chunks[i >>> CHUNK_BITS];
+		if(chunk[i & CHUNK_MASK] != cell) {
+			if(journal != null) {
+				journal.record(i);
+			}
+			writableChunk(i >>> CHUNK_BITS)[i & CHUNK_MASK] = cell;
+		}
+	}
+
+	/**
+	 * Sets the contents of the given cell, recording the cell if it has changed
+	 * 
+	 * @param i the index of the cell
+	 * 
+	 * @param cell the new contents of the cell
+	 */
+	private void set(int i, byte cell) {
+		byte[] chunk = chunks[i >>> CHUNK_BITS];
+		if(chunk[i & CHUNK_MASK] != cell) {
+			if(journal != null) {
+				journal.record(i);
+			}
+			if(history != null) {
+				history.cellChanged(i, chunk[i & CHUNK_MASK]);
+			}
+			writableChunk(i >>> CHUNK_BITS)[i & CHUNK_MASK] = cell;
+		}
+	}
+
+	/**
+	 * Returns the given chunk ready to be changed, copying it first if it's shared with another board. Shared chunks
+	 * are always full-sized, so the copy of a shared last chunk is cut down to the cells it holds.
+	 * 
+	 * @param c the index of the chunk
+	 * 
+	 * @return the chunk's cells
+	 */
+	private byte[] writableChunk(int c) {
+		if(!owned[c]) {
+			chunks[c] = Arrays.copyOf(chunks[c], chunkLength(c));
+			owned[c] = true;
+		}
+		checksums[c] = NO_CHECKSUM;
+		return chunks[c];
+	}
+
+	/**
+	 * Returns the number of the board's cells held in the given chunk, which is less than CHUNK_SIZE only for the
+	 * last chunk
+	 * 
+	 * @param c the index of the chunk
+	 * 
+	 * @return the number of cells in the chunk
+	 */
+	private int chunkLength(int c) {
+		return Math.min(CHUNK_SIZE, numCells - (c << CHUNK_BITS));
+	}
+
+	/**
+	 * Returns the shared chunk whose cells all hold the given contents, creating it the first time it's needed
+	 * 
+	 * @param cell the contents of every cell
+	 * 
+	 * @return the shared chunk, which must never be changed
+	 */
+	private static synchronized byte[] uniformChunk(byte cell) {
+		byte[] chunk = uniformChunks[cell & 0xFF];
+		if(chunk == null) {
+			chunk = new byte[CHUNK_SIZE];
+			Arrays.fill(chunk, cell);
+			uniformChunks[cell & 0xFF] = chunk;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Works out the matrix that turns the CRC-32 of some bytes into the CRC-32 of those bytes followed by the given
+	 * number of zero bytes. XORing the result with the CRC-32 of the next bytes gives the CRC-32 of both together,
+	 * which is how the checksums of the chunks are combined.
+	 * 
+	 * @param length the number of zero bytes
+	 * 
+	 * @return the matrix, as 32 columns of 32 bits each
+	 */
+	private static long[] crcShift(int length) {
+		// Start from the matrix for a single zero bit, and square it up to a whole byte
+		long[] matrix = new long[32];
+		matrix[0] = 0xEDB88320L;
+		for(int n = 1; n != 32; ++n) {
+			matrix[n] = 1L << (n - 1);
+		}
+		for(int i = 0; i != 3; ++i) {
+			matrix = square(matrix);
+		}
+
+		// Multiply together the squares for each set bit of the length
+		long[] shift = null;
+		for(int bits = length; bits != 0; bits >>>= 1) {
+			if((bits & 1) != 0) {
+				if(shift == null) {
+					shift = matrix.clone();
+				} else {
+					long[] product = new long[32];
+					for(int n = 0; n != 32; ++n) {
+						product[n] = multiply(matrix, shift[n]);
+					}
+					shift = product;
+				}
+			}
+			matrix = square(matrix);
+		}
+		return shift;
+	}
+
+	/**
+	 * Splits a matrix over GF(2) into tables of its products with every value of each byte of a vector, so that it
+	 * can be multiplied by a vector with four lookups
+	 * 
+	 * @param matrix the matrix, as 32 columns of 32 bits each
+	 * 
+	 * @return the products with each byte of the vector, lowest byte first
+	 */
+	private static int[][] byteTables(long[] matrix) {
+		int[][] tables = new int[4][256];
+		for(int b = 0; b != 4; ++b) {
+			for(int value = 0; value != 256; ++value) {
+				tables[b][value] = (int) multiply(matrix, (long) value << (8 * b));
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * Multiplies a matrix over GF(2) by itself
+	 * 
+	 * @param matrix the matrix, as 32 columns of 32 bits each
+	 * 
+	 * @return the square of the matrix
+	 */
+	private static long[] square(long[] matrix) {
+		long[] square = new long[32];
+		for(int n = 0; n != 32; ++n) {
+			square[n] = multiply(matrix, matrix[n]);
+		}
+		return square;
+	}
+
+	/**
+	 * Multiplies a matrix over GF(2) by a vector
+	 * 
+	 * @param matrix the matrix, as 32 columns of 32 bits each
+	 * 
+	 * @param vector the vector, as 32 bits
+	 * 
+	 * @return the product
+	 */
+	private static long multiply(long[] matrix, long vector) {
+		long product = 0;
+		for(int n = 0; vector != 0; ++n, vector >>>= 1) {
+			if((vector & 1) != 0) {
+				product ^= matrix[n];
+			}
+		}
+		return product;
+	}
+}
\ No newline at end of file
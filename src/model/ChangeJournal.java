@@ -0,0 +1,103 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class records which cells of the board have changed since it was last cleared, so that only those cells need
+ * to be redrawn. Each cell is recorded at most once, and changes that replace the whole board are recorded as a
+ * single flag instead of one entry per cell.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class ChangeJournal {
+
+	private int[] cells; // Indices of the changed cells, in the order they first changed
+	private long[] recorded; // Bitmap of the cells already in the journal
+	private int size;
+	private boolean allChanged;
+
+	/**
+	 * Constructor that creates an empty journal
+	 */
+	ChangeJournal() {
+		cells = new int[16];
+		recorded = new long[0];
+		size = 0;
+		allChanged = true;
+	}
+
+	/**
+	 * Returns whether the whole board has changed, such as when a level is started
+	 * 
+	 * @return whether every cell should be treated as changed
+	 */
+	public boolean isAllChanged() {
+		return allChanged;
+	}
+
+	/**
+	 * Returns the number of changed cells in the journal
+	 * 
+	 * @return the number of changed cells
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the index of a changed cell, which is its row times the board width plus its column
+	 * 
+	 * @param i the position in the journal
+	 * 
+	 * @return the index of the changed cell
+	 */
+	public int get(int i) {
+		return cells[i];
+	}
+
+	/**
+	 * Empties the journal once the changes have been handled
+	 */
+	public void clear() {
+		for(int i = 0; i != size; ++i) {
+			recorded[cells[i] >>> 6] = 0;
+		}
+		size = 0;
+		allChanged = false;
+	}
+
+	/**
+	 * Makes room for a board with the given number of cells
+	 * 
+	 * @param numCells the number of cells on the board
+	 */
+	void resize(int numCells) {
+		if(recorded.length != (numCells + 63) >>> 6) {
+			recorded = new long[(numCells + 63) >>> 6];
+			size = 0;
+		}
+	}
+
+	/**
+	 * Records that the given cell has changed
+	 * 
+	 * @param cell the index of the cell
+	 */
+	void record(int cell) {
+		long bit = 1L << cell;
+		if((recorded[cell >>> 6] & bit) == 0) {
+			recorded[cell >>> 6] |= bit;
+			if(size == cells.length) {
+				cells = Arrays.copyOf(cells, size * 2);
+			}
+			cells[size++] = cell;
+		}
+	}
+
+	/**
+	 * Records that every cell has changed
+	 */
+	void recordAll() {
+		allChanged = true;
+	}
+}
\ No newline at end of file
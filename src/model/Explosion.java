@@ -0,0 +1,165 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class works out which tiles an explosion destroys without changing the board. An explosion destroys the
+ * explodable tiles around its center, and every bomb, mummy or player caught in it explodes in turn. Chain explosions
+ * are followed with an explicit stack instead of recursion, visiting the tiles in the same order as exploding them one
+ * at a time would, so a chain through a dense field of bombs can't overflow the call stack. An explosion that reaches
+ * the player destroys him and then stops, leaving the rest of its tiles untouched.
+ * 
+ * @author Jeffrey Sun
+ */
+final class Explosion {
+
+	private static final int CENTER = 4; // Position of the center among the 9 tiles of an explosion
+	private static final int DONE = 9;
+
+	// Explosions still being worked through, innermost last
+	private int[] centers;
+	private int[] nextTiles; // Position of the next tile each explosion will destroy, from 0 to 8, or DONE
+	private int depth;
+
+	private int[] cells; // Cells destroyed, in the order they're destroyed
+	private int size;
+	private long[] destroyed; // Bitmap of the destroyed cells
+	private boolean hitPlayer;
+
+	/**
+	 * Constructor that creates an explosion with room for a few chain explosions
+	 */
+	Explosion() {
+		centers = new int[16];
+		nextTiles = new int[16];
+		cells = new int[16];
+		destroyed = new long[0];
+	}
+
+	/**
+	 * Works out the tiles destroyed by an explosion centered on the given cell, including chain explosions
+	 * 
+	 * @param board the board the explosion happens on
+	 * 
+	 * @param center the index of the center cell
+	 */
+	void resolve(Board board, int center) {
+		clear(board.getWidth() * board.getHeight());
+		int width = board.getWidth();
+
+		push(center);
+		while(depth != 0) {
+			int top = depth - 1;
+			int tile = nextTiles[top];
+			if(tile == DONE) {
+				--depth;
+				continue;
+			}
+			nextTiles[top] = tile + 1;
+
+			int target = centers[top] + (tile / 3 - 1) * width + (tile % 3 - 1);
+			char type = isDestroyed(target) ? Model.BACKGROUND : board.type(target);
+			if(!TileRules.canExplode(type)) {
+				continue;
+			}
+			destroy(target);
+
+			if(type == Model.PLAYER) {
+				// The explosion stops once the player has exploded
+				hitPlayer = true;
+				nextTiles[top] = DONE;
+				if(tile != CENTER) {
+					push(target);
+				}
+			} else if((type == Model.BOMB || type == Model.MUMMY) && tile != CENTER) {
+				push(target); // Causes a chain explosion
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of cells destroyed
+	 * 
+	 * @return the number of cells destroyed
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a destroyed cell
+	 * 
+	 * @param i the position of the cell in the order the cells were destroyed
+	 * 
+	 * @return the index of the destroyed cell
+	 */
+	int get(int i) {
+		return cells[i];
+	}
+
+	/**
+	 * Returns whether the player was caught in the explosion
+	 * 
+	 * @return whether the player exploded
+	 */
+	boolean hitPlayer() {
+		return hitPlayer;
+	}
+
+	/**
+	 * Forgets the previous explosion and makes room for a board with the given number of cells
+	 * 
+	 * @param numCells the number of cells on the board
+	 */
+	private void clear(int numCells) {
+		if(destroyed.length != (numCells + 63) >>> 6) {
+			destroyed = new long[(numCells + 63) >>> 6];
+		} else {
+			for(int i = 0; i != size; ++i) {
+				destroyed[cells[i] >>> 6] = 0;
+			}
+		}
+		size = 0;
+		depth = 0;
+		hitPlayer = false;
+	}
+
+	/**
+	 * Starts an explosion centered on the given cell, to be worked through before the explosion that set it off
+	 * 
+	 * @param center the index of the center cell
+	 */
+	private void push(int center) {
+		if(depth == centers.length) {
+			centers = Arrays.copyOf(centers, depth * 2);
+			nextTiles = Arrays.copyOf(nextTiles, depth * 2);
+		}
+		centers[depth] = center;
+		nextTiles[depth] = 0;
+		++depth;
+	}
+
+	/**
+	 * Marks the given cell as destroyed
+	 * 
+	 * @param cell the index of the cell
+	 */
+	private void destroy(int cell) {
+		destroyed[cell >>> 6] |= 1L << cell;
+		if(size == cells.length) {
+			cells = Arrays.copyOf(cells, size * 2);
+		}
+		cells[size++] = cell;
+	}
+
+	/**
+	 * Returns whether the given cell has already been destroyed
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return whether the cell has been destroyed
+	 */
+	private boolean isDestroyed(int cell) {
+		return (destroyed[cell >>> 6] & (1L << cell)) != 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,339 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the walking distance from every cell to the player, shared by all enemies so that each one can
+ * step along a shortest path to the player by moving to its neighbour with the lowest distance. Enemies can walk
+ * through empty tiles and through each other, but not through sand, rocks or walls.
+ * 
+ * Changes to the terrain are repaired around the tiles that changed. When a tile is opened up, such as by digging sand
+ * or an explosion, the shorter paths through it are spread out from that tile alone. When a tile is blocked, only the
+ * cells left without a neighbour one step closer to the player are cleared, nearest first, and they're then filled in
+ * again from the cells around them, so a repair costs as much as the distances that change.
+ * 
+ * When the player moves, the distances are worked out again from the player's new cell, but only out to one step
+ * past the farthest enemy, which is as far as any enemy looks. Moving the player even one step changes nearly every
+ * distance on the board, so repairing them one by one costs more than starting again, and it's the enemies' spread
+ * rather than the size of the board that bounds the cost. If a blocked tile pushes a path past that range, the
+ * distances are worked out again the next time they're needed.
+ * 
+ * Paths are only followed up to MAX_DISTANCE steps from the player, so on a large map the field covers the area
+ * around the player rather than the whole board. Distances are kept in pages of one board chunk each, created the
+ * first time a path reaches the chunk, and are stamped with the generation of the field that set them so that
+ * starting again from scratch doesn't have to clear them.
+ * 
+ * @author Jeffrey Sun
+ */
+final class FlowField {
+
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+	static final int MAX_DISTANCE = 256; // Longest path followed, longer than any path on an 18 by 12 board
+
+	private long[][] distances; // Generation in the high half and distance in the low half, in pages of cells
+	private int generation; // Distances from older generations are out of date and count as unreachable
+	private int[] queue; // Cells waiting to spread their distance to their neighbours
+	private long[] repairs; // Distance in the high half and cell in the low half of each cell being repaired
+	private int width;
+	private int numCells;
+	private int source; // Cell the distances are measured from
+	private int limit; // Longest path followed since the distances were last worked out from scratch
+	private int enemiesLeft; // Enemies not yet reached while the distances are being worked out from scratch
+	private boolean valid; // Whether the distances match the board
+
+	/**
+	 * Constructor that creates a field that will be worked out when first updated
+	 */
+	FlowField() {
+		distances = new long[0][];
+		queue = new int[16];
+		repairs = new long[16];
+		valid = false;
+	}
+
+	/**
+	 * Returns whether enemies can walk through tiles of the given type
+	 * 
+	 * @param type the type of the tile
+	 * 
+	 * @return whether the tile is walkable
+	 */
+	static boolean isWalkable(char type) {
+		return type == Model.BACKGROUND || type == Model.PLAYER || type == Model.MUMMY;
+	}
+
+	/**
+	 * Returns the walking distance from the given cell to the player
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return the number of steps to the player, or UNREACHABLE if there is no path
+	 */
+	int get(int cell) {
+		long[] page = distances[cell >>> Board.CHUNK_BITS];
+		if(page == null) {
+			return UNREACHABLE;
+		}
+		long distance = page[cell & (Board.CHUNK_SIZE - 1)];
+		return (int) (distance >>> 32) == generation ? (int) distance : UNREACHABLE;
+	}
+
+	/**
+	 * Marks the distances as out of date, so they're worked out from scratch the next time the field is updated
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Brings the distances up to date after a tile has changed type
+	 * 
+	 * @param board the board the tile is on
+	 * 
+	 * @param cell the index of the changed cell
+	 * 
+	 * @param oldType the type of the tile before the change
+	 */
+	void cellChanged(Board board, int cell, char oldType) {
+		boolean wasWalkable = isWalkable(oldType);
+		boolean isWalkable = isWalkable(board.type(cell));
+		if(!valid || wasWalkable == isWalkable) {
+			return;
+		}
+		if(!isWalkable) {
+			if(cell == source) {
+				valid = false; // Something filled the player's cell, so there's nothing left to measure from
+			} else {
+				repair(board, cell);
+			}
+			return;
+		}
+
+		// Spread any shorter paths through the opened tile
+		int best = Math.min(Math.min(distanceAt(cell + width), distanceAt(cell - width)),
+				Math.min(distanceAt(cell + 1), distanceAt(cell - 1)));
+		if(best < limit && best + 1 < get(cell)) {
+			set(cell, best + 1);
+			queue[0] = cell;
+			spread(board, 1);
+		}
+	}
+
+	/**
+	 * Makes sure the distances are measured to the player's current cell, working them out again if the player has
+	 * moved or they were marked out of date. Paths are followed until every enemy and its neighbours have a distance.
+	 * 
+	 * @param board the board the player is on
+	 * 
+	 * @param player the index of the player's cell
+	 * 
+	 * @param numEnemies the number of enemies on the board
+	 */
+	void update(Board board, int player, int numEnemies) {
+		if(valid && source == player) {
+			return;
+		}
+		numCells = board.getWidth() * board.getHeight();
+		int numPages = (numCells + Board.CHUNK_SIZE - 1) >>> Board.CHUNK_BITS;
+		if(distances.length != numPages || generation == Integer.MAX_VALUE) {
+			distances = new long[numPages][];
+			generation = 0;
+		}
+		++generation; // Every distance worked out before is now unreachable
+		width = board.getWidth();
+		source = player;
+		valid = true;
+		limit = MAX_DISTANCE;
+		enemiesLeft = numEnemies;
+
+		set(player, 0);
+		queue[0] = player;
+		spread(board, 1);
+		enemiesLeft = 0;
+	}
+
+	/**
+	 * Repairs the distances after the given cell's tile has been blocked. The cell and every cell whose shortest paths
+	 * all ran through it are cleared in order of distance, so a cell is only cleared once no neighbour is left one step
+	 * closer. Each cleared cell that can still be walked through then starts again from its nearest remaining
+	 * neighbour, and the new distances are spread nearest first, merged with the cells they reach.
+	 * 
+	 * @param board the board the cell is on
+	 * 
+	 * @param cell the index of the cell
+	 */
+	private void repair(Board board, int cell) {
+		int distance = get(cell);
+		if(distance == UNREACHABLE) {
+			return; // No path ran through the cell
+		}
+		clear(cell);
+		repairs[0] = (long) distance << 32 | cell;
+		int numCleared = 1;
+		for(int i = 0; i != numCleared; ++i) {
+			int cleared = (int) repairs[i];
+			int next = (int) (repairs[i] >>> 32) + 1;
+			numCleared = unsupport(cleared + width, next, numCleared);
+			numCleared = unsupport(cleared - width, next, numCleared);
+			numCleared = unsupport(cleared + 1, next, numCleared);
+			numCleared = unsupport(cleared - 1, next, numCleared);
+		}
+
+		// Start each cleared cell again from its nearest neighbour that kept its distance
+		int numWalkable = 0;
+		int numSeeds = 0;
+		for(int i = 0; i != numCleared; ++i) {
+			int cleared = (int) repairs[i];
+			if(!isWalkable(board.type(cleared))) {
+				continue;
+			}
+			++numWalkable;
+			int best = Math.min(Math.min(distanceAt(cleared + width), distanceAt(cleared - width)),
+					Math.min(distanceAt(cleared + 1), distanceAt(cleared - 1)));
+			if(best < limit) {
+				repairs[numSeeds++] = (long) (best + 1) << 32 | cleared;
+			}
+		}
+		Arrays.sort(repairs, 0, numSeeds);
+
+		// Only cleared cells can be lowered, and each is set once, either as a seed or from the queue
+		int numSet = 0;
+		int head = 0, tail = 0, seed = 0;
+		while(head != tail || seed != numSeeds) {
+			int from;
+			if(seed != numSeeds && (head == tail || (int) (repairs[seed] >>> 32) <= get(queue[head]))) {
+				from = (int) repairs[seed];
+				int seedDistance = (int) (repairs[seed++] >>> 32);
+				if(seedDistance >= get(from)) {
+					continue; // Reached more cheaply from another seed
+				}
+				set(from, seedDistance);
+				++numSet;
+			} else {
+				from = queue[head++];
+			}
+			int next = get(from) + 1;
+			tail = lower(board, from + width, next, tail);
+			tail = lower(board, from - width, next, tail);
+			tail = lower(board, from + 1, next, tail);
+			tail = lower(board, from - 1, next, tail);
+		}
+		if(numSet + tail != numWalkable && limit != MAX_DISTANCE) {
+			valid = false; // A path now runs past the range worked out, where an enemy may be
+		}
+	}
+
+	/**
+	 * Clears the given cell if its distance is the given one and it has no neighbour one step closer to the player,
+	 * adding it to the cells being repaired
+	 * 
+	 * @param cell the index of the cell, which may be off the board
+	 * 
+	 * @param distance the distance of a path through a cleared neighbour
+	 * 
+	 * @param numCleared the number of cells cleared so far
+	 * 
+	 * @return the new number of cells cleared
+	 */
+	private int unsupport(int cell, int distance, int numCleared) {
+		if(distanceAt(cell) != distance || distanceAt(cell + width) == distance - 1
+				|| distanceAt(cell - width) == distance - 1 || distanceAt(cell + 1) == distance - 1
+				|| distanceAt(cell - 1) == distance - 1) {
+			return numCleared;
+		}
+		clear(cell);
+		if(numCleared == repairs.length) {
+			repairs = Arrays.copyOf(repairs, numCleared * 2);
+		}
+		repairs[numCleared] = (long) distance << 32 | cell;
+		return numCleared + 1;
+	}
+
+	/**
+	 * Spreads distances from the queued cells to their walkable neighbours, breadth first, until no distance can be
+	 * lowered any further. Cells are reached in order of distance, so each cell is queued at most once.
+	 * 
+	 * @param board the board the cells are on
+	 * 
+	 * @param length the number of cells in the queue
+	 */
+	private void spread(Board board, int length) {
+		int head = 0, tail = length;
+		while(head != tail) {
+			int cell = queue[head++];
+			int distance = get(cell) + 1;
+			tail = lower(board, cell + width, distance, tail);
+			tail = lower(board, cell - width, distance, tail);
+			tail = lower(board, cell + 1, distance, tail);
+			tail = lower(board, cell - 1, distance, tail);
+		}
+	}
+
+	/**
+	 * Lowers the distance of the given cell if it's walkable and the given distance is shorter, queueing it to spread
+	 * the new distance to its own neighbours
+	 * 
+	 * @param board the board the cell is on
+	 * 
+	 * @param cell the index of the cell, which may be off the board
+	 * 
+	 * @param distance the distance of the path through the cell's neighbour
+	 * 
+	 * @param tail the end of the queue
+	 * 
+	 * @return the new end of the queue
+	 */
+	private int lower(Board board, int cell, int distance, int tail) {
+		if(cell >= 0 && cell < numCells && distance <= limit && distance < get(cell)
+				&& isWalkable(board.type(cell))) {
+			set(cell, distance);
+			if(enemiesLeft != 0 && board.type(cell) == Model.MUMMY && --enemiesLeft == 0) {
+				limit = Math.min(distance + 1, MAX_DISTANCE); // Far enough for the last enemy to compare its neighbours
+			}
+			if(tail == queue.length) {
+				queue = Arrays.copyOf(queue, tail * 2);
+			}
+			queue[tail++] = cell;
+		}
+		return tail;
+	}
+
+	/**
+	 * Sets the distance of the given cell, creating the cell's page if it doesn't have one yet
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @param distance the number of steps to the player
+	 */
+	private void set(int cell, int distance) {
+		long[] page = distances[cell >>> Board.CHUNK_BITS];
+		if(page == null) {
+			page = new long[Board.CHUNK_SIZE]; // Generation 0, which is never current
+			distances[cell >>> Board.CHUNK_BITS] = page;
+		}
+		page[cell & (Board.CHUNK_SIZE - 1)] = (long) generation << 32 | distance;
+	}
+
+	/**
+	 * Makes the given cell unreachable until a path to it is found again
+	 * 
+	 * @param cell the index of the cell
+	 */
+	private void clear(int cell) {
+		long[] page = distances[cell >>> Board.CHUNK_BITS];
+		if(page != null) {
+			page[cell & (Board.CHUNK_SIZE - 1)] = 0; // Generation 0, which is never current
+		}
+	}
+
+	/**
+	 * Returns the distance of the given cell, treating cells off the board as unreachable
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return the number of steps to the player, or UNREACHABLE
+	 */
+	private int distanceAt(int cell) {
+		return cell >= 0 && cell < numCells ? get(cell) : UNREACHABLE;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package model;
+
+/**
+ * This interface is notified by the model when the outcome of the game changes. Listeners are called on the thread
+ * that is running the model.
+ * 
+ * @author Jeffrey Sun
+ */
+public interface GameListener {
+
+	/**
+	 * Called when a new level has been loaded and can be played
+	 */
+	void levelStarted();
+
+	/**
+	 * Called when the last orb of the level has fallen into the portal
+	 */
+	void levelComplete();
+
+	/**
+	 * Called when the player has been exploded
+	 */
+	void gameOver();
+
+	/**
+	 * Called when the player asks for the next level after completing the last one
+	 */
+	void gameComplete();
+}
\ No newline at end of file
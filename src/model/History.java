@@ -0,0 +1,422 @@
+package model;
+
+/**
+ * This class is the undo log that lets the model rewind. The board and the object lists report every change they make
+ * as a small entry in a fixed-size ring buffer, holding only what the change overwrote, and a mark is added at the end
+ * of every tick. Rewinding undoes entries newest first back to the mark of the tick being rewound to, so it costs
+ * as much as the changes being undone rather than the size of the board.
+ * 
+ * Once the ring is full the oldest entries are overwritten, so only the most recent ticks can be undone entry by entry.
+ * To reach further back, a keyframe is kept every KEYFRAME_INTERVAL ticks, and rewinding past the oldest mark jumps to
+ * the newest keyframe before the tick being rewound to. A keyframe is a copy of the board, which shares its chunks with
+ * the board until they change, along with the rest of the saved state.
+ * 
+ * @author Jeffrey Sun
+ */
+final class History {
+
+	static final int GRAVITY_LIST = 0;
+	static final int ENEMY_LIST = 1;
+
+	// Entry types, each entry being a header holding the type and an argument followed by a value
+	private static final int CELL = 0; // Argument is the old contents, value is the cell
+	private static final int ADD = 1; // Argument is the list
+	private static final int MOVE = 2; // Argument is the list and slot, value is the old cell
+	private static final int REMOVE = 3; // Argument is the list and slot, value is the old cell
+	private static final int AWAKE = 4; // Argument is the list and slot, value is 1 if the slot was awake
+	private static final int GAP = 5; // Argument is the list and a slot removed by compacting it
+	private static final int COMPACT = 6; // Argument is the list, value is its size before compacting
+
+	private static final int LOG_SIZE = 1 << 16; // Entries in the ring buffer
+	private static final int MAX_MARKS = 1 << 12; // Ticks that can be rewound entry by entry, at most
+	private static final int KEYFRAME_INTERVAL = 40;
+	private static final int MAX_KEYFRAMES = 32;
+
+	private final int[] log = new int[LOG_SIZE * 2];
+	private long head; // Position of the next entry, counting every entry ever added
+	private long tail; // Position of the oldest entry that hasn't been overwritten
+
+	// Marks, indexed by tick modulo MAX_MARKS
+	private final long[] markPositions = new long[MAX_MARKS]; // Position of the first entry after each mark
+	private final int[] markPlayerRows = new int[MAX_MARKS];
+	private final int[] markPlayerCols = new int[MAX_MARKS];
+	private final int[] markOrbs = new int[MAX_MARKS];
+	private final int[] markStates = new int[MAX_MARKS];
+	private int tick; // Ticks since the level started
+	private int oldestMark; // Oldest tick that can be undone to entry by entry
+
+	// Keyframes, indexed by tick / KEYFRAME_INTERVAL modulo MAX_KEYFRAMES
+	private final Board[] keyframeBoards = new Board[MAX_KEYFRAMES];
+	private final byte[][] keyframes = new byte[MAX_KEYFRAMES][]; // Saved state other than the cells
+	private int oldestKeyframe; // Oldest tick with a keyframe
+
+	private Board board;
+	private ObjectList[] lists = new ObjectList[2];
+	private int[] gaps = new int[16]; // Slots removed by a compaction being undone
+
+	/**
+	 * Points the history at the board and object lists it records, which it changes back when rewinding
+	 * 
+	 * @param board the board being recorded
+	 * 
+	 * @param gravityList the objects affected by gravity
+	 * 
+	 * @param enemyList the enemies
+	 */
+	void attach(Board board, ObjectList gravityList, ObjectList enemyList) {
+		this.board = board;
+		lists[GRAVITY_LIST] = gravityList;
+		lists[ENEMY_LIST] = enemyList;
+	}
+
+	/**
+	 * Forgets everything and starts the history again from the given state, as when a level is started
+	 * 
+	 * @param cells a copy of the board to start from
+	 * 
+	 * @param progress the rest of the saved state to start from
+	 * 
+	 * @param playerRow the player's row
+	 * 
+	 * @param playerCol the player's column
+	 * 
+	 * @param numOrbs the number of orbs left
+	 * 
+	 * @param gameState the state of the game, such as PLAYING
+	 */
+	void start(Board cells, byte[] progress, int playerRow, int playerCol, int numOrbs, int gameState) {
+		head = tail = 0;
+		tick = oldestMark = oldestKeyframe = 0;
+		for(int i = 0; i != MAX_KEYFRAMES; ++i) {
+			keyframeBoards[i] = null;
+			keyframes[i] = null;
+		}
+		keyframeBoards[0] = cells;
+		keyframes[0] = progress;
+		setMark(playerRow, playerCol, numOrbs, gameState);
+	}
+
+	/**
+	 * Ends a tick, recording what can't be undone from the entries
+	 * 
+	 * @param model the model being recorded, saved as a keyframe every KEYFRAME_INTERVAL ticks
+	 * 
+	 * @param playerRow the player's row
+	 * 
+	 * @param playerCol the player's column
+	 * 
+	 * @param numOrbs the number of orbs left
+	 * 
+	 * @param gameState the state of the game, such as PLAYING
+	 */
+	void mark(Model model, int playerRow, int playerCol, int numOrbs, int gameState) {
+		++tick;
+		if(tick % KEYFRAME_INTERVAL == 0) {
+			keyframeBoards[tick / KEYFRAME_INTERVAL % MAX_KEYFRAMES] = model.getBoard().copy();
+			keyframes[tick / KEYFRAME_INTERVAL % MAX_KEYFRAMES] = model.saveProgress();
+			if(tick - oldestKeyframe >= KEYFRAME_INTERVAL * MAX_KEYFRAMES) {
+				oldestKeyframe += KEYFRAME_INTERVAL;
+			}
+		}
+		if(tick - oldestMark >= MAX_MARKS) {
+			// The oldest mark's slot is reused, so its entries are no longer needed either
+			++oldestMark;
+			tail = Math.max(tail, markPositions[oldestMark % MAX_MARKS]);
+		}
+		setMark(playerRow, playerCol, numOrbs, gameState);
+	}
+
+	/**
+	 * Returns the number of ticks since the level started
+	 * 
+	 * @return the current tick
+	 */
+	int getTick() {
+		return tick;
+	}
+
+	/**
+	 * Returns the oldest tick that can be rewound to
+	 * 
+	 * @return the oldest tick
+	 */
+	int getOldestTick() {
+		return Math.min(oldestMark, oldestKeyframe);
+	}
+
+	/**
+	 * Returns whether the given tick can be rewound to by undoing entries
+	 * 
+	 * @param target the tick to rewind to
+	 * 
+	 * @return whether the entries back to that tick are all still in the log
+	 */
+	boolean canUndoTo(int target) {
+		return target >= oldestMark && target <= tick;
+	}
+
+	/**
+	 * Undoes every change made since the end of the given tick, newest first
+	 * 
+	 * @param target the tick to rewind to, which canUndoTo() must allow
+	 */
+	void undoTo(int target) {
+		long end = markPositions[target % MAX_MARKS];
+		while(head != end) {
+			--head;
+			int i = (int) (head & (LOG_SIZE - 1)) * 2;
+			int type = log[i] & 0xF;
+			int argument = log[i] >>> 4;
+			int value = log[i + 1];
+			ObjectList list = lists[argument & 1];
+			int slot = argument >>> 1;
+			switch(type) {
+			case CELL:
+				board.restore(value, (byte) argument);
+				break;
+			case ADD:
+				list.undoAdd();
+				break;
+			case MOVE:
+				list.undoMove(slot, value);
+				break;
+			case REMOVE:
+				list.undoRemove(slot, value);
+				break;
+			case AWAKE:
+				list.setAwake(slot, value != 0);
+				break;
+			case COMPACT:
+				// The slots that were removed are in the entries before this one, in ascending order
+				int numGaps = value - list.size();
+				if(gaps.length < numGaps) {
+					gaps = new int[numGaps * 2];
+				}
+				for(int g = 0; g != numGaps; ++g) {
+					--head;
+					gaps[g] = log[(int) (head & (LOG_SIZE - 1)) * 2] >>> 5;
+				}
+				list.undoCompact(value, gaps);
+				break;
+			}
+		}
+		tick = target;
+		if(oldestKeyframe > tick) {
+			// Every keyframe left is from after the target, so none can be used until the ticks happen again
+			oldestKeyframe = tick - tick % KEYFRAME_INTERVAL + KEYFRAME_INTERVAL;
+		}
+	}
+
+	/**
+	 * Returns the newest keyframe at or before the given tick
+	 * 
+	 * @param target the tick to rewind to
+	 * 
+	 * @return the tick of the keyframe, or -1 if there isn't one
+	 */
+	int keyframeBefore(int target) {
+		int keyframe = target - target % KEYFRAME_INTERVAL;
+		return keyframe >= oldestKeyframe ? keyframe : -1;
+	}
+
+	/**
+	 * Returns the board as it was at a keyframe
+	 * 
+	 * @param keyframe the tick of the keyframe
+	 * 
+	 * @return the copy of the board, which must not be changed
+	 */
+	Board getKeyframeBoard(int keyframe) {
+		return keyframeBoards[keyframe / KEYFRAME_INTERVAL % MAX_KEYFRAMES];
+	}
+
+	/**
+	 * Returns the saved state of a keyframe other than the cells
+	 * 
+	 * @param keyframe the tick of the keyframe
+	 * 
+	 * @return the saved state, as saved by saveProgress()
+	 */
+	byte[] getKeyframe(int keyframe) {
+		return keyframes[keyframe / KEYFRAME_INTERVAL % MAX_KEYFRAMES];
+	}
+
+	/**
+	 * Carries on the history from a keyframe that the model has just been restored to. Entries after the keyframe
+	 * are dropped, along with any keyframes after it, since they belong to ticks that no longer happened.
+	 * 
+	 * @param keyframe the tick of the keyframe
+	 * 
+	 * @param playerRow the player's row
+	 * 
+	 * @param playerCol the player's column
+	 * 
+	 * @param numOrbs the number of orbs left
+	 * 
+	 * @param gameState the state of the game, such as PLAYING
+	 */
+	void restartFrom(int keyframe, int playerRow, int playerCol, int numOrbs, int gameState) {
+		head = tail = 0;
+		tick = oldestMark = keyframe;
+		setMark(playerRow, playerCol, numOrbs, gameState);
+	}
+
+	/**
+	 * Returns the player's row at the end of the current tick
+	 * 
+	 * @return the player's row
+	 */
+	int getPlayerRow() {
+		return markPlayerRows[tick % MAX_MARKS];
+	}
+
+	/**
+	 * Returns the player's column at the end of the current tick
+	 * 
+	 * @return the player's column
+	 */
+	int getPlayerCol() {
+		return markPlayerCols[tick % MAX_MARKS];
+	}
+
+	/**
+	 * Returns the number of orbs left at the end of the current tick
+	 * 
+	 * @return the number of orbs left
+	 */
+	int getOrbsLeft() {
+		return markOrbs[tick % MAX_MARKS];
+	}
+
+	/**
+	 * Returns the state of the game at the end of the current tick
+	 * 
+	 * @return the state of the game
+	 */
+	int getState() {
+		return markStates[tick % MAX_MARKS];
+	}
+
+	/**
+	 * Records the old contents of a cell that is about to change
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @param old the old contents of the cell
+	 */
+	void cellChanged(int cell, byte old) {
+		add(CELL | (old & 0xFF) << 4, cell);
+	}
+
+	/**
+	 * Records that an object was added to the end of a list
+	 * 
+	 * @param list GRAVITY_LIST or ENEMY_LIST
+	 */
+	void objectAdded(int list) {
+		add(ADD | list << 4, 0);
+	}
+
+	/**
+	 * Records that an object is about to move to another cell
+	 * 
+	 * @param list GRAVITY_LIST or ENEMY_LIST
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @param oldCell the cell it's moving from
+	 */
+	void objectMoved(int list, int slot, int oldCell) {
+		add(MOVE | (list | slot << 1) << 4, oldCell);
+	}
+
+	/**
+	 * Records that an object is about to be removed from its slot
+	 * 
+	 * @param list GRAVITY_LIST or ENEMY_LIST
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @param oldCell the cell it was in
+	 */
+	void objectRemoved(int list, int slot, int oldCell) {
+		add(REMOVE | (list | slot << 1) << 4, oldCell);
+	}
+
+	/**
+	 * Records that an object is about to be woken or put to sleep
+	 * 
+	 * @param list GRAVITY_LIST or ENEMY_LIST
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @param wasAwake whether the object was awake before
+	 */
+	void awakeChanged(int list, int slot, boolean wasAwake) {
+		add(AWAKE | (list | slot << 1) << 4, wasAwake ? 1 : 0);
+	}
+
+	/**
+	 * Records a removed slot that compacting a list is about to drop. Every dropped slot is recorded in ascending
+	 * order, followed by listCompacted().
+	 * 
+	 * @param list GRAVITY_LIST or ENEMY_LIST
+	 * 
+	 * @param slot the removed slot
+	 */
+	void gapDropped(int list, int slot) {
+		add(GAP | (list | slot << 1) << 4, 0);
+	}
+
+	/**
+	 * Records that a list was compacted
+	 * 
+	 * @param list GRAVITY_LIST or ENEMY_LIST
+	 * 
+	 * @param oldSize the number of slots before compacting
+	 */
+	void listCompacted(int list, int oldSize) {
+		add(COMPACT | list << 4, oldSize);
+	}
+
+	/**
+	 * Records the state at the end of the current tick, which the entries after it undo back to
+	 * 
+	 * @param playerRow the player's row
+	 * 
+	 * @param playerCol the player's column
+	 * 
+	 * @param numOrbs the number of orbs left
+	 * 
+	 * @param gameState the state of the game
+	 */
+	private void setMark(int playerRow, int playerCol, int numOrbs, int gameState) {
+		int i = tick % MAX_MARKS;
+		markPositions[i] = head;
+		markPlayerRows[i] = playerRow;
+		markPlayerCols[i] = playerCol;
+		markOrbs[i] = numOrbs;
+		markStates[i] = gameState;
+	}
+
+	/**
+	 * Adds an entry to the log, overwriting the oldest entry if the log is full
+	 * 
+	 * @param header the type and argument of the entry
+	 * 
+	 * @param value the value of the entry
+	 */
+	private void add(int header, int value) {
+		if(head - tail == LOG_SIZE) {
+			++tail;
+			// Marks whose entries have started to be overwritten can't be undone to any more
+			while(oldestMark <= tick && markPositions[oldestMark % MAX_MARKS] < tail) {
+				++oldestMark;
+			}
+		}
+		int i = (int) (head & (LOG_SIZE - 1)) * 2;
+		log[i] = header;
+		log[i + 1] = value;
+		++head;
+	}
+}
\ No newline at end of file
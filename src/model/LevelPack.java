@@ -0,0 +1,165 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class reads levels from a compiled level pack, a single binary file holding any number of levels. The file is
+ * memory-mapped, so reading a level costs the same however many levels the pack holds. Packs can also be held in
+ * memory, such as for levels that have just been generated. Each level is read from the pack once, and its template
+ * is shared by every model playing the pack, so any number of games can be run from one pack without each keeping a
+ * copy of the levels.
+ * 
+ * A pack starts with a header (magic number, format version and level count), followed by an index with the offset,
+ * width and height of each level, followed by the levels themselves at one byte per cell, row by row.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class LevelPack {
+
+	private static final int MAGIC = 0x43524C50; // "CRLP"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final int INDEX_ENTRY_SIZE = 12;
+
+	private final ByteBuffer buffer;
+	private final int numLevels;
+	private final AtomicReferenceArray<LevelTemplate> templates; // Levels read so far, or null where not yet read
+
+	/**
+	 * Constructor that maps the given level pack file into memory
+	 * 
+	 * @param file the level pack file
+	 * 
+	 * @throws IOException if the file can't be read or isn't a level pack
+	 */
+	public LevelPack(File file) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+		if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException(file + " is not a version " + VERSION + " level pack");
+		}
+		numLevels = buffer.getInt(8);
+		templates = new AtomicReferenceArray<LevelTemplate>(numLevels);
+	}
+
+	/**
+	 * Constructor that creates a level pack held in memory
+	 * 
+	 * @param levels the levels in the pack, in order
+	 */
+	public LevelPack(List<LevelTemplate> levels) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			write(levels, out);
+		} catch(IOException e) {
+			throw new IllegalStateException(e); // Writing to memory doesn't fail
+		}
+		buffer = ByteBuffer.wrap(out.toByteArray());
+		numLevels = levels.size();
+		templates = new AtomicReferenceArray<LevelTemplate>(levels.toArray(new LevelTemplate[numLevels]));
+	}
+
+	/**
+	 * Returns the number of levels in the pack
+	 * 
+	 * @return the number of levels in the pack
+	 */
+	public int size() {
+		return numLevels;
+	}
+
+	/**
+	 * Returns the given level, reading it from the pack the first time it's asked for. This is safe to call from
+	 * several threads at once, and every caller gets the same template.
+	 * 
+	 * @param level the number of the level, starting from 0
+	 * 
+	 * @return the starting layout of the level
+	 */
+	public LevelTemplate getLevel(int level) {
+		LevelTemplate template = templates.get(level);
+		if(template == null) {
+			int entry = HEADER_SIZE + level * INDEX_ENTRY_SIZE;
+			Board board = new Board(buffer.getInt(entry + 4), buffer.getInt(entry + 8));
+			board.read(buffer, buffer.getInt(entry));
+			// Threads that read the level at the same time all end up sharing the first template stored
+			templates.compareAndSet(level, null, new LevelTemplate(board));
+			template = templates.get(level);
+		}
+		return template;
+	}
+
+	/**
+	 * Writes the given levels to a new level pack file
+	 * 
+	 * @param levels the levels to write, in order
+	 * 
+	 * @param file the level pack file to create
+	 * 
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(List<LevelTemplate> levels, File file) throws IOException {
+		try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			write(levels, out);
+		}
+	}
+
+	/**
+	 * Writes the given levels as a level pack to the given stream
+	 * 
+	 * @param levels the levels to write, in order
+	 * 
+	 * @param stream the stream to write to, which is left open
+	 * 
+	 * @throws IOException if the stream can't be written
+	 */
+	private static void write(List<LevelTemplate> levels, OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(levels.size());
+
+		int offset = HEADER_SIZE + levels.size() * INDEX_ENTRY_SIZE;
+		for(LevelTemplate level : levels) {
+			out.writeInt(offset);
+			out.writeInt(level.getWidth());
+			out.writeInt(level.getHeight());
+			offset += level.getWidth() * level.getHeight();
+		}
+
+		for(LevelTemplate level : levels) {
+			level.write(out);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Converts level text files, like the ones in the levels folder, into a level pack
+	 * 
+	 * @param textFiles the level text files, in order
+	 * 
+	 * @param file the level pack file to create
+	 * 
+	 * @throws IOException if the pack can't be written
+	 */
+	public static void convert(List<File> textFiles, File file) throws IOException {
+		List<LevelTemplate> levels = new ArrayList<LevelTemplate>();
+		for(File textFile : textFiles) {
+			levels.add(Model.fileToLevel(textFile));
+		}
+		write(levels, file);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,273 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * This class holds the starting layout of a level. Templates are never changed once created, so a level can be
+ * started or restarted any number of times by copying the template's cells onto a board. The objects in the level
+ * are found once when the template is created, so starting the level costs as much as the number of objects rather
+ * than the size of the board.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class LevelTemplate {
+
+	static final char NO_TILE = '\0'; // Marks a cell a level doesn't fill, such as past the end of a short row
+
+	private final Board cells; // Never changed or handed out
+	private final int[] fallingObjects; // Cells of the objects affected by gravity, in cell order
+	private final int numFallingObjects;
+	private final int[] enemies; // Cells of the enemies, in cell order
+	private final int numEnemies;
+	private final int player; // Cell of the player, or -1 if there isn't one
+	private final int numOrbs;
+	private final int[] portals; // Cells of the portals, in cell order, which never move or get destroyed
+	private final int numPortals;
+
+	/**
+	 * Constructor that creates a template from a copy of the given board, finding the objects, the player, the orbs
+	 * and the portals in it. Chunks whose tiles are all the same, other than objects and portals, are skipped without
+	 * looking at their cells.
+	 * 
+	 * @param level the board holding the level's starting layout
+	 */
+	LevelTemplate(Board level) {
+		cells = level.copy();
+		cells.compress();
+
+		int[] fallingObjects = new int[16], enemies = new int[16], portals = new int[4];
+		int numFallingObjects = 0, numEnemies = 0, numPortals = 0, numOrbs = 0, player = -1;
+		int numCells = cells.getWidth() * cells.getHeight();
+		for(int chunk = 0; chunk != cells.getNumChunks(); ++chunk) {
+			int type = cells.uniformType(chunk);
+			if(type != -1 && !TileRules.canFall((char) type) && type != Model.MUMMY && type != Model.PLAYER
+					&& type != Model.PORTAL) {
+				continue;
+			}
+			int end = Math.min((chunk + 1) * Board.CHUNK_SIZE, numCells);
+			for(int t = chunk * Board.CHUNK_SIZE; t != end; ++t) {
+				char tileType = cells.type(t);
+				if(TileRules.canFall(tileType)) {
+					if(numFallingObjects == fallingObjects.length) {
+						fallingObjects = Arrays.copyOf(fallingObjects, numFallingObjects * 2);
+					}
+					fallingObjects[numFallingObjects++] = t;
+				}
+				if(tileType == Model.MUMMY) {
+					if(numEnemies == enemies.length) {
+						enemies = Arrays.copyOf(enemies, numEnemies * 2);
+					}
+					enemies[numEnemies++] = t;
+				} else if(tileType == Model.PLAYER) {
+					player = t;
+				} else if(tileType == Model.ORB) {
+					++numOrbs;
+				} else if(tileType == Model.PORTAL) {
+					if(numPortals == portals.length) {
+						portals = Arrays.copyOf(portals, numPortals * 2);
+					}
+					portals[numPortals++] = t;
+				}
+			}
+		}
+		this.fallingObjects = fallingObjects;
+		this.numFallingObjects = numFallingObjects;
+		this.enemies = enemies;
+		this.numEnemies = numEnemies;
+		this.player = player;
+		this.numOrbs = numOrbs;
+		this.portals = portals;
+		this.numPortals = numPortals;
+	}
+
+	/**
+	 * Constructor that creates a template from the type of each tile in a level, such as a level that was read from a
+	 * text file or generated. Every row must be filled and the tiles around the edge must be hard sand or portals,
+	 * which nothing can move into or blow up, since moves and explosions don't check whether they've gone off the side
+	 * of the board.
+	 * 
+	 * @param width the number of columns in the level
+	 * 
+	 * @param height the number of rows in the level
+	 * 
+	 * @param types the type of each tile, row by row, with NO_TILE past the end of a short row
+	 * 
+	 * @throws IllegalArgumentException if the level has no tiles, a row that isn't filled or a gap in its edge
+	 */
+	public LevelTemplate(int width, int height, char[] types) {
+		this(layOut(width, height, types));
+	}
+
+	/**
+	 * Checks the type of each tile in a level and puts them on a new board
+	 * 
+	 * @param width the number of columns in the level
+	 * 
+	 * @param height the number of rows in the level
+	 * 
+	 * @param types the type of each tile, row by row, with NO_TILE past the end of a short row
+	 * 
+	 * @return the board holding the level's starting layout
+	 * 
+	 * @throws IllegalArgumentException if the level has no tiles, a row that isn't filled or a gap in its edge
+	 */
+	private static Board layOut(int width, int height, char[] types) {
+		if(width < 1 || height < 1) {
+			throw new IllegalArgumentException("Level has no tiles");
+		}
+		if(types.length != width * height) {
+			throw new IllegalArgumentException("Level has " + types.length + " tiles rather than " + width + " by "
+					+ height);
+		}
+		Board level = new Board(width, height);
+		for(int row = 0; row != height; ++row) {
+			for(int col = 0; col != width; ++col) {
+				char type = types[row * width + col];
+				if(type == NO_TILE) {
+					throw new IllegalArgumentException("Level has no tile at row " + (row + 1) + ", column "
+							+ (col + 1) + ", when every row must have " + width + " tiles");
+				}
+				boolean isEdge = row == 0 || row == height - 1 || col == 0 || col == width - 1;
+				if(isEdge && type != Model.HARD_SAND && type != Model.PORTAL) {
+					throw new IllegalArgumentException("Level has tile " + type + " on its edge at row " + (row + 1)
+							+ ", column " + (col + 1) + " rather than hard sand or a portal");
+				}
+				level.setType(level.index(row, col), type);
+			}
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the number of columns in the level
+	 * 
+	 * @return the number of columns in the level
+	 */
+	public int getWidth() {
+		return cells.getWidth();
+	}
+
+	/**
+	 * Returns the number of rows in the level
+	 * 
+	 * @return the number of rows in the level
+	 */
+	public int getHeight() {
+		return cells.getHeight();
+	}
+
+	/**
+	 * Returns the type of the tile at the given position when the level starts
+	 * 
+	 * @param row the row of the tile
+	 * 
+	 * @param col the column of the tile
+	 * 
+	 * @return character representing the tile's type
+	 */
+	public char getType(int row, int col) {
+		return cells.getType(row, col);
+	}
+
+	/**
+	 * Copies the level's starting layout onto the given board, creating a new board if it doesn't have the level's
+	 * size
+	 * 
+	 * @param board the board to reuse, or null
+	 * 
+	 * @return the board holding the level's starting layout
+	 */
+	Board materialise(Board board) {
+		if(board == null || board.getWidth() != getWidth() || board.getHeight() != getHeight()) {
+			return cells.copy();
+		}
+		board.copyFrom(cells);
+		return board;
+	}
+
+	/**
+	 * Adds the level's starting objects to the given lists, in cell order
+	 * 
+	 * @param gravityList the list to add the objects affected by gravity to
+	 * 
+	 * @param enemyList the list to add the enemies to
+	 */
+	void addObjects(ObjectList gravityList, ObjectList enemyList) {
+		for(int i = 0; i != numFallingObjects; ++i) {
+			gravityList.add(fallingObjects[i]);
+		}
+		for(int i = 0; i != numEnemies; ++i) {
+			enemyList.add(enemies[i]);
+		}
+	}
+
+	/**
+	 * Returns the cell the player starts in
+	 * 
+	 * @return the index of the player's cell, or -1 if the level has no player
+	 */
+	int getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Returns the number of objects affected by gravity in the level, which no level ever gains more of as it's
+	 * played
+	 * 
+	 * @return the number of objects affected by gravity
+	 */
+	int getNumFallingObjects() {
+		return numFallingObjects;
+	}
+
+	/**
+	 * Returns the number of enemies in the level, which no level ever gains more of as it's played
+	 * 
+	 * @return the number of enemies
+	 */
+	int getNumEnemies() {
+		return numEnemies;
+	}
+
+	/**
+	 * Returns the number of orbs in the level
+	 * 
+	 * @return the number of orbs
+	 */
+	int getNumOrbs() {
+		return numOrbs;
+	}
+
+	/**
+	 * Returns the number of portals in the level, which stay where they are for as long as the level is played
+	 * 
+	 * @return the number of portals
+	 */
+	int getNumPortals() {
+		return numPortals;
+	}
+
+	/**
+	 * Returns the cell of the given portal
+	 * 
+	 * @param i the number of the portal, in cell order
+	 * 
+	 * @return the index of the portal's cell
+	 */
+	int getPortal(int i) {
+		return portals[i];
+	}
+
+	/**
+	 * Writes the level's starting layout to the given stream, one byte per cell
+	 * 
+	 * @param out the stream to write to
+	 * 
+	 * @throws IOException if the stream can't be written
+	 */
+	void write(OutputStream out) throws IOException {
+		cells.write(out);
+	}
+}
\ No newline at end of file
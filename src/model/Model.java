@@ -2,76 +2,424 @@ package model;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
-import controller.Controller;
+import metrics.ExplosionEvent;
+import metrics.LevelLoadEvent;
+import metrics.Metrics;
 
 /**
  * This class handles game data and functionality, storing object positions and implementing features such as gravity
- * and enemy movement
+ * and enemy movement. It doesn't depend on any user interface, so the game can be stepped as fast as needed with
+ * step() and tick(), and outcomes are reported to the registered game listeners.
  * 
  * @author Jeffrey Sun
  */
 public class Model {
 	
 	// Game objects
-	protected static final char HARD_SAND = 'H';
-	protected static final char GRANITE = 'G';
-	protected static final char SOFT_SAND = 'S';
-	protected static final char BACKGROUND = '0';
-	protected static final char BOMB = 'B';
-	protected static final char ORB = 'O';
-	protected static final char ROCK = 'R';
-	protected static final char PORTAL = 'P';
-	protected static final char PLAYER = 'U';
-	protected static final char MUMMY = 'M';
+	public static final char HARD_SAND = 'H';
+	public static final char GRANITE = 'G';
+	public static final char SOFT_SAND = 'S';
+	public static final char BACKGROUND = '0';
+	public static final char BOMB = 'B';
+	public static final char ORB = 'O';
+	public static final char ROCK = 'R';
+	public static final char PORTAL = 'P';
+	public static final char PLAYER = 'U';
+	public static final char MUMMY = 'M';
+	
+	// Game states
+	public static final int PLAYING = 0;
+	public static final int LEVEL_COMPLETE = 1;
+	public static final int GAME_OVER = 2;
+	public static final int GAME_COMPLETE = 3;
+	
+	// Player inputs
+	public static final int WAIT = 0;
+	public static final int UP = 1;
+	public static final int DOWN = 2;
+	public static final int LEFT = 3;
+	public static final int RIGHT = 4;
 	
 	// Game information
-	private static final int NUM_LEVELS = 20;
+	private static final String LEVEL_PACK = "levels/levels.pack";
 	
-	private static final int BOARD_WIDTH = 18;
-	private static final int BOARD_HEIGHT = 12;
+	private static final int SAVED_STATE_SIZE = 13; // Bytes saved after the cells: state, player row and column, orbs
+	private static final int IN_CELL_ORDER = -1; // Saved in place of the objects when they're in cell order
+	
+	// Reads upcoming levels in the background while the transition screen is showing
+	private static final ExecutorService levelLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Level loader");
+			t.setDaemon(true);
+			return t;
+		}
+	});
 	
 	// Level information
-	private List<Tile[][]> levelList;
+	private LevelPack levelPack; // Compiled levels, or null if the levels are read from text files
+	private LevelTemplate onlyLevel; // The one level played, or null if the levels are read from a pack or files
+	private int numLevels;
+	private LevelTemplate template; // Starting layout of the current level, used to restart it
+	private Future<LevelTemplate> nextTemplate; // Next level being read in the background
+	private boolean isPrefetching; // Whether the next level is read in the background as soon as this one is won
 	private int currentLevel;
 
-	private Tile[][] board;
+	private Board board;
+	private ChangeJournal changes; // Cells changed since the journal was last cleared, or null if not recording
 	
-	private List<Tile> gravityList; // List of objects affected by gravity
-	private List<Tile> enemyList; // List of enemies
+	private ObjectList gravityList; // Objects affected by gravity
+	private ObjectList enemyList; // Enemies
+	private Explosion explosion; // Works out the tiles destroyed by explosions
+	private FlowField flowField; // Walking distances to the player, shared by the enemies
+	private History history; // Undo log for rewinding, or null if rewinding is off
+	private boolean isMeasured; // Whether this model's ticks are timed and recorded as flight recorder events
+	private long numTicks; // Ticks run since the model was created
 	
 	private int numOrbs;
+	private boolean enemiesMoved; // Whether any enemy moved or exploded in the last call to enemyMove()
 	
 	// Player information
 	private int playerRow;
 	private int playerCol;
 	
-	private Controller controller;
+	private int state;
+	private List<GameListener> listeners;
 	
 	/**
- 	 * Constructor that creates the model class with a reference to the controller
- 	 * 
- 	 * @param controller a reference to the controller of this model
+ 	 * Constructor that creates the model class starting at the first level
  	 */
-	public Model(Controller controller) {
-		this.controller = controller;
-		
-		levelList = new ArrayList<Tile[][]>();		
-		loadLevels();
+	public Model() {
+		this(null, null);
+	}
+	
+	/**
+	 * Constructor that creates the model class starting at the first level of the given level pack
+	 * 
+	 * @param levels the levels to play, or null to play the game's own levels from the levels folder
+	 */
+	public Model(LevelPack levels) {
+		this(levels, null);
+	}
+	
+	/**
+	 * Constructor that creates a model playing only the given level, such as one that has just been generated
+	 * 
+	 * @param level the starting layout of the level
+	 */
+	public Model(LevelTemplate level) {
+		this(null, level);
+	}
+	
+	/**
+	 * Constructor that creates the model class starting at the first level of the given levels
+	 * 
+	 * @param levels the levels to play, or null to play the only level or the game's own levels
+	 * 
+	 * @param onlyLevel the one level to play, or null to play the level pack or the game's own levels
+	 */
+	private Model(LevelPack levels, LevelTemplate onlyLevel) {
+		listeners = new ArrayList<GameListener>();
+		state = PLAYING;
 		
+		if(onlyLevel != null) {
+			this.onlyLevel = onlyLevel;
+			numLevels = 1;
+		} else if(levels != null) {
+			levelPack = levels;
+			numLevels = levels.size();
+		} else {
+			openLevels();
+		}
 		currentLevel = 0;
-		board = levelList.get(currentLevel);
+		template = loadTemplate(currentLevel);
+		board = template.materialise(null);
 		
-		gravityList = new ArrayList<Tile>();
-		enemyList = new ArrayList<Tile>();
-		numOrbs = 0;
+		gravityList = new ObjectList();
+		enemyList = new ObjectList();
+		explosion = new Explosion();
+		flowField = new FlowField();
 		
 		setTileTrackingVars();
 	}
 	
+	/**
+	 * Registers a listener to be told about changes in the outcome of the game
+	 * 
+	 * @param listener the listener to register
+	 */
+	public void addGameListener(GameListener listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Applies a player input and then advances the game by one tick
+	 * 
+	 * @param input the player input, one of WAIT, UP, DOWN, LEFT or RIGHT
+	 */
+	public void step(int input) {
+		move(input);
+		tick();
+	}
+	
+	/**
+	 * Applies a player input without advancing the game, as when a key is pressed between ticks
+	 * 
+	 * @param input the player input, one of WAIT, UP, DOWN, LEFT or RIGHT
+	 */
+	public void move(int input) {
+		switch(input) {
+		case UP:
+			playerMove(-1, 0);
+			break;
+		case DOWN:
+			playerMove(1, 0);
+			break;
+		case LEFT:
+			playerMove(0, -1);
+			break;
+		case RIGHT:
+			playerMove(0, 1);
+			break;
+		}
+	}
+	
+	/**
+	 * Advances the game by one tick, letting objects fall and enemies move
+	 */
+	public void tick() {
+		++numTicks;
+		gravity();
+		enemyMove();
+		if(history != null) {
+			history.mark(this, playerRow, playerCol, numOrbs, state);
+		}
+	}
+	
+	/**
+	 * Starts keeping the history needed to rewind the current level. Rewinding costs a little time on every change
+	 * and about a megabyte of memory, so it's off until this is called.
+	 */
+	public void enableRewind() {
+		if(history == null) {
+			history = new History();
+			gravityList.setHistory(history, History.GRAVITY_LIST);
+			enemyList.setHistory(history, History.ENEMY_LIST);
+			startHistory();
+		}
+	}
+	
+	/**
+	 * Times this model's moves, falls, enemy moves and explosions into the game's metrics whenever they're being
+	 * recorded, and records its explosions and level loads as flight recorder events. Only the model being played
+	 * should be measured, not the models the solver and hints search with.
+	 */
+	public void enableMetrics() {
+		isMeasured = true;
+	}
+	
+	/**
+	 * Starts reading the next level in the background as soon as the current one is won, so it's ready when the
+	 * transition screen ends. Only the model being played needs this; the models the solver, hints and headless
+	 * sessions use load their levels when they go to them and would only queue up behind each other on the loader.
+	 */
+	public void enablePrefetch() {
+		isPrefetching = true;
+	}
+	
+	/**
+	 * Takes the current level back by the given number of ticks, undoing every move, fall and explosion since then,
+	 * as far back as the history goes. Rewinding past the end of a level or a game over carries on playing from there.
+	 * 
+	 * @param ticks the number of ticks to go back by
+	 * 
+	 * @return the number of ticks actually gone back by, which is 0 if rewinding is off and may be more than asked
+	 * for when only a keyframe is left that far back
+	 */
+	public int rewind(int ticks) {
+		if(history == null) {
+			return 0;
+		}
+		int from = history.getTick();
+		int target = Math.max(from - ticks, history.getOldestTick());
+		int oldState = state;
+		if(history.canUndoTo(target)) {
+			history.undoTo(target);
+		} else {
+			int keyframe = history.keyframeBefore(target);
+			board.copyFrom(history.getKeyframeBoard(keyframe));
+			readProgress(ByteBuffer.wrap(history.getKeyframe(keyframe)), board.getWidth() * board.getHeight());
+			history.restartFrom(keyframe, playerRow, playerCol, numOrbs, state);
+		}
+		playerRow = history.getPlayerRow();
+		playerCol = history.getPlayerCol();
+		numOrbs = history.getOrbsLeft();
+		state = history.getState();
+		flowField.invalidate();
+		enemiesMoved = true;
+		if(state != oldState) {
+			setState(state);
+		}
+		return from - history.getTick();
+	}
+	
+	/**
+	 * Advances the game without player input until nothing more would change, such as after the player has set off a
+	 * rockfall. Objects only fall a limited distance and enemies only stop next to the player or when blocked, so this
+	 * always finishes.
+	 * 
+	 * @return the number of ticks the game was advanced by
+	 */
+	public int settle() {
+		int ticks = 0;
+		do {
+			tick();
+			++ticks;
+		} while(state == PLAYING && (gravityList.hasAwake() || enemiesMoved));
+		return ticks;
+	}
+	
+	/**
+	 * Returns the current state of the game
+	 * 
+	 * @return one of PLAYING, LEVEL_COMPLETE, GAME_OVER or GAME_COMPLETE
+	 */
+	public int getState() {
+		return state;
+	}
+	
+	/**
+	 * Returns the number of orbs that still have to reach the portal to complete the level
+	 * 
+	 * @return the number of orbs left
+	 */
+	public int getOrbsLeft() {
+		return numOrbs;
+	}
+	
+	/**
+	 * Returns the number of the level being played
+	 * 
+	 * @return the current level, starting from 0
+	 */
+	public int getLevel() {
+		return currentLevel;
+	}
+	
+	/**
+	 * Returns the starting layout of the level being played, which can be shared with other models
+	 * 
+	 * @return the current level's template
+	 */
+	public LevelTemplate getTemplate() {
+		return template;
+	}
+	
+	/**
+	 * Returns the number of ticks run since the model was created, which carries on counting through restarts, level
+	 * changes and rewinds
+	 * 
+	 * @return the number of ticks
+	 */
+	public long getNumTicks() {
+		return numTicks;
+	}
+
+	/**
+	 * Returns the row the player is on
+	 * 
+	 * @return the player's row
+	 */
+	public int getPlayerRow() {
+		return playerRow;
+	}
+
+	/**
+	 * Returns the column the player is on
+	 * 
+	 * @return the player's column
+	 */
+	public int getPlayerCol() {
+		return playerCol;
+	}
+	
+	/**
+	 * Returns the number of slots in the list of objects affected by gravity. Objects destroyed during the last tick
+	 * may leave empty slots until the next tick.
+	 * 
+	 * @return the number of slots
+	 */
+	public int getNumObjects() {
+		return gravityList.size();
+	}
+	
+	/**
+	 * Returns the cell of the object affected by gravity in the given slot, so that callers such as the solver can
+	 * find the objects without scanning the board
+	 * 
+	 * @param i the slot, from 0 to getNumObjects() - 1
+	 * 
+	 * @return the index of the object's cell, or -1 if the slot is empty
+	 */
+	public int getObject(int i) {
+		return gravityList.get(i);
+	}
+	
+	/**
+	 * Returns the number of slots in the list of enemies. Enemies destroyed during the last tick may leave empty slots
+	 * until the next tick.
+	 * 
+	 * @return the number of slots
+	 */
+	public int getNumEnemies() {
+		return enemyList.size();
+	}
+	
+	/**
+	 * Returns the cell of the enemy in the given slot
+	 * 
+	 * @param i the slot, from 0 to getNumEnemies() - 1
+	 * 
+	 * @return the index of the enemy's cell, or -1 if the slot is empty
+	 */
+	public int getEnemy(int i) {
+		return enemyList.get(i);
+	}
+	
+	/**
+	 * Returns the number of portals in the current level. Portals can't move or be blown up, so they stay where the
+	 * level started them.
+	 * 
+	 * @return the number of portals
+	 */
+	public int getNumPortals() {
+		return template.getNumPortals();
+	}
+	
+	/**
+	 * Returns the cell of the given portal
+	 * 
+	 * @param i the number of the portal, from 0 to getNumPortals() - 1
+	 * 
+	 * @return the index of the portal's cell
+	 */
+	public int getPortal(int i) {
+		return template.getPortal(i);
+	}
+
 	/**
 	 * Move the player one tile in the given direction if possible, and have him push pushable objects in the same
 	 * direction
@@ -81,103 +429,393 @@ public class Model {
 	 * @param dCol the desired change in vertical position
 	 */
 	public void playerMove(int dRow, int dCol) {
-		Tile player = board[playerRow][playerCol];
-		Tile target = board[playerRow+dRow][playerCol+dCol];
-		if(player.canMoveInto(target.getType())) {
+		int player = board.index(playerRow, playerCol);
+		if(board.type(player) != PLAYER) {
+			return; // The player has been exploded
+		}
+		long start = startTimer();
+		int target = board.index(playerRow+dRow, playerCol+dCol);
+		char targetType = board.type(target);
+		if(TileRules.canMoveInto(board.type(player), targetType)) {
 			// Check if the player can move into the target tile
-			if(target.getType() == SOFT_SAND || target.getType() == BACKGROUND) {
-				target.setType(PLAYER);
-				player.setType(BACKGROUND);
+			if(targetType == SOFT_SAND || targetType == BACKGROUND) {
+				setType(target, PLAYER);
+				setType(player, BACKGROUND);
 				playerRow = playerRow + dRow;
 				playerCol = playerCol + dCol;
-			} else if(target.getType() == MUMMY) {
+			} else if(targetType == MUMMY) {
 				// Explode the player if he moves into an enemy
-				explode(player.getRow(), player.getCol());
+				explode(playerRow, playerCol);
 			} else {
-				Tile nextNext = board[playerRow + 2*dRow][playerCol + 2*dCol];
-				Tile belowTarget = board[playerRow+dRow+1][playerCol+dCol];
+				int nextNext = board.index(playerRow + 2*dRow, playerCol + 2*dCol);
 				
 				// Player pushes the object if there is nothing behind it and it isn't falling
-				if(target.canMoveInto(nextNext.getType()) && !target.isFalling() && !(target.canFall() &&
-						target.canMoveInto(belowTarget.getType()))) {
+				if(canPush(target, targetType, dRow, dCol)) {
 					
-					nextNext.setType(target.getType());
-					nextNext.setFalling(target.isFalling());
-					target.setType(PLAYER);
-					target.setFalling(false);
+					setType(nextNext, targetType);
+					board.setFalling(nextNext, board.falling(target));
+					setType(target, PLAYER);
+					board.setFalling(target, false);
 					
-					if(gravityList.contains(target)) {
-						gravityList.set(gravityList.indexOf(target), nextNext);
+					int i = gravityList.slotAt(target);
+					if(i != ObjectList.NONE) {
+						gravityList.move(i, nextNext);
 					}
 					
-					player.setType(BACKGROUND);
+					setType(player, BACKGROUND);
 					playerRow = playerRow + dRow;
 					playerCol = playerCol + dCol;
 				}
 			}
 		}
+		Metrics.PLAYER_MOVE.stop(start);
+	}
+	
+	/**
+	 * Returns whether the given input would do anything: move the player, push an object or walk the player into an
+	 * enemy. Waiting is always allowed.
+	 * 
+	 * @param input the player input, one of WAIT, UP, DOWN, LEFT or RIGHT
+	 * 
+	 * @return whether the input would change the board
+	 */
+	public boolean canMove(int input) {
+		int dRow = 0, dCol = 0;
+		switch(input) {
+		case UP:
+			dRow = -1;
+			break;
+		case DOWN:
+			dRow = 1;
+			break;
+		case LEFT:
+			dCol = -1;
+			break;
+		case RIGHT:
+			dCol = 1;
+			break;
+		default:
+			return true;
+		}
+		if(board.type(board.index(playerRow, playerCol)) != PLAYER) {
+			return false; // The player has been exploded
+		}
+		int target = board.index(playerRow+dRow, playerCol+dCol);
+		char targetType = board.type(target);
+		if(!TileRules.canMoveInto(PLAYER, targetType)) {
+			return false;
+		}
+		return targetType == SOFT_SAND || targetType == BACKGROUND || targetType == MUMMY
+				|| canPush(target, targetType, dRow, dCol);
 	}
 	
 	/**
-	 * Move each enemy to the square within its range that's closest to the player
+	 * Returns whether the player can push the object next to him in the given direction, which needs an empty tile
+	 * behind the object and the object not to be falling or about to fall
+	 * 
+	 * @param target the index of the object's cell
+	 * 
+	 * @param targetType the type of the object
+	 * 
+	 * @param dRow the direction of the push in rows
+	 * 
+	 * @param dCol the direction of the push in columns
+	 * 
+	 * @return whether the object can be pushed
+	 */
+	private boolean canPush(int target, char targetType, int dRow, int dCol) {
+		int nextNext = board.index(playerRow + 2*dRow, playerCol + 2*dCol);
+		int belowTarget = board.index(playerRow+dRow+1, playerCol+dCol);
+		return TileRules.canMoveInto(targetType, board.type(nextNext)) && !board.falling(target)
+				&& !(TileRules.canFall(targetType) && TileRules.canMoveInto(targetType, board.type(belowTarget)));
+	}
+	
+	/**
+	 * Move each enemy one step along the shortest path to the player
 	 */
 	public void enemyMove() {
+		long start = startTimer();
+		enemiesMoved = false;
+		enemyList.compact();
+		if(isMeasured) {
+			Metrics.MUMMIES.set(enemyList.size());
+		}
+		if(enemyList.size() != 0) {
+			flowField.update(board, board.index(playerRow, playerCol), enemyList.size());
+		}
 		for(int i = enemyList.size() - 1; i != -1; --i) {
-			if(enemyList.get(i) == null) {
-				enemyList.remove(i);
-				continue;
+			int enemy = enemyList.get(i);
+			if(enemy == ObjectList.NONE) {
+				continue; // Exploded earlier in this tick
 			}
-			Tile enemy = enemyList.get(i);
-			mummyMove(enemy.getRow(), enemy.getCol());
+			mummyMove(i, enemy / board.getWidth(), enemy % board.getWidth());
 		}
+		Metrics.ENEMY_MOVE.stop(start);
 	}
 	
 	/**
-	 * Lowers all gravity-affected objects by one tile if possible
+	 * Lowers all gravity-affected objects by one tile if possible. Objects at rest are asleep and skipped until the tile
+	 * below them changes, so only falling objects and objects that have lost their support are visited.
 	 */
 	public void gravity() {
-		for(int i = gravityList.size()-1; i != -1; --i) {
-			if(gravityList.get(i) == null) {
-				gravityList.remove(i);
-				continue;
-			}
-			Tile t = gravityList.get(i);
-			Tile below = board[t.getRow()+1][t.getCol()];
-			if(t.canMoveInto(below.getType())) {
-				if(below.getType() == PORTAL) {
+		long start = startTimer();
+		int width = board.getWidth();
+		int numFalling = 0;
+		gravityList.compact();
+		for(int i = gravityList.lastAwake(gravityList.size()-1); i != ObjectList.NONE; i = gravityList.lastAwake(i-1)) {
+			int t = gravityList.get(i);
+			int below = t + width;
+			char type = board.type(t);
+			char belowType = board.type(below);
+			if(TileRules.canMoveInto(type, belowType)) {
+				if(belowType == PORTAL) {
 					// If the object is an orb and it falls into the portal, remove it from the board
-					gravityList.set(i, null);
+					gravityList.remove(i);
 					if(--numOrbs == 0) {
-						controller.goToNextLevel();
+						prefetchNextLevel();
+						setState(LEVEL_COMPLETE);
+						Metrics.GRAVITY.stop(start);
 						return;
 					}
 				} else {
 					// Lower the object by one tile
-					below.setType(t.getType());
-					below.setFalling(true);
-					gravityList.set(i, below);
+					setType(below, type);
+					board.setFalling(below, true);
+					gravityList.move(i, below);
+					++numFalling;
 				}
-				t.setType(BACKGROUND);
-				t.setFalling(false);
-			} else if(t.isFalling() && t.explodesOn(below.getType())) {
-				explode(t.getRow(), t.getCol()); // Create an explosion centered around the tile
+				setType(t, BACKGROUND);
+				board.setFalling(t, false);
+			} else if(board.falling(t) && TileRules.explodesOn(type, belowType)) {
+				explode(t / width, t % width); // Create an explosion centered around the tile
 			} else {
-				t.setFalling(false);
+				// The object is at rest until the tile below it changes
+				board.setFalling(t, false);
+				gravityList.sleep(i);
 			}
 		}
+		if(isMeasured) {
+			Metrics.FALLING_OBJECTS.set(numFalling);
+		}
+		Metrics.GRAVITY.stop(start);
 	}
 	
 	/**
 	 * Load the board for the next level
 	 */
 	public void nextLevel() {
-		if(currentLevel == NUM_LEVELS - 1) {
-			controller.endMenu();
+		if(currentLevel == numLevels - 1) {
+			setState(GAME_COMPLETE);
 			return;
 		}
-		board = levelList.get(++currentLevel);
+		++currentLevel;
+		template = takeNextTemplate();
+		restartLevel();
+	}
+	
+	/**
+	 * Starts the current level again from its starting layout
+	 */
+	public void restartLevel() {
+		board = template.materialise(board);
+		if(changes != null) {
+			board.setJournal(changes);
+		}
 		setTileTrackingVars();
-		controller.showLevel();
+		setState(PLAYING);
+		startHistory();
+	}
+	
+	/**
+	 * Starts the given level from its starting layout
+	 * 
+	 * @param level the number of the level, starting from 0
+	 */
+	public void goToLevel(int level) {
+		currentLevel = level;
+		nextTemplate = null;
+		template = loadTemplate(level);
+		restartLevel();
+	}
+	
+	/**
+	 * Saves everything needed to carry on the current level from where it is now. The first bytes of the saved state
+	 * are the board's cells, one byte per cell, so states can be compared and hashed cell by cell.
+	 * 
+	 * @return the saved state
+	 */
+	public byte[] saveState() {
+		gravityList.compact();
+		enemyList.compact();
+		int numCells = board.getWidth() * board.getHeight();
+		
+		// The objects don't need saving if scanning the board would find them in the same order
+		int numFalling = 0, numEnemies = 0;
+		for(int t = 0; t != numCells; ++t) {
+			if(TileRules.canFall(board.type(t))) {
+				++numFalling;
+			} else if(board.type(t) == MUMMY) {
+				++numEnemies;
+			}
+		}
+		boolean gravityScanned = gravityList.size() == numFalling && gravityList.isInCellOrder();
+		boolean enemiesScanned = enemyList.size() == numEnemies && enemyList.isInCellOrder();
+		
+		ByteBuffer out = ByteBuffer.allocate(numCells + SAVED_STATE_SIZE + savedSize(gravityList, gravityScanned)
+				+ savedSize(enemyList, enemiesScanned));
+		board.write(out, 0);
+		out.position(numCells);
+		out.put((byte) state).putInt(playerRow).putInt(playerCol).putInt(numOrbs);
+		saveObjects(out, gravityList, gravityScanned);
+		saveObjects(out, enemyList, enemiesScanned);
+		return out.array();
+	}
+	
+	/**
+	 * Carries on the current level from a state saved with saveState(). The game listeners aren't told about the
+	 * restored state, and the rewinding history starts again from it.
+	 * 
+	 * @param saved the saved state
+	 */
+	public void loadState(byte[] saved) {
+		readState(saved);
+		startHistory();
+	}
+	
+	/**
+	 * Saves everything needed to carry on the current level into two buffers, such as slots in large buffers kept off
+	 * the heap. The board's cells are written to the first buffer, one byte per cell, and the rest of the state to
+	 * the second, taking no more than getMaxProgressSize() bytes. Both buffers are written from and moved past their
+	 * positions.
+	 * 
+	 * @param cells the buffer to write the cells to
+	 * 
+	 * @param progress the buffer to write the rest of the state to
+	 */
+	public void saveState(ByteBuffer cells, ByteBuffer progress) {
+		int numCells = board.getWidth() * board.getHeight();
+		board.write(cells, cells.position());
+		cells.position(cells.position() + numCells);
+		gravityList.compact();
+		enemyList.compact();
+		writeProgress(progress);
+	}
+	
+	/**
+	 * Carries on the current level from a state saved with saveState(ByteBuffer, ByteBuffer). The level being played
+	 * must be the one the state was saved from. Both buffers are read from and moved past their positions.
+	 * 
+	 * @param cells the buffer to read the cells from
+	 * 
+	 * @param progress the buffer to read the rest of the state from
+	 */
+	public void loadState(ByteBuffer cells, ByteBuffer progress) {
+		int numCells = board.getWidth() * board.getHeight();
+		board.read(cells, cells.position());
+		cells.position(cells.position() + numCells);
+		readProgress(progress, numCells);
+		startHistory();
+	}
+	
+	/**
+	 * Returns the most bytes saveState(ByteBuffer, ByteBuffer) can write besides the cells for the current level,
+	 * which is reached when none of the level's objects have been destroyed yet
+	 * 
+	 * @return the largest size of the saved state without the cells
+	 */
+	public int getMaxProgressSize() {
+		// Each list is saved as its size followed by the cell of each object
+		return SAVED_STATE_SIZE + 4 * (1 + template.getNumFallingObjects()) + 4 * (1 + template.getNumEnemies());
+	}
+	
+	/**
+	 * Saves everything but the board's cells, which a keyframe keeps as a copy of the board instead. The objects are
+	 * always saved in update order, so this costs as much as the number of objects rather than the size of the board.
+	 * 
+	 * @return the saved state without the cells
+	 */
+	byte[] saveProgress() {
+		gravityList.compact();
+		enemyList.compact();
+		ByteBuffer out = ByteBuffer.allocate(SAVED_STATE_SIZE + savedSize(gravityList, false)
+				+ savedSize(enemyList, false));
+		writeProgress(out);
+		return out.array();
+	}
+	
+	/**
+	 * Writes everything but the board's cells, with the objects in update order, once the object lists have been
+	 * compacted
+	 * 
+	 * @param out the buffer to write to, from its position
+	 */
+	private void writeProgress(ByteBuffer out) {
+		out.put((byte) state).putInt(playerRow).putInt(playerCol).putInt(numOrbs);
+		saveObjects(out, gravityList, false);
+		saveObjects(out, enemyList, false);
+	}
+	
+	/**
+	 * Restores a state saved with saveState(), without telling the listeners or the history
+	 * 
+	 * @param saved the saved state
+	 */
+	private void readState(byte[] saved) {
+		int numCells = board.getWidth() * board.getHeight();
+		ByteBuffer in = ByteBuffer.wrap(saved);
+		board.read(in, 0);
+		in.position(numCells);
+		readProgress(in, numCells);
+	}
+	
+	/**
+	 * Restores everything but the board's cells from a state saved with saveState() or saveProgress(), once the cells
+	 * have been restored
+	 * 
+	 * @param in the saved state, positioned after the cells
+	 * 
+	 * @param numCells the number of cells on the board
+	 */
+	private void readProgress(ByteBuffer in, int numCells) {
+		state = in.get();
+		playerRow = in.getInt();
+		playerCol = in.getInt();
+		numOrbs = in.getInt();
+		
+		// Objects are saved in the order they're updated in, unless a scan of the board finds them in that order
+		gravityList.reset(numCells);
+		int numObjects = in.getInt();
+		for(int i = 0; i < numObjects; ++i) {
+			gravityList.add(in.getInt());
+		}
+		enemyList.reset(numCells);
+		int numEnemies = in.getInt();
+		for(int i = 0; i < numEnemies; ++i) {
+			enemyList.add(in.getInt());
+		}
+		if(numObjects == IN_CELL_ORDER || numEnemies == IN_CELL_ORDER) {
+			for(int t = 0; t != numCells; ++t) {
+				if(numObjects == IN_CELL_ORDER && TileRules.canFall(board.type(t))) {
+					gravityList.add(t);
+				}
+				if(numEnemies == IN_CELL_ORDER && board.type(t) == MUMMY) {
+					enemyList.add(t);
+				}
+			}
+		}
+		
+		flowField.invalidate();
+		enemiesMoved = true;
+	}
+	
+	/**
+	 * Plays the given level in place of the current one
+	 * 
+	 * @param level the level to play
+	 */
+	void playLevel(LevelTemplate level) {
+		template = level;
+		restartLevel();
 	}
 	
 	/**
@@ -185,224 +823,445 @@ public class Model {
 	 * 
 	 * @return the current game board
 	 */
-	public Tile[][] getBoard() {
+	public Board getBoard() {
 		return board;
 	}
 	
 	/**
- 	 * Loads each level from its respective text file in the levels folder 
+	 * Returns the journal of cells changed by the game. Changes are only recorded once this has first been called,
+	 * and the caller is expected to clear the journal once it has handled them.
+	 * 
+	 * @return the journal of changed cells
+	 */
+	public ChangeJournal getChanges() {
+		if(changes == null) {
+			changes = new ChangeJournal();
+			board.setJournal(changes);
+		}
+		return changes;
+	}
+	
+	/**
+	 * Returns the number of levels in the game
+	 * 
+	 * @return the number of levels in the game
+	 */
+	public int getNumLevels() {
+		return numLevels;
+	}
+	
+	/**
+	 * Reads the game's own levels into a level pack that any number of models can share, from the compiled level pack
+	 * if there is one or else from the level text files in the levels folder
+	 * 
+	 * @return the game's levels
+	 * 
+	 * @throws IOException if the compiled level pack can't be read
+	 */
+	public static LevelPack openLevelPack() throws IOException {
+		File pack = new File(LEVEL_PACK);
+		if(pack.exists()) {
+			return new LevelPack(pack);
+		}
+		List<LevelTemplate> levels = new ArrayList<LevelTemplate>();
+		for(int level = 0; levelFile(level).exists(); ++level) {
+			levels.add(fileToLevel(levelFile(level)));
+		}
+		return new LevelPack(levels);
+	}
+	
+	/**
+	 * Opens the compiled level pack if there is one, or else counts the level text files in the levels folder
+	 */
+	private void openLevels() {
+		File pack = new File(LEVEL_PACK);
+		if(pack.exists()) {
+			try {
+				levelPack = new LevelPack(pack);
+				numLevels = levelPack.size();
+				return;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		numLevels = 0;
+		while(levelFile(numLevels).exists()) {
+			++numLevels;
+		}
+	}
+	
+	/**
+ 	 * Loads the given level from the level pack, or from its respective text file in the levels folder 
+ 	 * 
+ 	 * @param level the number of the level, starting from 0
+ 	 * 
+ 	 * @return the starting layout of the level
+	 */
+	LevelTemplate loadTemplate(int level) {
+		return loadTemplate(level, numTicks);
+	}
+	
+	/**
+	 * Loads the given level, recording how long it took as a flight recorder event if this model is measured
+	 * 
+	 * @param level the number of the level, starting from 0
+	 * 
+	 * @param tick the number of ticks run when the level was asked for
+	 * 
+	 * @return the starting layout of the level
 	 */
-	private void loadLevels() {
-		for(int i = 1; i <= NUM_LEVELS; i++) {
-			levelList.add(fileToLevel(new File("levels/level" + i + ".txt")));
+	private LevelTemplate loadTemplate(int level, long tick) {
+		if(onlyLevel != null) {
+			return onlyLevel; // Already in memory
+		}
+		LevelLoadEvent event = null;
+		if(isMeasured) {
+			event = new LevelLoadEvent();
+			event.begin();
+		}
+		LevelTemplate loaded;
+		if(levelPack != null) {
+			loaded = levelPack.getLevel(level);
+		} else {
+			loaded = fileToLevel(levelFile(level));
 		}
+		if(event != null) {
+			event.commit(level, tick, levelPack != null);
+		}
+		return loaded;
+	}
+	
+	/**
+	 * Returns the text file of the given level in the levels folder
+	 * 
+	 * @param level the number of the level, starting from 0
+	 * 
+	 * @return the level's text file
+	 */
+	static File levelFile(int level) {
+		return new File("levels/level" + (level + 1) + ".txt");
 	}
 
 	/**
-	 * Extracts a level from a given level file
+	 * Extracts a level from a given level file. Each line of the file is a row of the level, and the level is as wide
+	 * as its longest row. The template checks that every row is filled and the edge is closed.
 	 * 
 	 * @param file the name of the file to extract the level from
 	 * 
-	 * @return the 2d array of tiles representing the level
+	 * @return the starting layout of the level
+	 * 
+	 * @throws IllegalArgumentException if the file has no tiles, rows of different lengths or a gap in its edge
 	 */
-	private Tile[][] fileToLevel(File file) {
-		Tile[][] level = new Tile[BOARD_HEIGHT][BOARD_WIDTH];
-		
-		int row = 0, col = 0;
+	static LevelTemplate fileToLevel(File file) {
+		List<char[]> rows = new ArrayList<char[]>();
 		try {
-			Scanner sc = new Scanner(file);
-			while(sc.hasNext()) {
-				
-				// Add the next tile to the level array
-				char tileType = imageStringToChar(sc.next().substring(1));
-				Tile t = new Tile(tileType, row, col);
-				level[row][col] = t;
-				
-				// Update row and column to be the next tile's position
-				if(col == BOARD_WIDTH - 1) {
-					++row;
-					col = 0;
-				} else {
-					++col;
+			Scanner lines = new Scanner(file);
+			while(lines.hasNextLine()) {
+				Scanner sc = new Scanner(lines.nextLine());
+				char[] row = new char[16];
+				int col = 0;
+				while(sc.hasNext()) {
+					// Add the next tile to the row
+					if(col == row.length) {
+						row = Arrays.copyOf(row, col * 2);
+					}
+					row[col++] = TileRules.imageToType(sc.next().substring(1));
+					
+					sc.next(); // Discard unused tile information from file
+				}
+				sc.close();
+				if(col != 0) {
+					rows.add(Arrays.copyOf(row, col));
 				}
-				
-				sc.next(); // Discard unused tile information from file
 			}
 
-			sc.close();		
+			lines.close();
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		}
 		
-		return level;
+		int width = 0;
+		for(char[] tiles : rows) {
+			width = Math.max(width, tiles.length);
+		}
+		int height = rows.size();
+		char[] types = new char[width * height];
+		Arrays.fill(types, LevelTemplate.NO_TILE);
+		for(int row = 0; row != height; ++row) {
+			System.arraycopy(rows.get(row), 0, types, row * width, rows.get(row).length);
+		}
+		try {
+			return new LevelTemplate(width, height, types);
+		} catch(IllegalArgumentException e) {
+			throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+		}
 	}
 	
 	/**
-	 * Converts a given image file string to its corresponding character
+	 * Returns the number of bytes saveObjects() writes for the given list
+	 * 
+	 * @param list the compacted list of objects
 	 * 
-	 * @param s the string containing the name of an image file
+	 * @param scanned whether the list holds the same objects in the same order as a scan of the board would find
 	 * 
-	 * @return the character representing the image file
+	 * @return the number of bytes saved
 	 */
-	private char imageStringToChar(String s) {
-		char c = '\0';
-		switch(s) {
-		case "hardSand.png":
-			c = HARD_SAND;
-			break;
-		case "granite.png":
-			c = GRANITE;
-			break;
-		case "softSand.png":
-			c = SOFT_SAND;
-			break;
-		case "background.png":
-			c = BACKGROUND;
-			break;
-		case "bomb.png":
-			c = BOMB;
-			break;
-		case "orb.png":
-			c = ORB;
-			break;
-		case "rock.png":
-			c = ROCK;
-			break;
-		case "portal.png":
-			c = PORTAL;
-			break;
-		case "guy.png":
-			c = PLAYER;
-			break;
-		case "mummy.png":
-			c = MUMMY;
-			break;
+	private int savedSize(ObjectList list, boolean scanned) {
+		return scanned ? 4 : 4 + 4 * list.size();
+	}
+	
+	/**
+	 * Saves the cells of the objects in the given list in update order, or just IN_CELL_ORDER if a scan of the board
+	 * would find the same objects in the same order
+	 * 
+	 * @param out the buffer to save to
+	 * 
+	 * @param list the compacted list of objects
+	 * 
+	 * @param scanned whether the list holds the same objects in the same order as a scan of the board would find
+	 */
+	private void saveObjects(ByteBuffer out, ObjectList list, boolean scanned) {
+		if(scanned) {
+			out.putInt(IN_CELL_ORDER);
+			return;
+		}
+		out.putInt(list.size());
+		for(int i = 0; i != list.size(); ++i) {
+			out.putInt(list.get(i));
 		}
-		assert(c != '\0');
-		return c;
 	}
 	
 	/**
-	 * Initialize the lists and variables for tracking the certain tile locations
+	 * Starts the rewinding history again from the current state, if rewinding is on
+	 */
+	private void startHistory() {
+		if(history != null) {
+			board.setHistory(history);
+			history.attach(board, gravityList, enemyList);
+			history.start(board.copy(), saveProgress(), playerRow, playerCol, numOrbs, state);
+		}
+	}
+	
+	/**
+	 * Initialize the lists and variables for tracking the certain tile locations from the current level's template
 	 */
 	private void setTileTrackingVars() {
-		gravityList.clear();
-		enemyList.clear();
-		for(int row = 0; row != board.length; ++row) {
-			for(int col = 0; col != board[0].length; ++col) {
-				Tile t = board[row][col];
-				
-				// Add objects that can fall to the gravity list
-				if(t.canFall()) {
-					gravityList.add(t);
-				}
-				
-				// Update variables for tracking enemies, player, and orbs
-				if(t.getType() == MUMMY) {
-					enemyList.add(t);
-				} else if(t.getType() == PLAYER) {
-					playerRow = t.getRow();
-					playerCol = t.getCol();
-				} else if(t.getType() == ORB) {
-					++numOrbs;
-				}
-			}
+		gravityList.reset(board.getWidth() * board.getHeight());
+		enemyList.reset(board.getWidth() * board.getHeight());
+		flowField.invalidate();
+		template.addObjects(gravityList, enemyList);
+		numOrbs = template.getNumOrbs();
+		if(template.getPlayer() != -1) {
+			playerRow = template.getPlayer() / board.getWidth();
+			playerCol = template.getPlayer() % board.getWidth();
 		}
 	}
 	
 	/**
-	 * Explodes the target tile and its 8 surrounding tiles. Surrounding bombs trigger a chain of explosions.
+	 * Explodes the target tile and its 8 surrounding tiles. Surrounding bombs trigger a chain of explosions. The
+	 * whole chain is worked out before any tile is cleared, and a game over is reported once at the end.
 	 * 
 	 * @param row row of the explosion target
 	 * 
 	 * @param col column of the explosion target
 	 */
-	private void explode(int row, int col) {
-		for(int r = -1; r != 2; ++r) {
-			for(int c = -1; c != 2; ++c) {
-				Tile target = board[row+r][col+c];
-				if(target.canExplode()) {
-					// Game over if player explodes
-					if(target.getType() == PLAYER) {
-						if(r != 0 || c != 0) {
-							target.setType(BACKGROUND);
-							explode(row+r, col+c); // Causes a chain explosion
-						} else {
-							target.setType(BACKGROUND);
-						}
-						controller.gameOver();
-						return;
-					}
-					
-					// Remove object from gravity-affected list (set to null)
-					if(gravityList.contains(target)) {
-						gravityList.set(gravityList.indexOf(target), null);
-					}
-					
-					// Remove object from enemy list (set to null)
-					if(enemyList.contains(target)) {
-						enemyList.set(enemyList.indexOf(target), null);
-					}
-					
-					// Explode object
-					if((target.getType() == BOMB || target.getType() == MUMMY) && (r != 0 || c != 0)) {
-						target.setType(BACKGROUND);
-						explode(row+r, col+c); // Causes a chain explosion
-					} else {
-						target.setType(BACKGROUND);
-					}
-				}
-			}
+	void explode(int row, int col) {
+		long start = startTimer();
+		ExplosionEvent event = null;
+		if(isMeasured) {
+			event = new ExplosionEvent();
+			event.begin();
+		}
+		explosion.resolve(board, board.index(row, col));
+		
+		// Destroy the exploded tiles and remove their objects from the gravity-affected and enemy lists
+		for(int i = 0; i != explosion.size(); ++i) {
+			int target = explosion.get(i);
+			gravityList.removeAt(target);
+			enemyList.removeAt(target);
+			setType(target, BACKGROUND);
+		}
+		
+		// Game over if player explodes
+		if(explosion.hitPlayer()) {
+			setState(GAME_OVER);
+		}
+		Metrics.EXPLOSION.stop(start);
+		if(event != null) {
+			event.commit(currentLevel, numTicks, row, col, explosion.size(), explosion.hitPlayer());
 		}
 	}
+
 	
 	/**
-	 * Moves the mummy at the given row and column to the nearby tile closest to the player
+	 * Moves the mummy at the given row and column one step along the shortest path to the player. If the player can't
+	 * be reached, the mummy moves to the nearby tile closest to him in a straight line instead.
+	 * 
+	 * @param i the mummy's slot in the enemy list
 	 * 
 	 * @param row the mummy's current row
 	 * 
 	 * @param col the mummy's current column
 	 */
-	private void mummyMove(int row, int col) {
-		Tile mummy = board[row][col];
-		int bestRow = row, bestCol = col;
-		double lowestDistance = distance(bestRow, bestCol, playerRow, playerCol);
-
-		if(mummy.canMoveInto(board[row+1][col].getType())
-				&& distance(row+1, col, playerRow, playerCol) < lowestDistance) {
-			bestRow = row + 1;
-			bestCol = col;
-			lowestDistance = distance(bestRow, bestCol, playerRow, playerCol);
-		} else if(mummy.canMoveInto(board[row-1][col].getType())
-				&& distance(row-1, col, playerRow, playerCol) < lowestDistance) {
-			bestRow = row - 1;
-			bestCol = col;
-			lowestDistance = distance(bestRow, bestCol, playerRow, playerCol);
-		}
+	private void mummyMove(int i, int row, int col) {
+		int mummyCell = board.index(row, col);
+		char mummy = board.type(mummyCell);
+		int best = mummyCell;
 		
-		if(mummy.canMoveInto(board[row][col+1].getType())
-				&& distance(row, col+1, playerRow, playerCol) < lowestDistance) {
-			bestRow = row;
-			bestCol = col + 1;
-		} else if(mummy.canMoveInto(board[row][col-1].getType())
-				&& distance(row, col-1, playerRow, playerCol) < lowestDistance) {
-			bestRow = row;
-			bestCol = col - 1;
+		if(flowField.get(mummyCell) != FlowField.UNREACHABLE) {
+			// Step to the neighbour closest to the player, preferring down, up, right and then left
+			best = closerStep(mummy, mummyCell + board.getWidth(), best);
+			best = closerStep(mummy, mummyCell - board.getWidth(), best);
+			best = closerStep(mummy, mummyCell + 1, best);
+			best = closerStep(mummy, mummyCell - 1, best);
+		} else {
+			int bestRow = row, bestCol = col;
+			int lowestDistance = distanceSquared(bestRow, bestCol, playerRow, playerCol);
+			
+			if(TileRules.canMoveInto(mummy, board.getType(row+1, col))
+					&& distanceSquared(row+1, col, playerRow, playerCol) < lowestDistance) {
+				bestRow = row + 1;
+				bestCol = col;
+				lowestDistance = distanceSquared(bestRow, bestCol, playerRow, playerCol);
+			} else if(TileRules.canMoveInto(mummy, board.getType(row-1, col))
+					&& distanceSquared(row-1, col, playerRow, playerCol) < lowestDistance) {
+				bestRow = row - 1;
+				bestCol = col;
+				lowestDistance = distanceSquared(bestRow, bestCol, playerRow, playerCol);
+			}
+			
+			if(TileRules.canMoveInto(mummy, board.getType(row, col+1))
+					&& distanceSquared(row, col+1, playerRow, playerCol) < lowestDistance) {
+				bestRow = row;
+				bestCol = col + 1;
+			} else if(TileRules.canMoveInto(mummy, board.getType(row, col-1))
+					&& distanceSquared(row, col-1, playerRow, playerCol) < lowestDistance) {
+				bestRow = row;
+				bestCol = col - 1;
+			}
+			best = board.index(bestRow, bestCol);
 		}
 		
-		if(bestRow != row || bestCol != col) {
-			if(board[bestRow][bestCol].getType() == PLAYER) {
+		if(best != mummyCell) {
+			enemiesMoved = true;
+			if(board.type(best) == PLAYER) {
 				explode(row, col);
 				return;
 			}
-			board[bestRow][bestCol].setType(MUMMY);
-			mummy.setType(BACKGROUND);
-			enemyList.set(enemyList.indexOf(mummy), board[bestRow][bestCol]);
+			setType(best, MUMMY);
+			setType(mummyCell, BACKGROUND);
+			enemyList.move(i, best);
+		}
+	}
+	
+	/**
+	 * Changes the type of the tile in the given cell, waking the object above it in case it can now fall and updating
+	 * the enemies' paths through the cell
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @param type the new type of the tile
+	 */
+	private void setType(int cell, char type) {
+		char oldType = board.type(cell);
+		board.setType(cell, type);
+		flowField.cellChanged(board, cell, oldType);
+		if(cell >= board.getWidth()) {
+			gravityList.wakeAt(cell - board.getWidth());
+		}
+	}
+	
+	/**
+	 * Returns the given neighbour if an enemy can step into it and it's closer to the player than the best step found
+	 * so far
+	 * 
+	 * @param enemy the type of the enemy
+	 * 
+	 * @param neighbour the index of the neighbouring cell
+	 * 
+	 * @param best the index of the best cell to step into so far
+	 * 
+	 * @return the index of the best cell to step into
+	 */
+	private int closerStep(char enemy, int neighbour, int best) {
+		if(TileRules.canMoveInto(enemy, board.type(neighbour)) && flowField.get(neighbour) < flowField.get(best)) {
+			return neighbour;
+		}
+		return best;
+	}
+	
+	/**
+	 * Starts reading the next level in the background, if there is one and prefetching is on
+	 */
+	private void prefetchNextLevel() {
+		final int level = currentLevel + 1;
+		final long tick = numTicks;
+		if(!isPrefetching || level == numLevels || nextTemplate != null) {
+			return;
+		}
+		nextTemplate = levelLoader.submit(new Callable<LevelTemplate>() {
+			@Override
+			public LevelTemplate call() {
+				return loadTemplate(level, tick);
+			}
+		});
+	}
+	
+	/**
+	 * Returns the starting layout of the current level, waiting for it if it's being read in the background
+	 * 
+	 * @return the starting layout of the current level
+	 */
+	private LevelTemplate takeNextTemplate() {
+		Future<LevelTemplate> prefetched = nextTemplate;
+		nextTemplate = null;
+		if(prefetched != null) {
+			try {
+				return prefetched.get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+			}
 		}
+		return loadTemplate(currentLevel);
+	}
+	
+	/**
+	 * Changes the state of the game and tells the listeners about it
+	 * 
+	 * @param state the new state of the game
+	 */
+	private void setState(int state) {
+		this.state = state;
+		for(int i = 0; i != listeners.size(); ++i) {
+			GameListener listener = listeners.get(i);
+			switch(state) {
+			case PLAYING:
+				listener.levelStarted();
+				break;
+			case LEVEL_COMPLETE:
+				listener.levelComplete();
+				break;
+			case GAME_OVER:
+				listener.gameOver();
+				break;
+			case GAME_COMPLETE:
+				listener.gameComplete();
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Starts timing part of a tick, if this model is measured
+	 * 
+	 * @return the start time to pass to Histogram.stop(), or 0 if the time isn't being recorded
+	 */
+	private long startTimer() {
+		return isMeasured ? Metrics.start() : 0;
 	}
 	
 	/**
-	 * Finds the distance between two points
+	 * Finds the square of the distance between two points, which compares the same way as the distance itself
 	 * 
 	 * @param x1 x-coordinate of the first point
 	 * 
@@ -412,9 +1271,9 @@ public class Model {
 	 * 
 	 * @param y2 y-coordinate of the second point
 	 * 
-	 * @return the distance between the two points
+	 * @return the squared distance between the two points
 	 */
-	private double distance(int x1, int y1, int x2, int y2) {
-		return Math.sqrt(Math.pow(x2-x1, 2.0) + Math.pow(y2-y1, 2.0));
+	private int distanceSquared(int x1, int y1, int x2, int y2) {
+		return (x2-x1) * (x2-x1) + (y2-y1) * (y2-y1);
 	}
 }
\ No newline at end of file
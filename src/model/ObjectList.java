@@ -0,0 +1,392 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class tracks the positions of a kind of object on a board. Each object has a slot holding its cell, and each
+ * cell holds the slot of the object in it, so objects can be found, moved and removed without searching. Slots keep
+ * the order the objects were added in, and removed slots are compacted away in a single pass with {@link #compact()}.
+ * 
+ * Objects can also be put to sleep while nothing can happen to them, so that only awake objects need to be visited.
+ * Objects are awake when added or moved, and stay awake until put to sleep.
+ * 
+ * The slots of the cells are kept in pages of one board chunk each, created the first time an object enters the
+ * chunk, so a large board with few objects needs few pages.
+ * 
+ * @author Jeffrey Sun
+ */
+final class ObjectList {
+
+	static final int NONE = -1; // Marks a removed slot, or a cell without an object
+
+	private int[] cells; // Cell of the object in each slot
+	private int[][] slots; // Slot of the object in each cell, in pages of Board.CHUNK_SIZE cells, or null pages
+	private long[] awake; // Bitmap of the slots holding awake objects
+	private int size;
+	private int numRemoved;
+	private History history; // Records changes for rewinding, or null if the list isn't being recorded
+	private int id; // Which of the history's lists this is
+
+	/**
+	 * Constructor that creates an empty list
+	 */
+	ObjectList() {
+		cells = new int[16];
+		slots = new int[0][];
+		awake = new long[1];
+		size = 0;
+		numRemoved = 0;
+	}
+
+	/**
+	 * Removes every object and makes room for a board with the given number of cells
+	 * 
+	 * @param numCells the number of cells on the board
+	 */
+	void reset(int numCells) {
+		int numPages = (numCells + Board.CHUNK_SIZE - 1) >>> Board.CHUNK_BITS;
+		if(slots.length != numPages) {
+			slots = new int[numPages][];
+		} else {
+			// Only the cells of the current objects hold slots
+			for(int slot = 0; slot != size; ++slot) {
+				if(cells[slot] != NONE) {
+					setSlot(cells[slot], NONE);
+				}
+			}
+		}
+		Arrays.fill(awake, 0);
+		size = 0;
+		numRemoved = 0;
+	}
+
+	/**
+	 * Returns the number of slots in the list, including removed slots that haven't been compacted yet
+	 * 
+	 * @return the number of slots in the list
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the cell of the object in the given slot
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @return the cell index, or NONE if the object was removed
+	 */
+	int get(int slot) {
+		return cells[slot];
+	}
+
+	/**
+	 * Returns the slot of the object in the given cell
+	 * 
+	 * @param cell the cell index
+	 * 
+	 * @return the slot of the object, or NONE if the cell has no object
+	 */
+	int slotAt(int cell) {
+		int[] page = slots[cell >>> Board.CHUNK_BITS];
+		return page == null ? NONE : page[cell & (Board.CHUNK_SIZE - 1)];
+	}
+
+	/**
+	 * Adds an object in the given cell to the end of the list
+	 * 
+	 * @param cell the cell index of the object
+	 */
+	void add(int cell) {
+		if(size == cells.length) {
+			cells = Arrays.copyOf(cells, size * 2);
+			awake = Arrays.copyOf(awake, (size * 2 + 63) >>> 6);
+		}
+		if(history != null) {
+			history.objectAdded(id);
+		}
+		cells[size] = cell;
+		setSlot(cell, size);
+		wake(size);
+		++size;
+	}
+
+	/**
+	 * Moves the object in the given slot to another cell
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @param cell the cell index to move it to
+	 */
+	void move(int slot, int cell) {
+		if(history != null) {
+			history.objectMoved(id, slot, cells[slot]);
+		}
+		setSlot(cells[slot], NONE);
+		cells[slot] = cell;
+		setSlot(cell, slot);
+		wake(slot);
+	}
+
+	/**
+	 * Removes the object in the given slot. The slot is kept until the list is compacted, so the slots of the other
+	 * objects don't change.
+	 * 
+	 * @param slot the slot of the object
+	 */
+	void remove(int slot) {
+		if(history != null) {
+			history.objectRemoved(id, slot, cells[slot]);
+		}
+		setSlot(cells[slot], NONE);
+		cells[slot] = NONE;
+		sleep(slot);
+		++numRemoved;
+	}
+
+	/**
+	 * Removes the object in the given cell, if there is one
+	 * 
+	 * @param cell the cell index
+	 */
+	void removeAt(int cell) {
+		int slot = slotAt(cell);
+		if(slot != NONE) {
+			remove(slot);
+		}
+	}
+
+	/**
+	 * Wakes the object in the given slot
+	 * 
+	 * @param slot the slot of the object
+	 */
+	void wake(int slot) {
+		if(history != null && !isAwake(slot)) {
+			history.awakeChanged(id, slot, false);
+		}
+		awake[slot >>> 6] |= 1L << slot;
+	}
+
+	/**
+	 * Wakes the object in the given cell, if there is one
+	 * 
+	 * @param cell the cell index
+	 */
+	void wakeAt(int cell) {
+		int slot = slotAt(cell);
+		if(slot != NONE) {
+			wake(slot);
+		}
+	}
+
+	/**
+	 * Puts the object in the given slot to sleep
+	 * 
+	 * @param slot the slot of the object
+	 */
+	void sleep(int slot) {
+		if(history != null && isAwake(slot)) {
+			history.awakeChanged(id, slot, true);
+		}
+		awake[slot >>> 6] &= ~(1L << slot);
+	}
+
+	/**
+	 * Returns whether the object in the given slot is awake
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @return whether the object is awake
+	 */
+	boolean isAwake(int slot) {
+		return (awake[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	/**
+	 * Returns whether any object is awake
+	 * 
+	 * @return whether any object is awake
+	 */
+	boolean hasAwake() {
+		for(int i = 0; i != awake.length; ++i) {
+			if(awake[i] != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the last awake object at or before the given slot, for visiting the awake objects from last to first
+	 * 
+	 * @param slot the slot to search back from, or -1
+	 * 
+	 * @return the slot of the awake object, or NONE if there isn't one
+	 */
+	int lastAwake(int slot) {
+		if(slot < 0) {
+			return NONE;
+		}
+		int i = slot >>> 6;
+		long word = awake[i] & (-1L >>> (63 - (slot & 63))); // Ignore the slots after the given one
+		while(word == 0) {
+			if(i == 0) {
+				return NONE;
+			}
+			word = awake[--i];
+		}
+		return (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+	}
+
+	/**
+	 * Returns whether the objects' slots are in the same order as their cells, as they are when a level starts
+	 * 
+	 * @return whether each slot's cell comes after the previous slot's cell
+	 */
+	boolean isInCellOrder() {
+		for(int slot = 1; slot < size; ++slot) {
+			if(cells[slot] <= cells[slot - 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Discards removed slots, moving the remaining objects down to fill the gaps in the same order
+	 */
+	void compact() {
+		if(numRemoved == 0) {
+			return;
+		}
+		int kept = 0;
+		for(int slot = 0; slot != size; ++slot) {
+			int cell = cells[slot];
+			if(cell != NONE) {
+				boolean isAwake = isAwake(slot);
+				setAwake(slot, false);
+				setAwake(kept, isAwake);
+				cells[kept] = cell;
+				setSlot(cell, kept);
+				++kept;
+			} else if(history != null) {
+				history.gapDropped(id, slot);
+			}
+		}
+		if(history != null) {
+			history.listCompacted(id, size);
+		}
+		size = kept;
+		numRemoved = 0;
+	}
+
+	/**
+	 * Starts recording every change to the list in the given history, so that it can be rewound
+	 * 
+	 * @param history the history to record changes in, or null to stop recording
+	 * 
+	 * @param id which of the history's lists this is
+	 */
+	void setHistory(History history, int id) {
+		this.history = history;
+		this.id = id;
+	}
+
+	/**
+	 * Wakes the object in the given slot or puts it to sleep, without recording the change
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @param isAwake whether the object should be awake
+	 */
+	void setAwake(int slot, boolean isAwake) {
+		if(isAwake) {
+			awake[slot >>> 6] |= 1L << slot;
+		} else {
+			awake[slot >>> 6] &= ~(1L << slot);
+		}
+	}
+
+	/**
+	 * Sets the slot of the object in the given cell, creating the cell's page if it doesn't have one yet
+	 * 
+	 * @param cell the cell index
+	 * 
+	 * @param slot the slot of the object, or NONE
+	 */
+	private void setSlot(int cell, int slot) {
+		int[] page = slots[cell >>> Board.CHUNK_BITS];
+		if(page == null) {
+			if(slot == NONE) {
+				return;
+			}
+			page = new int[Board.CHUNK_SIZE];
+			Arrays.fill(page, NONE);
+			slots[cell >>> Board.CHUNK_BITS] = page;
+		}
+		page[cell & (Board.CHUNK_SIZE - 1)] = slot;
+	}
+
+	/**
+	 * Takes back the object most recently added
+	 */
+	void undoAdd() {
+		--size;
+		setSlot(cells[size], NONE);
+	}
+
+	/**
+	 * Moves an object back to the cell it moved from
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @param oldCell the cell it moved from
+	 */
+	void undoMove(int slot, int oldCell) {
+		setSlot(cells[slot], NONE);
+		cells[slot] = oldCell;
+		setSlot(oldCell, slot);
+	}
+
+	/**
+	 * Puts a removed object back in its slot
+	 * 
+	 * @param slot the slot of the object
+	 * 
+	 * @param oldCell the cell it was removed from
+	 */
+	void undoRemove(int slot, int oldCell) {
+		cells[slot] = oldCell;
+		setSlot(oldCell, slot);
+		--numRemoved;
+	}
+
+	/**
+	 * Puts back the removed slots that compacting the list discarded, moving the objects back up around them
+	 * 
+	 * @param oldSize the number of slots before compacting
+	 * 
+	 * @param gaps the discarded slots, in descending order
+	 */
+	void undoCompact(int oldSize, int[] gaps) {
+		int numGaps = oldSize - size;
+		int gap = 0;
+		int from = size - 1;
+		for(int slot = oldSize - 1; slot != -1; --slot) {
+			if(gap != numGaps && gaps[gap] == slot) {
+				cells[slot] = NONE;
+				setAwake(slot, false);
+				++gap;
+			} else {
+				int cell = cells[from];
+				setAwake(slot, isAwake(from));
+				cells[slot] = cell;
+				setSlot(cell, slot);
+				--from;
+			}
+		}
+		size = oldSize;
+		numRemoved = numGaps;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,266 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class records everything done to a model during a session, so that the session can be replayed exactly. Every
+ * input goes through the recording, which applies it to the model and logs it as a single byte, or two for a rewind.
+ * The tick an input happened on is the number of ticks logged before it, so it doesn't need storing. Each tick also
+ * logs a checksum of the board after it, so a replay can tell the tick on which it stopped matching the recording.
+ * 
+ * A recording file starts with a header (magic number, format version, starting level and the starting board's
+ * checksum), followed by the number of events and the events, followed by the number of ticks and the checksum after
+ * each tick.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Recording {
+
+	public static final int NO_DIVERGENCE = -1;
+
+	// Events, with moves logged as the player input itself
+	private static final byte TICK = Model.WAIT;
+	private static final byte RESTART_LEVEL = 5;
+	private static final byte NEXT_LEVEL = 6;
+	private static final byte REWIND = 7; // Followed by the number of ticks rewound
+
+	private static final int MAGIC = 0x43525243; // "CRRC"
+	private static final int VERSION = 1;
+
+	private final int startLevel;
+	private final int startChecksum;
+	private byte[] events;
+	private int numEvents;
+	private int[] checksums; // Checksum of the board after each tick
+	private int numTicks;
+
+	/**
+	 * Constructor that starts recording a model at the start of its current level
+	 * 
+	 * @param model the model to record, which should be at the start of a level
+	 */
+	public Recording(Model model) {
+		this(model.getLevel(), model.getBoard().checksum(), new byte[256], 0, new int[64], 0);
+	}
+
+	/**
+	 * Constructor that creates a recording from logged events
+	 * 
+	 * @param startLevel the level the recording starts on
+	 * 
+	 * @param startChecksum the checksum of the board at the start
+	 * 
+	 * @param events the logged events
+	 * 
+	 * @param numEvents the number of events
+	 * 
+	 * @param checksums the checksum after each tick
+	 * 
+	 * @param numTicks the number of ticks
+	 */
+	private Recording(int startLevel, int startChecksum, byte[] events, int numEvents, int[] checksums, int numTicks) {
+		this.startLevel = startLevel;
+		this.startChecksum = startChecksum;
+		this.events = events;
+		this.numEvents = numEvents;
+		this.checksums = checksums;
+		this.numTicks = numTicks;
+	}
+
+	/**
+	 * Moves the player and logs the move
+	 * 
+	 * @param model the model being recorded
+	 * 
+	 * @param input the player input, one of UP, DOWN, LEFT or RIGHT
+	 */
+	public void move(Model model, int input) {
+		model.move(input);
+		log((byte) input);
+	}
+
+	/**
+	 * Advances the game by one tick and logs the tick along with the board's checksum after it
+	 * 
+	 * @param model the model being recorded
+	 */
+	public void tick(Model model) {
+		model.tick();
+		log(TICK);
+		if(numTicks == checksums.length) {
+			checksums = Arrays.copyOf(checksums, numTicks * 2);
+		}
+		checksums[numTicks++] = model.getBoard().checksum();
+	}
+
+	/**
+	 * Starts the current level again and logs the restart
+	 * 
+	 * @param model the model being recorded
+	 */
+	public void restartLevel(Model model) {
+		model.restartLevel();
+		log(RESTART_LEVEL);
+	}
+
+	/**
+	 * Loads the next level and logs it
+	 * 
+	 * @param model the model being recorded
+	 */
+	public void nextLevel(Model model) {
+		model.nextLevel();
+		log(NEXT_LEVEL);
+	}
+
+	/**
+	 * Rewinds the current level and logs the rewind
+	 * 
+	 * @param model the model being recorded, which must have rewinding turned on
+	 * 
+	 * @param ticks the number of ticks to go back by, up to 127
+	 * 
+	 * @return the number of ticks actually gone back by
+	 */
+	public int rewind(Model model, int ticks) {
+		int rewound = model.rewind(ticks);
+		log(REWIND);
+		log((byte) ticks);
+		return rewound;
+	}
+
+	/**
+	 * Returns the number of ticks in the recording
+	 * 
+	 * @return the number of ticks
+	 */
+	public int getNumTicks() {
+		return numTicks;
+	}
+
+	/**
+	 * Returns the number of events in the recording, counting ticks, moves, restarts and level changes
+	 * 
+	 * @return the number of events
+	 */
+	public int getNumEvents() {
+		return numEvents;
+	}
+
+	/**
+	 * Plays the recording back on a model as fast as possible, checking the board after every tick. Rewinding is
+	 * turned on first, so that recorded rewinds go back to the same place.
+	 * 
+	 * @param model a new model, which is taken to the recording's starting level
+	 * 
+	 * @return NO_DIVERGENCE if every tick matched the recording, 0 if the starting board didn't match, or else the
+	 * number of the first tick that didn't match, starting from 1
+	 */
+	public int replay(Model model) {
+		model.enableRewind();
+		if(model.getLevel() != startLevel) {
+			model.goToLevel(startLevel);
+		}
+		if(model.getBoard().checksum() != startChecksum) {
+			return 0;
+		}
+		int tick = 0;
+		for(int i = 0; i != numEvents; ++i) {
+			byte event = events[i];
+			if(event == TICK) {
+				model.tick();
+				if(model.getBoard().checksum() != checksums[tick++]) {
+					return tick;
+				}
+			} else if(event == RESTART_LEVEL) {
+				model.restartLevel();
+			} else if(event == NEXT_LEVEL) {
+				model.nextLevel();
+			} else if(event == REWIND) {
+				model.rewind(events[++i]);
+			} else {
+				model.move(event);
+			}
+		}
+		return NO_DIVERGENCE;
+	}
+
+	/**
+	 * Writes the recording to a file
+	 * 
+	 * @param file the file to write
+	 * 
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(File file) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(startLevel);
+			out.writeInt(startChecksum);
+			out.writeInt(numEvents);
+			out.write(events, 0, numEvents);
+			out.writeInt(numTicks);
+			for(int i = 0; i != numTicks; ++i) {
+				out.writeInt(checksums[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads a recording from a file
+	 * 
+	 * @param file the file to read
+	 * 
+	 * @return the recording
+	 * 
+	 * @throws IOException if the file can't be read or isn't a recording
+	 */
+	public static Recording read(File file) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a version " + VERSION + " recording");
+			}
+			int startLevel = in.readInt();
+			int startChecksum = in.readInt();
+			byte[] events = new byte[in.readInt()];
+			in.readFully(events);
+			int[] checksums = new int[in.readInt()];
+			for(int i = 0; i != checksums.length; ++i) {
+				checksums[i] = in.readInt();
+			}
+			int numTicks = 0;
+			for(int i = 0; i < events.length; ++i) {
+				if(events[i] == TICK) {
+					++numTicks;
+				} else if(events[i] == REWIND) {
+					++i; // Skip the number of ticks
+				}
+			}
+			if(numTicks != checksums.length) {
+				throw new IOException(file + " has " + numTicks + " ticks but " + checksums.length + " checksums");
+			}
+			return new Recording(startLevel, startChecksum, events, events.length, checksums, checksums.length);
+		}
+	}
+
+	/**
+	 * Adds an event to the log
+	 * 
+	 * @param event the event to add
+	 */
+	private void log(byte event) {
+		if(numEvents == events.length) {
+			events = Arrays.copyOf(events, numEvents * 2);
+		}
+		events[numEvents++] = event;
+	}
+}
\ No newline at end of file
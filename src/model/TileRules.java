@@ -0,0 +1,166 @@
+package model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * This class holds the behaviour shared by every tile of the same type. The rules are read once from the tile rules
+ * file and stored as bitmasks indexed by tile type, so each check is a single bit test.
+ * 
+ * Each line of the rules file describes one tile type: its character, its image, whether it can fall, whether it can
+ * explode, the types it explodes on when falling onto them and the types it can move into.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class TileRules {
+
+	private static final String RULES_FILE = "data/tiles.txt";
+	private static final String NONE = "-"; // Marks an empty list of tile types in the rules file
+
+	private static final long[] bit = new long[128]; // Bit representing each tile type in the masks below
+	private static final boolean[] canFall = new boolean[128];
+	private static final boolean[] canExplode = new boolean[128];
+	private static final long[] explodesOn = new long[128];
+	private static final long[] canMoveInto = new long[128];
+	private static final String[] image = new String[128];
+	private static final Map<String, Character> imageToType = new HashMap<String, Character>();
+
+	static {
+		loadRules(new File(RULES_FILE));
+	}
+
+	private TileRules() {}
+
+	/**
+	 * Returns whether objects of the given type can fall due to gravity
+	 * 
+	 * @param type the type of the object
+	 * 
+	 * @return whether the object is affected by gravity
+	 */
+	public static boolean canFall(char type) {
+		return canFall[type];
+	}
+
+	/**
+	 * Returns whether objects of the given type can be exploded by other objects
+	 * 
+	 * @param type the type of the object
+	 * 
+	 * @return whether the object can be exploded by other objects
+	 */
+	public static boolean canExplode(char type) {
+		return canExplode[type];
+	}
+
+	/**
+	 * Returns whether an object of the given type explodes when it falls onto the target type
+	 * 
+	 * @param type the type of the falling object
+	 * 
+	 * @param target the type of the tile below the object
+	 * 
+	 * @return whether the object explodes on the target
+	 */
+	public static boolean explodesOn(char type, char target) {
+		return (explodesOn[type] & bit[target]) != 0;
+	}
+
+	/**
+	 * Returns whether an object of the given type can move into the target type
+	 * 
+	 * @param type the type of the moving object
+	 * 
+	 * @param target the type of the tile being moved into
+	 * 
+	 * @return whether the object can move into the target
+	 */
+	public static boolean canMoveInto(char type, char target) {
+		return (canMoveInto[type] & bit[target]) != 0;
+	}
+
+	/**
+	 * Returns the name of the image file used to draw the given type
+	 * 
+	 * @param type the type of the tile
+	 * 
+	 * @return the name of the image file, or null if the type is unknown
+	 */
+	public static String getImage(char type) {
+		return image[type];
+	}
+
+	/**
+	 * Converts a given image file string to its corresponding tile type
+	 * 
+	 * @param s the string containing the name of an image file
+	 * 
+	 * @return the character representing the image file, or '\0' if no tile type uses the image
+	 */
+	public static char imageToType(String s) {
+		Character type = imageToType.get(s);
+		return type == null ? '\0' : type;
+	}
+
+	/**
+	 * Reads the tile rules from the given file
+	 * 
+	 * @param file the file to read the rules from
+	 */
+	private static void loadRules(File file) {
+		try {
+			Scanner sc = new Scanner(file);
+			String[][] lines = new String[128][];
+			int numTypes = 0;
+
+			// Give each tile type its own bit before reading the lists of types that refer to it
+			while(sc.hasNextLine()) {
+				String line = sc.nextLine().trim();
+				if(line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\\s+");
+				char type = fields[0].charAt(0);
+				assert(numTypes != Long.SIZE && type < 128);
+				bit[type] = 1L << numTypes++;
+				lines[type] = fields;
+			}
+			sc.close();
+
+			for(char type = 0; type != lines.length; ++type) {
+				String[] fields = lines[type];
+				if(fields == null) {
+					continue;
+				}
+				image[type] = fields[1];
+				imageToType.put(fields[1], type);
+				canFall[type] = Boolean.parseBoolean(fields[2]);
+				canExplode[type] = Boolean.parseBoolean(fields[3]);
+				explodesOn[type] = typesToMask(fields[4]);
+				canMoveInto[type] = typesToMask(fields[5]);
+			}
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Converts a string of tile type characters to a bitmask of those types
+	 * 
+	 * @param types the characters of the tile types, or "-" for none
+	 * 
+	 * @return the bitmask with the bit of each given type set
+	 */
+	private static long typesToMask(String types) {
+		long mask = 0;
+		if(!types.equals(NONE)) {
+			for(int i = 0; i != types.length(); ++i) {
+				mask |= bit[types.charAt(i)];
+			}
+		}
+		return mask;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,235 @@
+package solver;
+
+import model.Board;
+import model.Model;
+import model.TileRules;
+
+/**
+ * This class finds orbs that can never move again, so the search can drop states that can't be completed. An object
+ * can't fall with something permanent under it, and with something permanent on either side it can't be pushed
+ * either way, since the player can't stand on that side to push it the other way or be pushed into it. Hard sand is
+ * permanent, and so are granite and objects that no explosion can reach, the objects only if they can't move either.
+ * Objects stuck against each other are found by assuming the object being checked stays put while its neighbours
+ * are checked, since neither can move first.
+ * 
+ * Explosions start where a bomb lands or something lands on an enemy. Bombs are followed over every way they might
+ * move, falling, being pushed sideways or being pushed up, past anything but hard sand, and the tiles around those
+ * are taken as reachable by an explosion. Enemies can be anywhere, so while one is alive every tile is.
+ * 
+ * @author Jeffrey Sun
+ */
+final class FrozenOrbs {
+
+	private final int[] visiting; // Number of the check that's assuming each cell stays put, or 0
+	private final int[] reached; // Number of the check whose bombs reached each cell
+	private final int[] exploded; // Number of the check with an explosion reaching each cell
+	private final int[] queue; // Cells the bombs have reached, in the order they were reached
+	private int check; // Number of the current check
+	private boolean explosionsFound; // Whether the current check has followed the bombs yet
+	private boolean enemyAlive; // Whether an enemy can still set off an explosion anywhere
+
+	/**
+	 * Constructor that creates the arrays for a board with the given number of cells
+	 * 
+	 * @param numCells the number of cells on the board
+	 */
+	FrozenOrbs(int numCells) {
+		visiting = new int[numCells];
+		reached = new int[numCells];
+		exploded = new int[numCells];
+		queue = new int[numCells];
+	}
+
+	/**
+	 * Returns whether any orb in the model's current state can never move again
+	 * 
+	 * @param model the model holding the state
+	 * 
+	 * @return whether an orb is frozen
+	 */
+	boolean find(Model model) {
+		Board board = model.getBoard();
+		int width = board.getWidth();
+		startCheck(model);
+		for(int i = 0; i != model.getNumObjects(); ++i) {
+			int orb = model.getObject(i);
+			if(orb != -1 && board.getType(orb / width, orb % width) == Model.ORB && isStuck(model, orb)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the object in a cell of the model's current state can never move again
+	 * 
+	 * @param model the model holding the state
+	 * 
+	 * @param cell the index of the object's cell
+	 * 
+	 * @return whether the object is frozen
+	 */
+	boolean isFrozen(Model model, int cell) {
+		startCheck(model);
+		return isStuck(model, cell);
+	}
+
+	/**
+	 * Starts a check of the model's current state, forgetting what earlier checks found
+	 * 
+	 * @param model the model holding the state
+	 */
+	private void startCheck(Model model) {
+		++check;
+		explosionsFound = false;
+		enemyAlive = false;
+		for(int i = 0; i != model.getNumEnemies(); ++i) {
+			if(model.getEnemy(i) != -1) {
+				enemyAlive = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the object in a cell can never move again, assuming the cells being checked stay put
+	 * 
+	 * @param model the model holding the state
+	 * 
+	 * @param cell the index of the object's cell
+	 * 
+	 * @return whether the object is frozen
+	 */
+	private boolean isStuck(Model model, int cell) {
+		Board board = model.getBoard();
+		int width = board.getWidth();
+		if(board.isFalling(cell / width, cell % width)) {
+			return false;
+		}
+		visiting[cell] = check;
+		boolean frozen = isPermanent(model, cell + width)
+				&& (isPermanent(model, cell - 1) || isPermanent(model, cell + 1));
+		visiting[cell] = 0;
+		return frozen;
+	}
+
+	/**
+	 * Returns whether the tile in a cell will always be there
+	 * 
+	 * @param model the model holding the state
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return whether the tile is permanent
+	 */
+	private boolean isPermanent(Model model, int cell) {
+		Board board = model.getBoard();
+		int width = board.getWidth();
+		char type = board.getType(cell / width, cell % width);
+		if(type == Model.HARD_SAND || visiting[cell] == check) {
+			return true;
+		}
+		if(type != Model.GRANITE && !TileRules.canFall(type)) {
+			return false;
+		}
+		if(canExplode(model, cell)) {
+			return false;
+		}
+		return type == Model.GRANITE || isStuck(model, cell);
+	}
+
+	/**
+	 * Returns whether an explosion might ever reach a cell, following the bombs the first time it's asked in a check
+	 * 
+	 * @param model the model holding the state
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return whether the cell might explode
+	 */
+	private boolean canExplode(Model model, int cell) {
+		if(enemyAlive) {
+			return true;
+		}
+		if(!explosionsFound) {
+			findExplosions(model);
+			explosionsFound = true;
+		}
+		return exploded[cell] == check;
+	}
+
+	/**
+	 * Marks every cell a bomb might reach, and every cell around those, for the current check
+	 * 
+	 * @param model the model holding the state
+	 */
+	private void findExplosions(Model model) {
+		Board board = model.getBoard();
+		int width = board.getWidth();
+		int numCells = width * board.getHeight();
+		int tail = 0;
+		for(int i = 0; i != model.getNumObjects(); ++i) {
+			int bomb = model.getObject(i);
+			if(bomb != -1 && board.getType(bomb / width, bomb % width) == Model.BOMB && reached[bomb] != check) {
+				reached[bomb] = check;
+				queue[tail++] = bomb;
+			}
+		}
+		for(int head = 0; head != tail; ++head) {
+			int cell = queue[head];
+			for(int row = -1; row <= 1; ++row) {
+				for(int col = -1; col <= 1; ++col) {
+					int around = cell + row * width + col;
+					if(around >= 0 && around < numCells) {
+						exploded[around] = check;
+					}
+				}
+			}
+
+			// Falling, being pushed sideways from the far side, or being pushed up by the player underneath
+			boolean belowOpen = isOpen(board, cell + width);
+			if(belowOpen) {
+				tail = reach(cell + width, tail);
+			}
+			if(isOpen(board, cell - 1) && isOpen(board, cell + 1)) {
+				tail = reach(cell - 1, tail);
+				tail = reach(cell + 1, tail);
+			}
+			if(belowOpen && isOpen(board, cell - width)) {
+				tail = reach(cell - width, tail);
+			}
+		}
+	}
+
+	/**
+	 * Queues a cell a bomb might reach, unless it's already been reached
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @param tail the number of cells queued
+	 * 
+	 * @return the new number of cells queued
+	 */
+	private int reach(int cell, int tail) {
+		if(reached[cell] == check) {
+			return tail;
+		}
+		reached[cell] = check;
+		queue[tail] = cell;
+		return tail + 1;
+	}
+
+	/**
+	 * Returns whether a bomb or the player might ever be in a cell, which is anywhere on the board but hard sand
+	 * 
+	 * @param board the board
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return whether the cell is open
+	 */
+	private static boolean isOpen(Board board, int cell) {
+		int width = board.getWidth();
+		return cell >= 0 && cell < width * board.getHeight()
+				&& board.getType(cell / width, cell % width) != Model.HARD_SAND;
+	}
+}
\ No newline at end of file
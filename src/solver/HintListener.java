@@ -0,0 +1,24 @@
+package solver;
+
+/**
+ * This interface is notified when a hint search has finished. Listeners are called on one of the search's own
+ * threads, so anything that touches Swing has to be handed to the event dispatch thread.
+ * 
+ * @author Jeffrey Sun
+ */
+public interface HintListener {
+
+	/**
+	 * Called with the move the search thinks is best
+	 * 
+	 * @param input the suggested input, one of WAIT, UP, DOWN, LEFT or RIGHT
+	 */
+	void hintFound(int input);
+
+	/**
+	 * Called instead of hintFound() if the search failed, such as when a worker threw an exception
+	 * 
+	 * @param cause what made the search fail
+	 */
+	void hintFailed(Throwable cause);
+}
\ No newline at end of file
@@ -0,0 +1,343 @@
+package solver;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.Board;
+import model.LevelTemplate;
+import model.Model;
+
+/**
+ * This class suggests the player's next move by Monte Carlo tree search. Every worker thread grows its own search
+ * tree from the current state for a fixed amount of time, playing out random moves from each new node on its own
+ * model, and the root moves of all the trees are combined at the end. Each tick of the game is one step of the tree,
+ * the same as Model.step(), so gravity, mummies and explosions all behave exactly as in the game.
+ * 
+ * Searches run entirely on the search's own threads. The caller only saves the current state, which takes a few
+ * hundred bytes, and is told the result through a listener. Workers play the requesting model's own level template,
+ * so hints work for any level pack or generated level, and the level is never read again.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class HintSearch {
+
+	public static final int DEFAULT_TIME_BUDGET = 100; // Milliseconds
+
+	private static final int[] INPUTS = { Model.WAIT, Model.UP, Model.DOWN, Model.LEFT, Model.RIGHT };
+	private static final int MAX_NODES = 1 << 15; // Nodes in each worker's tree, including the root
+	private static final int ROLLOUT_STEPS = 20; // Random steps played out from each new node
+	private static final double EXPLORATION = 1.0; // Weight of the exploration term when choosing a child
+
+	private final int timeBudget;
+	private final List<Worker> workers;
+	private final ExecutorService searchThread; // Waits for the workers, so the caller never has to
+	private final ExecutorService workerThreads;
+	private final AtomicBoolean searching;
+
+	/**
+	 * Constructor that creates a hint search with its own threads
+	 * 
+	 * @param numThreads the number of trees to search at once
+	 * 
+	 * @param timeBudget how long each search runs for, in milliseconds
+	 */
+	public HintSearch(int numThreads, int timeBudget) {
+		this.timeBudget = timeBudget;
+		workers = new ArrayList<Worker>();
+		for(int i = 0; i != numThreads; ++i) {
+			workers.add(new Worker(i));
+		}
+		searchThread = Executors.newSingleThreadExecutor(new SearchThreadFactory("Hint search"));
+		workerThreads = Executors.newFixedThreadPool(numThreads, new SearchThreadFactory("Hint worker"));
+		searching = new AtomicBoolean();
+	}
+
+	/**
+	 * Starts searching for the best move from the model's current state, unless a search is already running. This
+	 * returns straight away, and the listener is called on a search thread once the time budget has run out, or as
+	 * soon as a worker fails.
+	 * 
+	 * @param model the model to suggest a move for, which isn't changed
+	 * 
+	 * @param listener the listener to tell the suggested move
+	 * 
+	 * @return whether a search was started
+	 */
+	public boolean requestHint(Model model, final HintListener listener) {
+		if(model.getState() != Model.PLAYING || !searching.compareAndSet(false, true)) {
+			return false;
+		}
+		final byte[] root = model.saveState();
+		final LevelTemplate template = model.getTemplate();
+		final int orbs = model.getOrbsLeft();
+		searchThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				int input;
+				try {
+					input = search(root, template, orbs);
+				} catch(ExecutionException e) {
+					listener.hintFailed(e.getCause());
+					return;
+				} finally {
+					searching.set(false);
+				}
+				listener.hintFound(input);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Searches every worker's tree until the time budget runs out and picks the root move that was tried most often
+	 * 
+	 * @param root the saved state to search from
+	 * 
+	 * @param template the starting layout of the level being played
+	 * 
+	 * @param orbs the number of orbs left in the saved state
+	 * 
+	 * @return the suggested input
+	 * 
+	 * @throws ExecutionException if a worker failed
+	 */
+	private int search(final byte[] root, final LevelTemplate template, final int orbs) throws ExecutionException {
+		final long deadline = System.nanoTime() + timeBudget * 1000000L;
+		List<Callable<Worker>> tasks = new ArrayList<Callable<Worker>>();
+		for(final Worker worker : workers) {
+			tasks.add(new Callable<Worker>() {
+				@Override
+				public Worker call() {
+					worker.search(root, template, orbs, deadline);
+					return worker;
+				}
+			});
+		}
+
+		int[] visits = new int[INPUTS.length];
+		try {
+			for(Future<Worker> result : workerThreads.invokeAll(tasks)) {
+				Worker worker = result.get();
+				for(int i = 0; i != INPUTS.length; ++i) {
+					visits[i] += worker.visits[worker.firstChild[0] + i];
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		int best = 0;
+		for(int i = 1; i != INPUTS.length; ++i) {
+			if(visits[i] > visits[best]) {
+				best = i;
+			}
+		}
+		return INPUTS[best];
+	}
+
+	/**
+	 * Stops the search threads once the hint search is no longer needed
+	 */
+	public void shutdown() {
+		searchThread.shutdownNow();
+		workerThreads.shutdownNow();
+	}
+
+	/**
+	 * This class is one worker's search tree, along with the model it plays moves on. The tree is stored in flat
+	 * arrays that are reused by every search, and the state searched from is copied into a buffer that's only replaced
+	 * when a larger state comes along, so searching allocates nothing once the model has loaded the level. A node's
+	 * children are stored next to each other, one for each input in the order of INPUTS.
+	 */
+	private static final class Worker {
+		private final int[] firstChild = new int[MAX_NODES]; // Index of the node's first child, or -1 if it has none
+		private final int[] visits = new int[MAX_NODES];
+		private final double[] rewards = new double[MAX_NODES]; // Sum of the rewards of every visit
+		private final int[] path = new int[MAX_NODES];
+		private final Random random;
+		private ByteBuffer start; // The state searched from, loaded again before every playout
+		private Model model;
+		private int numNodes;
+
+		/**
+		 * Constructor that creates an empty worker
+		 * 
+		 * @param seed the seed for the worker's random moves
+		 */
+		Worker(long seed) {
+			random = new Random(seed);
+		}
+
+		/**
+		 * Grows a new tree from the saved state until the deadline
+		 * 
+		 * @param root the saved state to search from
+		 * 
+		 * @param template the starting layout of the level being played
+		 * 
+		 * @param orbs the number of orbs left in the saved state
+		 * 
+		 * @param deadline the System.nanoTime() to stop searching at
+		 */
+		void search(byte[] root, LevelTemplate template, int orbs, long deadline) {
+			if(model == null || model.getTemplate() != template) {
+				model = new Model(template);
+			}
+			if(start == null || start.capacity() < root.length) {
+				start = ByteBuffer.allocate(root.length);
+			}
+			start.clear();
+			start.put(root);
+			numNodes = 1;
+			visits[0] = 0;
+			rewards[0] = 0;
+			expand(0);
+
+			do {
+				// The cells come first and the rest of the state straight after, so one buffer holds both
+				start.position(0);
+				model.loadState(start, start);
+
+				// Walk down the tree, adding a node where it runs out
+				int depth = 0;
+				int node = 0;
+				path[depth++] = node;
+				while(model.getState() == Model.PLAYING && firstChild[node] != -1) {
+					int child = select(node);
+					model.step(INPUTS[child - firstChild[node]]);
+					node = child;
+					path[depth++] = node;
+					if(visits[node] == 0) {
+						break;
+					}
+					if(firstChild[node] == -1 && numNodes + INPUTS.length <= MAX_NODES) {
+						expand(node);
+					}
+				}
+
+				// Play out random moves and pass the result back up the tree
+				for(int i = 0; i != ROLLOUT_STEPS && model.getState() == Model.PLAYING; ++i) {
+					model.step(INPUTS[random.nextInt(INPUTS.length)]);
+				}
+				double reward = reward(model, orbs);
+				for(int i = 0; i != depth; ++i) {
+					++visits[path[i]];
+					rewards[path[i]] += reward;
+				}
+			} while(System.nanoTime() < deadline);
+		}
+
+		/**
+		 * Adds a child to the given node for each input
+		 * 
+		 * @param node the node to add children to
+		 */
+		private void expand(int node) {
+			firstChild[node] = numNodes;
+			for(int i = 0; i != INPUTS.length; ++i) {
+				firstChild[numNodes] = -1;
+				visits[numNodes] = 0;
+				rewards[numNodes] = 0;
+				++numNodes;
+			}
+		}
+
+		/**
+		 * Chooses which child of a node to visit next, trying every child once before favouring the ones with the
+		 * best average reward or the fewest visits (UCB1)
+		 * 
+		 * @param node the node to choose a child of
+		 * 
+		 * @return the chosen child
+		 */
+		private int select(int node) {
+			int best = firstChild[node];
+			double bestScore = Double.NEGATIVE_INFINITY;
+			double logVisits = Math.log(Math.max(visits[node], 1));
+			for(int child = firstChild[node]; child != firstChild[node] + INPUTS.length; ++child) {
+				if(visits[child] == 0) {
+					return child;
+				}
+				double score = rewards[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+				if(score > bestScore) {
+					best = child;
+					bestScore = score;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Scores the state at the end of a playout, between 0 for losing and 1 for completing the level. States in
+		 * between are scored by the orbs delivered, how close the remaining orbs are to a portal and how close the
+		 * player is to an orb. The orbs are read from the model's object list, so nothing is scanned or allocated.
+		 * 
+		 * @param model the model holding the state
+		 * 
+		 * @param orbs the number of orbs left when the search started
+		 * 
+		 * @return the reward for reaching the state
+		 */
+		private static double reward(Model model, int orbs) {
+			if(model.getState() == Model.GAME_OVER) {
+				return 0;
+			} else if(model.getState() != Model.PLAYING) {
+				return 1;
+			}
+			int distance = Solver.estimate(model);
+			double progress = orbs - model.getOrbsLeft();
+			if(distance != Integer.MAX_VALUE) {
+				progress += 1.0 / (1 + distance);
+			}
+
+			// Getting the player next to an orb is the first step towards moving it, so it's worth a little
+			Board board = model.getBoard();
+			int width = board.getWidth();
+			int nearestOrb = Integer.MAX_VALUE;
+			for(int i = 0; i != model.getNumObjects(); ++i) {
+				int orb = model.getObject(i);
+				if(orb == -1) {
+					continue; // Destroyed in the last tick
+				}
+				int row = orb / width, col = orb % width;
+				if(board.getType(row, col) == Model.ORB) {
+					nearestOrb = Math.min(nearestOrb,
+							Math.abs(row - model.getPlayerRow()) + Math.abs(col - model.getPlayerCol()));
+				}
+			}
+			return 0.2 + 0.6 * Math.min(progress / orbs, 1) + 0.1 / nearestOrb;
+		}
+	}
+
+	/**
+	 * This class creates the search's threads, which don't keep the game running once its window has closed
+	 */
+	private static final class SearchThreadFactory implements ThreadFactory {
+		private final String name;
+
+		/**
+		 * Constructor that creates a factory for threads with the given name
+		 * 
+		 * @param name the name of the threads
+		 */
+		SearchThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,275 @@
+package solver;
+
+import java.util.Arrays;
+
+import model.Board;
+import model.Model;
+import model.TileRules;
+
+/**
+ * This class finds how many inputs an orb in each cell roughly needs to reach a portal, counting what's in its way.
+ * Distances are found backwards from the portals over the ways an orb moves: falling into the cell below, or being
+ * pushed sideways by the player standing on its far side. Falls cost less than pushes, since they don't need the
+ * player, and every tile that has to be cleared first, either where the orb moves to or where the player pushes
+ * from, costs extra: soft sand a little, an object more and granite, which takes an explosion, much more. An orb
+ * with nothing under it can't be pushed, since it falls first, so pushing it across a gap also costs an object brought
+ * to fill each empty tile under it. Hard sand never changes, so an orb that can't get past it has no way to a portal
+ * at all. The same search finds how far objects are from a gap, for the solver to guess the cost of filling it.
+ * 
+ * These are guesses for ordering the search rather than a lower bound. The costs are small whole numbers, so the
+ * cells are taken in order of distance from a ring of buckets rather than a heap, and nothing is allocated.
+ * 
+ * @author Jeffrey Sun
+ */
+final class OrbDistances {
+
+	static final int NO_PATH = Integer.MAX_VALUE;
+
+	private static final int FALL_COST = 2;
+	private static final int PUSH_COST = 3;
+	private static final int SAND_COST = 1; // Dug on the way
+	private static final int OBJECT_COST = 2; // Moved out of the way, including enemies
+	private static final int GRANITE_COST = 11; // Blown up, which takes a bomb brought to it
+	private static final int FILL_COST = 6; // Each empty tile under a gap, filled by an object brought to it
+	static final int MAX_FILL = 8; // Deepest gap that's costed, so a move's cost fits in the buckets
+	private static final int NUM_BUCKETS = 128; // More than the cost of any one move, with both tiles cleared
+
+	private final int[] distances; // Distance of each cell from a portal, or NO_PATH
+	private final int[] nextCells; // Cell an object moves to from each cell on its cheapest way
+	private final int[] firstEntries; // First queued entry of each bucket, or -1 if the bucket is empty
+	private final int[] nextEntries; // Entry queued after each entry in the same bucket, or -1
+	private final int[] entryCells; // Cell of each entry
+	private int numEntries;
+
+	/**
+	 * Constructor that creates the arrays for a board with the given number of cells
+	 * 
+	 * @param numCells the number of cells on the board
+	 */
+	OrbDistances(int numCells) {
+		distances = new int[numCells];
+		nextCells = new int[numCells];
+		firstEntries = new int[NUM_BUCKETS];
+		// A cell is queued at most once from above, once from each side and once more if it's a portal
+		nextEntries = new int[4 * numCells];
+		entryCells = new int[4 * numCells];
+	}
+
+	/**
+	 * Finds the distance of every cell from a portal for the model's current board
+	 * 
+	 * @param model the model holding the state
+	 */
+	void find(Model model) {
+		clear();
+		int numQueued = 0;
+		for(int i = 0; i != model.getNumPortals(); ++i) {
+			numQueued += reach(model.getPortal(i), 0, model.getPortal(i));
+		}
+		search(model.getBoard(), numQueued);
+	}
+
+	/**
+	 * Finds the distance of every cell from the empty tiles under the given cell, for an object brought to fill them
+	 * 
+	 * @param model the model holding the state
+	 * 
+	 * @param cell the index of the cell over the gap
+	 */
+	void findGap(Model model, int cell) {
+		clear();
+		Board board = model.getBoard();
+		int width = board.getWidth();
+		int numCells = width * board.getHeight();
+		int numQueued = 0;
+		for(int below = cell + width; below < numCells; below += width) {
+			char type = board.getType(below / width, below % width);
+			if(isFallingThrough(board, below)) {
+				continue;
+			}
+			if(type != Model.BACKGROUND && type != Model.PLAYER) {
+				break;
+			}
+			numQueued += reach(below, 0, below);
+		}
+		search(board, numQueued);
+	}
+
+	/**
+	 * Empties the distances and the queue before a search
+	 */
+	private void clear() {
+		Arrays.fill(distances, NO_PATH);
+		Arrays.fill(firstEntries, -1);
+		numEntries = 0;
+	}
+
+	/**
+	 * Takes the queued cells in order of distance, reaching the cells an object moves from to get to each one
+	 * 
+	 * @param board the board
+	 * 
+	 * @param numQueued the number of cells queued to start from
+	 */
+	private void search(Board board, int numQueued) {
+		int width = board.getWidth();
+		int numCells = width * board.getHeight();
+		for(int distance = 0; numQueued != 0; ++distance) {
+			int bucket = distance % NUM_BUCKETS;
+			while(firstEntries[bucket] != -1) {
+				int entry = firstEntries[bucket];
+				firstEntries[bucket] = nextEntries[entry];
+				--numQueued;
+				int cell = entryCells[entry];
+				if(distances[cell] != distance) {
+					continue; // Reached more cheaply after it was queued
+				}
+				char type = board.getType(cell / width, cell % width);
+
+				// An orb above the cell falls into it
+				int above = cell - width;
+				if(above >= 0 && board.getType(above / width, above % width) != Model.HARD_SAND) {
+					numQueued += reach(above, distance + FALL_COST + clearCost(type), cell);
+				}
+				if(type == Model.PORTAL) {
+					continue; // Pushing an orb onto a portal destroys the portal instead
+				}
+
+				// An orb beside the cell is pushed into it by the player on its far side
+				for(int side = -1; side <= 1; side += 2) {
+					int from = cell + side, player = cell + 2 * side;
+					if(player < 0 || player >= numCells || player / width != cell / width) {
+						continue;
+					}
+					char fromType = board.getType(from / width, from % width);
+					char playerType = board.getType(player / width, player % width);
+					if(fromType == Model.HARD_SAND || fromType == Model.PORTAL || playerType == Model.HARD_SAND
+							|| playerType == Model.PORTAL) {
+						continue;
+					}
+					int depth = gapDepth(board, from);
+					if(depth == -1) {
+						continue; // The orb would fall into a portal instead
+					}
+					numQueued += reach(from, distance + PUSH_COST + clearCost(type) + clearCost(playerType)
+							+ FILL_COST * depth, cell);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the distance of a cell from a portal or a gap, as found by the last search
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return the distance, or NO_PATH if an orb there can never reach a portal
+	 */
+	int get(int cell) {
+		return distances[cell];
+	}
+
+	/**
+	 * Returns the cell an object moves to next from the given cell on its cheapest way, as found by the last search
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return the index of the next cell, which is the cell itself where the way ends
+	 */
+	int getNext(int cell) {
+		return nextCells[cell];
+	}
+
+	/**
+	 * Queues a cell at the given distance, unless it has already been reached more cheaply
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @param distance the distance of the cell from a portal
+	 * 
+	 * @param next the cell an object moves to from this one
+	 * 
+	 * @return 1 if the cell was queued, otherwise 0
+	 */
+	private int reach(int cell, int distance, int next) {
+		if(distance >= distances[cell]) {
+			return 0;
+		}
+		distances[cell] = distance;
+		nextCells[cell] = next;
+		int bucket = distance % NUM_BUCKETS;
+		entryCells[numEntries] = cell;
+		nextEntries[numEntries] = firstEntries[bucket];
+		firstEntries[bucket] = numEntries++;
+		return 1;
+	}
+
+	/**
+	 * Returns how many empty tiles are under a cell before something an orb can rest on. An orb over a gap falls
+	 * before it can be pushed, so the gap has to be filled first.
+	 * 
+	 * @param board the board
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return the number of empty tiles, up to MAX_FILL, or -1 if the gap ends in a portal
+	 */
+	static int gapDepth(Board board, int cell) {
+		int width = board.getWidth();
+		int numCells = width * board.getHeight();
+		int depth = 0;
+		for(int below = cell + width; below < numCells; below += width) {
+			char type = board.getType(below / width, below % width);
+			if(type == Model.PORTAL) {
+				return -1;
+			}
+			if(isFallingThrough(board, below)) {
+				continue; // Lands further down, filling one of the tiles below instead
+			}
+			if(type != Model.BACKGROUND && type != Model.PLAYER) {
+				break; // The player moves on, so only stops an orb for now
+			}
+			++depth;
+		}
+		return Math.min(depth, MAX_FILL);
+	}
+
+	/**
+	 * Returns whether a cell holds an object that's falling or about to fall, so it won't stay in the cell
+	 * 
+	 * @param board the board
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return whether the object falls on
+	 */
+	static boolean isFallingThrough(Board board, int cell) {
+		int width = board.getWidth();
+		int row = cell / width, col = cell % width;
+		char type = board.getType(row, col);
+		return TileRules.canFall(type) && (board.isFalling(row, col)
+				|| row + 1 != board.getHeight() && TileRules.canMoveInto(type, board.getType(row + 1, col)));
+	}
+
+	/**
+	 * Returns the extra cost of clearing a tile so that an orb or the player can move into it
+	 * 
+	 * @param type the type of the tile
+	 * 
+	 * @return the extra cost
+	 */
+	private static int clearCost(char type) {
+		switch(type) {
+		case Model.BACKGROUND:
+		case Model.PLAYER:
+		case Model.PORTAL:
+			return 0;
+		case Model.SOFT_SAND:
+			return SAND_COST;
+		case Model.GRANITE:
+			return GRANITE_COST;
+		default:
+			return OBJECT_COST;
+		}
+	}
+}
\ No newline at end of file
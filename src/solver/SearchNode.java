@@ -0,0 +1,64 @@
+package solver;
+
+/**
+ * This class is a game state reached by the solver, along with the inputs that reached it from the previous state
+ * 
+ * @author Jeffrey Sun
+ */
+final class SearchNode {
+
+	final SearchNode parent;
+	final int[] inputs; // Inputs applied to the parent, where WAIT means a tick
+	final int depth; // Number of inputs from the start of the level
+	final int movesSinceTick;
+	final long cellHash; // Zobrist hash of the cells only, updated from the parent's
+	final int cost; // Cost of the macros from the start of the level
+	final int estimate; // Guess of the cost left to complete the level
+	int priority; // Order the node is searched in, lowest first, raised if the state has nothing new in it
+	byte[] state; // Saved state, dropped once the node has been searched
+
+	/**
+	 * Constructor that creates a node
+	 * 
+	 * @param parent the previous node, or null for the start of the level
+	 * 
+	 * @param inputs the inputs applied to the previous node
+	 * 
+	 * @param movesSinceTick the number of moves made since the last tick
+	 * 
+	 * @param cellHash the hash of the state's cells
+	 * 
+	 * @param cost the cost of the macros from the start of the level
+	 * 
+	 * @param priority the order the node is searched in
+	 * 
+	 * @param estimate the guess of the cost left to complete the level
+	 * 
+	 * @param state the saved state, or null if the level is complete
+	 */
+	SearchNode(SearchNode parent, int[] inputs, int movesSinceTick, long cellHash, int cost, int priority,
+			int estimate, byte[] state) {
+		this.parent = parent;
+		this.inputs = inputs;
+		this.depth = parent == null ? 0 : parent.depth + inputs.length;
+		this.movesSinceTick = movesSinceTick;
+		this.cellHash = cellHash;
+		this.cost = cost;
+		this.priority = priority;
+		this.estimate = estimate;
+		this.state = state;
+	}
+
+	/**
+	 * Returns the inputs that lead from the start of the level to this node
+	 * 
+	 * @return the inputs, in order
+	 */
+	int[] inputs() {
+		int[] inputs = new int[depth];
+		for(SearchNode node = this; node.parent != null; node = node.parent) {
+			System.arraycopy(node.inputs, 0, inputs, node.parent.depth, node.inputs.length);
+		}
+		return inputs;
+	}
+}
\ No newline at end of file
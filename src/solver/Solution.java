@@ -0,0 +1,119 @@
+package solver;
+
+import model.Model;
+
+/**
+ * This class is the result of solving a level: whether it could be solved and, if so, the inputs that complete it
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Solution {
+
+	// Results
+	public static final int SOLVED = 0;
+	public static final int UNSOLVABLE = 1; // Every state the macros reach was searched, none completing the level
+	public static final int GAVE_UP = 2; // The search ran out of room for states
+
+	private final int level;
+	private final int result;
+	private final int[] inputs;
+	private final int statesSearched;
+
+	/**
+	 * Constructor that creates a result
+	 * 
+	 * @param level the number of the level, starting from 0
+	 * 
+	 * @param result one of SOLVED, UNSOLVABLE or GAVE_UP
+	 * 
+	 * @param inputs the inputs that complete the level, or null if it wasn't solved
+	 * 
+	 * @param statesSearched the number of distinct states reached
+	 */
+	Solution(int level, int result, int[] inputs, int statesSearched) {
+		this.level = level;
+		this.result = result;
+		this.inputs = inputs;
+		this.statesSearched = statesSearched;
+	}
+
+	/**
+	 * Returns the number of the level
+	 * 
+	 * @return the number of the level, starting from 0
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns whether the level was solved
+	 * 
+	 * @return one of SOLVED, UNSOLVABLE or GAVE_UP
+	 */
+	public int getResult() {
+		return result;
+	}
+
+	/**
+	 * Returns the inputs that complete the level. UP, DOWN, LEFT and RIGHT are applied with Model.move() and WAIT
+	 * with Model.tick().
+	 * 
+	 * @return a copy of the inputs, or null if the level wasn't solved
+	 */
+	public int[] getInputs() {
+		return inputs == null ? null : inputs.clone();
+	}
+
+	/**
+	 * Returns the number of times the player moves in the solution
+	 * 
+	 * @return the number of moves
+	 */
+	public int getNumMoves() {
+		return inputs == null ? 0 : inputs.length - getNumTicks();
+	}
+
+	/**
+	 * Returns the number of ticks the solution waits for
+	 * 
+	 * @return the number of ticks
+	 */
+	public int getNumTicks() {
+		int ticks = 0;
+		for(int i = 0; inputs != null && i != inputs.length; ++i) {
+			if(inputs[i] == Model.WAIT) {
+				++ticks;
+			}
+		}
+		return ticks;
+	}
+
+	/**
+	 * Returns the number of distinct game states the solver reached
+	 * 
+	 * @return the number of states searched
+	 */
+	public int getStatesSearched() {
+		return statesSearched;
+	}
+
+	/**
+	 * Returns the solution as a string of U, D, L and R for moves and . for ticks
+	 * 
+	 * @return the inputs as a string, or the reason the level wasn't solved
+	 */
+	@Override
+	public String toString() {
+		if(result == UNSOLVABLE) {
+			return "unsolvable";
+		} else if(result == GAVE_UP) {
+			return "not solved within " + statesSearched + " states";
+		}
+		StringBuilder sb = new StringBuilder();
+		for(int input : inputs) {
+			sb.append(".UDLR".charAt(input));
+		}
+		return sb.toString();
+	}
+}
\ No newline at end of file
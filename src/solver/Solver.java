@@ -0,0 +1,980 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import model.Board;
+import model.ChangeJournal;
+import model.LevelPack;
+import model.LevelTemplate;
+import model.Model;
+import model.TileRules;
+
+/**
+ * This class searches for a short sequence of inputs that completes a level. The game itself is the only source of
+ * rules: every state is reached by loading a saved state into a model and applying inputs to it, and every solution
+ * is replayed on a fresh model before it's returned.
+ * 
+ * Walking only changes the tiles the player walks through, so walks aren't searched a step at a time. Each step of
+ * the search is a macro: the shortest walk to some tile, digging through soft sand only where no other walk is as
+ * short, followed by pushing an object one or more tiles, stopping on a dug tile an object can fall into once the
+ * player leaves, or, while something is moving, waiting for one tick or for everything to settle. When only enemies
+ * are moving the player waits where they stand, and when nothing is moving a walk may take as many ticks as it needs.
+ * Otherwise a walk must end before the next tick, since the player can make at most a few moves between two ticks,
+ * as many as the controller's input cooldown allows.
+ * 
+ * The search runs in one of two modes. With a heuristic weight of OPTIMAL, a macro costs the moves it makes, ticks
+ * being free, and states are searched in order of cost plus fewestMovesLeft(), which never overestimates, so the
+ * first solution found takes the fewest moves of any solution made of the macros. Any minimum number of moves that's
+ * reported comes from this mode. Higher weights only look for some solution, quickly: a macro costs the inputs it
+ * uses plus a penalty for every tile of soft sand it digs, since sand that's left alone may still be holding
+ * something up, and states are searched in order of cost plus a weighted guess of the cost left. The guess adds up
+ * each orb's distance from a portal around what's in its way, found by OrbDistances, the cost of bringing rocks to
+ * fill the first gap on each orb's way, the player's distance from the nearest orb and a penalty for each live enemy.
+ * A state that puts no tile anywhere no earlier state with the same guess had one is searched later.
+ * 
+ * In both modes, states with an orb that can never move again, found by FrozenOrbs, are dropped, and the weighted
+ * mode also drops states with an orb that has no way to a portal. Each round, every state with the lowest priority is
+ * searched in parallel on a fork/join pool, each thread with its own model.
+ * 
+ * @author Jeffrey Sun
+ */
+public final class Solver {
+
+	public static final int DEFAULT_MOVES_PER_TICK = 8; // Controller.DELAY / Controller.INPUT_COOLDOWN
+	public static final int OPTIMAL = 1; // Heuristic weight that finds the solution with the fewest moves
+	public static final int DEFAULT_HEURISTIC_WEIGHT = 2;
+	public static final int DEFAULT_MAX_STATES = 1000000;
+
+	// How much a node's state changes while the player stands still
+	private static final int STILL = 0; // Nothing changes
+	private static final int ENEMIES_ONLY = 1; // Only enemies move
+	private static final int MOVING = 2; // Something falls or explodes
+
+	// Ends of a macro other than a game input
+	private static final int STAND = -1; // Stop at the end of the walk
+	private static final int SETTLE = -2; // Tick until a tick changes nothing
+
+	private static final int[] MOVES = { Model.UP, Model.DOWN, Model.LEFT, Model.RIGHT };
+	private static final int[] NO_INPUTS = {};
+	private static final int MAX_PUSHES = 16; // Most tiles an object is pushed in one macro
+	private static final int DIG_COST = 2; // Extra cost of each tile of soft sand dug
+	private static final int MISSING_FILL_COST = 200; // Extra cost of each tile of a gap no rock is left to fill
+	private static final int ENEMY_COST = 200; // Extra cost of each live enemy, which is in the player's way
+	private static final int REPEAT_COST = 512; // Extra priority of a state with no new tiles
+	private static final int MAX_PRIORITY = 1 << 28;
+	private static final int MAX_SETTLE_TICKS = 64;
+	private static final int NO_ORB_PATH = Integer.MAX_VALUE / 8; // Estimate when an orb has no way to a portal
+	private static final int NODES_PER_TASK = 8; // Nodes below which a search task isn't split any further
+
+	private final ForkJoinPool pool;
+	private final int movesPerTick;
+	private final int heuristicWeight;
+	private final int maxStates;
+
+	/**
+	 * Constructor that creates a solver
+	 * 
+	 * @param pool the pool to search on
+	 * 
+	 * @param movesPerTick the most moves the player can make between two ticks
+	 * 
+	 * @param heuristicWeight OPTIMAL to find the solution made of the solver's macros with the fewest moves, or higher
+	 * to search fewer states for any solution, which may take more moves
+	 * 
+	 * @param maxStates the most states to search before giving up
+	 */
+	public Solver(ForkJoinPool pool, int movesPerTick, int heuristicWeight, int maxStates) {
+		if(heuristicWeight < OPTIMAL) {
+			throw new IllegalArgumentException("Heuristic weight must be at least " + OPTIMAL);
+		}
+		this.pool = pool;
+		this.movesPerTick = movesPerTick;
+		this.heuristicWeight = heuristicWeight;
+		this.maxStates = maxStates;
+	}
+
+	/**
+	 * Searches for a solution to the given level of the game
+	 * 
+	 * @param level the number of the level, starting from 0
+	 * 
+	 * @return the solution, or the reason there isn't one
+	 */
+	public Solution solve(int level) {
+		return solve(null, level);
+	}
+
+	/**
+	 * Searches for a solution to the given level of a level pack
+	 * 
+	 * @param pack the level pack, or null for the game's own levels
+	 * 
+	 * @param level the number of the level, starting from 0
+	 * 
+	 * @return the solution, or the reason there isn't one
+	 */
+	public Solution solve(LevelPack pack, int level) {
+		Model model = new Model(pack);
+		model.goToLevel(level);
+		return search(model.getTemplate(), level);
+	}
+
+	/**
+	 * Searches for a solution to a level that isn't in a level pack, such as one that has just been generated
+	 * 
+	 * @param template the starting layout of the level
+	 * 
+	 * @return the solution, numbered as level 0, or the reason there isn't one
+	 */
+	public Solution solve(LevelTemplate template) {
+		return search(template, 0);
+	}
+
+	/**
+	 * Searches for a solution to a level from its starting layout
+	 * 
+	 * @param template the starting layout of the level
+	 * 
+	 * @param level the number the solution is given, starting from 0
+	 * 
+	 * @return the solution, or the reason there isn't one
+	 */
+	private Solution search(final LevelTemplate template, int level) {
+		ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+			@Override
+			protected Worker initialValue() {
+				return new Worker(template, movesPerTick);
+			}
+		};
+		Model model = workers.get().model;
+		int numCells = model.getBoard().getWidth() * model.getBoard().getHeight();
+		TranspositionTable table = new TranspositionTable(maxStates);
+		// Tiles each cell has held, along with the guess of the state holding them
+		TranspositionTable tilesSeen = heuristicWeight == OPTIMAL ? null : new TranspositionTable(maxStates);
+
+		byte[] start = model.saveState();
+		long cellHash = Zobrist.hashCells(start, numCells);
+		table.offer(cellHash ^ Zobrist.hashRest(start, numCells), 0);
+
+		PriorityQueue<SearchNode> open = new PriorityQueue<SearchNode>(16, new Comparator<SearchNode>() {
+			@Override
+			public int compare(SearchNode a, SearchNode b) {
+				return Integer.compare(a.priority, b.priority);
+			}
+		});
+		open.add(new SearchNode(null, NO_INPUTS, 0, cellHash, 0, 0, 0, start));
+
+		while(!open.isEmpty()) {
+			List<SearchNode> round = new ArrayList<SearchNode>();
+			int priority = open.peek().priority;
+			while(!open.isEmpty() && open.peek().priority == priority) {
+				round.add(open.poll());
+			}
+
+			// Macros cost different amounts, so a solution is only taken once nothing cheaper is left
+			SearchNode complete = null;
+			for(SearchNode node : round) {
+				if(node.state == null && (complete == null || node.cost < complete.cost)) {
+					complete = node;
+				}
+			}
+			if(complete != null) {
+				int[] inputs = complete.inputs();
+				if(!verify(template, inputs)) {
+					throw new IllegalStateException("Solution to level " + (level + 1) + " failed on replay");
+				}
+				return new Solution(level, Solution.SOLVED, inputs, table.size());
+			}
+
+			List<SearchNode> children = pool.invoke(new Search(workers, table, round, 0, round.size()));
+			if(tilesSeen != null) {
+				// Checked in order once the round is over, so a level is always searched the same way
+				for(SearchNode child : children) {
+					if(child.state != null && !hasNewTile(tilesSeen, child, numCells)) {
+						child.priority += REPEAT_COST;
+					}
+				}
+			}
+			open.addAll(children);
+			if(table.isFull()) {
+				return new Solution(level, Solution.GAVE_UP, null, table.size());
+			}
+		}
+		return new Solution(level, Solution.UNSOLVABLE, null, table.size());
+	}
+
+	/**
+	 * Replays the given inputs on a fresh model to check that they complete the level
+	 * 
+	 * @param level the number of the level, starting from 0
+	 * 
+	 * @param inputs the inputs to replay, where WAIT means a tick
+	 * 
+	 * @return whether the inputs complete the level
+	 */
+	public static boolean verify(int level, int[] inputs) {
+		return verify(null, level, inputs);
+	}
+
+	/**
+	 * Replays the given inputs on a fresh model to check that they complete a level of a level pack
+	 * 
+	 * @param pack the level pack, or null for the game's own levels
+	 * 
+	 * @param level the number of the level, starting from 0
+	 * 
+	 * @param inputs the inputs to replay, where WAIT means a tick
+	 * 
+	 * @return whether the inputs complete the level
+	 */
+	public static boolean verify(LevelPack pack, int level, int[] inputs) {
+		Model model = new Model(pack);
+		model.goToLevel(level);
+		return replay(model, inputs);
+	}
+
+	/**
+	 * Replays the given inputs on a fresh model to check that they complete a level that isn't in a level pack
+	 * 
+	 * @param template the starting layout of the level
+	 * 
+	 * @param inputs the inputs to replay, where WAIT means a tick
+	 * 
+	 * @return whether the inputs complete the level
+	 */
+	public static boolean verify(LevelTemplate template, int[] inputs) {
+		return replay(new Model(template), inputs);
+	}
+
+	/**
+	 * Replays the given inputs on a model at the start of a level
+	 * 
+	 * @param model the model
+	 * 
+	 * @param inputs the inputs to replay, where WAIT means a tick
+	 * 
+	 * @return whether the inputs complete the level
+	 */
+	private static boolean replay(Model model, int[] inputs) {
+		for(int input : inputs) {
+			if(model.getState() != Model.PLAYING) {
+				return false;
+			}
+			if(input == Model.WAIT) {
+				model.tick();
+			} else {
+				model.move(input);
+			}
+		}
+		return model.getState() == Model.LEVEL_COMPLETE;
+	}
+
+	/**
+	 * Records the tile in every cell of a new node's state, along with the node's guess of the cost left, and returns
+	 * whether any cell holds a tile it hadn't held in a state with the same guess
+	 * 
+	 * @param tilesSeen the tiles each cell has held
+	 * 
+	 * @param node the new node
+	 * 
+	 * @param numCells the number of cells on the board
+	 * 
+	 * @return whether the state has a new tile
+	 */
+	private static boolean hasNewTile(TranspositionTable tilesSeen, SearchNode node, int numCells) {
+		long estimateKey = node.estimate * 0x9E3779B97F4A7C15L;
+		boolean found = false;
+		for(int cell = 0; cell != numCells; ++cell) {
+			if(tilesSeen.offer(Zobrist.key(cell, type(node.state, cell)) + estimateKey, 0)) {
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Applies every macro to a searched node, returning the new states worth searching. The tiles the player can walk
+	 * to are found first, and only the pushes, stops and waits that can change the level from those tiles are tried
+	 * on the model. Tiles are read from the node's saved state, since trying a macro changes the model's board.
+	 * 
+	 * @param worker the searching thread's model and scratch arrays
+	 * 
+	 * @param table the states already reached
+	 * 
+	 * @param node the node to search
+	 * 
+	 * @param children the list to add the new nodes to, including nodes that complete the level
+	 */
+	private void expand(Worker worker, TranspositionTable table, SearchNode node, List<SearchNode> children) {
+		Model model = worker.model;
+		byte[] state = node.state;
+		int width = model.getBoard().getWidth();
+
+		// Unless something is falling, walks can take as many ticks as they need
+		int stillness = worker.stillness(state);
+		int reach = stillness == MOVING ? movesPerTick - node.movesSinceTick : Integer.MAX_VALUE;
+		model.loadState(state);
+		int numReached = worker.walk(reach);
+
+		for(int i = 0; i != numReached; ++i) {
+			int cell = worker.reached(i);
+			if(stillness == MOVING) {
+				// Where the player is at the next tick can decide where a falling object lands
+				addChild(worker, table, node, cell, Model.WAIT, 1, children);
+				if(i == 0) {
+					addChild(worker, table, node, cell, SETTLE, 1, children);
+				}
+			} else if(stillness == ENEMIES_ONLY && i == 0) {
+				addChild(worker, table, node, cell, Model.WAIT, 1, children);
+			}
+
+			// Leaving a dug tile lets an object above it, past any soft sand, beside it or diagonally above it fall
+			// into the hole, so stopping there can matter
+			if(worker.dug(cell) && type(state, cell) == Model.SOFT_SAND
+					&& (TileRules.canFall(type(state, above(state, cell, width)))
+							|| TileRules.canFall(type(state, cell - 1)) || TileRules.canFall(type(state, cell + 1))
+							|| TileRules.canFall(type(state, cell - width - 1))
+							|| TileRules.canFall(type(state, cell - width + 1)))) {
+				addChild(worker, table, node, cell, STAND, 1, children);
+			}
+			if(worker.distance(cell) == reach) {
+				continue; // No moves left before the next tick
+			}
+			for(int move : MOVES) {
+				int target = cell + offset(move, width);
+				char type = type(state, target);
+				if(!TileRules.canFall(type)) {
+					continue;
+				}
+				// Only push objects that have room to move, which leaving the player's cell may have made
+				int beyond = target + offset(move, width);
+				char beyondType = type(state, beyond);
+				if(beyondType == Model.PLAYER || TileRules.canMoveInto(type, beyondType)) {
+					// Push as far as the object goes, except while something is moving, when the pushes left before
+					// the next tick matter
+					int maxPushes = stillness == MOVING ? 1 : MAX_PUSHES;
+					for(int pushes = 1; addChild(worker, table, node, cell, move, pushes, children)
+							&& pushes != maxPushes; ++pushes) {
+					}
+				}
+			}
+		}
+		node.state = null; // Only needed while the node is being searched
+	}
+
+	/**
+	 * Plays a macro from a searched node and adds the state it reaches, unless the player dies, the state was already
+	 * reached or the level can no longer be completed
+	 * 
+	 * @param worker the searching thread's model and scratch arrays, holding the walks found from the node
+	 * 
+	 * @param table the states already reached
+	 * 
+	 * @param node the node being searched
+	 * 
+	 * @param cell the cell to walk to
+	 * 
+	 * @param last what to do after the walk, which is a push, WAIT, STAND or SETTLE
+	 * 
+	 * @param repeats the number of times to push, or 1 for anything else
+	 * 
+	 * @param children the list to add the new node to
+	 * 
+	 * @return whether every push moved something and left the level unfinished, so pushing further may do more
+	 */
+	private boolean addChild(Worker worker, TranspositionTable table, SearchNode node, int cell, int last, int repeats,
+			List<SearchNode> children) {
+		Model model = worker.model;
+		Board board = model.getBoard();
+		ChangeJournal changes = model.getChanges();
+		int width = board.getWidth();
+		int numCells = width * board.getHeight();
+
+		int[] macro = worker.path(cell, node.movesSinceTick, last == SETTLE ? Model.WAIT : last, repeats);
+		int pushStart = worker.pushStart;
+		model.loadState(node.state);
+		changes.clear();
+		int movesSinceTick = node.movesSinceTick;
+		int played = 0;
+		int numMoves = 0;
+		int numDigs = 0;
+		while(played != macro.length && model.getState() == Model.PLAYING) {
+			int input = macro[played++];
+			if(input == Model.WAIT) {
+				model.tick();
+				movesSinceTick = 0;
+			} else {
+				if(played > pushStart && !model.canMove(input)) {
+					return false; // The push wouldn't do anything
+				}
+				int target = model.getPlayerRow() * width + model.getPlayerCol() + offset(input, width);
+				if(board.getType(target / width, target % width) == Model.SOFT_SAND) {
+					++numDigs;
+				}
+				model.move(input);
+				++movesSinceTick;
+				++numMoves;
+			}
+		}
+		if(last == SETTLE && played == macro.length) {
+			int numTicks = 0;
+			while(model.getState() == Model.PLAYING && numTicks != MAX_SETTLE_TICKS) {
+				int numChanges = changes.size();
+				model.tick();
+				++numTicks;
+				if(changes.size() == numChanges) {
+					break;
+				}
+			}
+			macro = Arrays.copyOf(macro, macro.length + numTicks);
+			Arrays.fill(macro, played, macro.length, Model.WAIT);
+			played = macro.length;
+		}
+		if(model.getState() == Model.GAME_OVER) {
+			return false;
+		}
+
+		// Update the hash from the cells that changed
+		long cellHash = node.cellHash;
+		for(int i = 0; i != changes.size(); ++i) {
+			int changed = changes.get(i);
+			int row = changed / width, col = changed % width;
+			int contents = board.getType(row, col) | (board.isFalling(row, col) ? 0x80 : 0);
+			cellHash ^= Zobrist.key(changed, node.state[changed]) ^ Zobrist.key(changed, contents);
+		}
+
+		if(played != macro.length) {
+			macro = Arrays.copyOf(macro, played); // The level was completed part of the way through
+		}
+		boolean optimal = heuristicWeight == OPTIMAL;
+		int cost = node.cost + (optimal ? numMoves : played + DIG_COST * numDigs);
+		if(model.getState() == Model.LEVEL_COMPLETE) {
+			children.add(new SearchNode(node, macro, movesSinceTick, cellHash, cost, cost, 0, null));
+			return false;
+		}
+		if(estimate(model) == Integer.MAX_VALUE || worker.frozenOrbs.find(model)) {
+			return false; // The level can no longer be completed
+		}
+		byte[] state = model.saveState();
+		long hash = cellHash ^ Zobrist.hashRest(state, numCells);
+		if(optimal) {
+			// A state reached again is worth searching if it took fewer moves, with as many moves left before a tick
+			if(table.offer(hash ^ Zobrist.key(numCells, movesSinceTick), cost)) {
+				int estimate = fewestMovesLeft(model);
+				children.add(new SearchNode(node, macro, movesSinceTick, cellHash, cost, cost + estimate, estimate,
+						state));
+			}
+		} else if(table.offer(hash, movesSinceTick)) {
+			int estimate = worker.heuristic();
+			if(estimate != NO_ORB_PATH) {
+				long priority = cost + (long) heuristicWeight * estimate;
+				children.add(new SearchNode(node, macro, movesSinceTick, cellHash, cost,
+						(int) Math.min(priority, MAX_PRIORITY), estimate, state));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the type of the tile in a cell of a saved state
+	 * 
+	 * @param state the saved state
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @return the type of the tile
+	 */
+	private static char type(byte[] state, int cell) {
+		return (char) (state[cell] & 0x7f);
+	}
+
+	/**
+	 * Returns the first cell above the given one in a saved state that isn't soft sand, since an object resting on a
+	 * column of soft sand falls once the player digs out the bottom of it and leaves
+	 * 
+	 * @param state the saved state
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @param width the width of the board
+	 * 
+	 * @return the index of the cell above
+	 */
+	private static int above(byte[] state, int cell, int width) {
+		int above = cell - width;
+		while(above >= width && type(state, above) == Model.SOFT_SAND) {
+			above -= width;
+		}
+		return above;
+	}
+
+	/**
+	 * Returns the difference in cell index made by moving in the given direction
+	 * 
+	 * @param move one of UP, DOWN, LEFT or RIGHT
+	 * 
+	 * @param width the width of the board
+	 * 
+	 * @return the difference in cell index
+	 */
+	private static int offset(int move, int width) {
+		switch(move) {
+		case Model.UP:
+			return -width;
+		case Model.DOWN:
+			return width;
+		case Model.LEFT:
+			return -1;
+		default:
+			return 1;
+		}
+	}
+
+	/**
+	 * Estimates the number of inputs left to complete the level, without overestimating. Each input moves an orb at
+	 * most one tile, so every orb needs at least as many inputs as its distance from the nearest portal. The orbs and
+	 * portals are read from the model's lists rather than found by scanning the board, and nothing is allocated.
+	 * 
+	 * @param model the model holding the state
+	 * 
+	 * @return the estimate, or Integer.MAX_VALUE if an orb can never reach a portal
+	 */
+	static int estimate(Model model) {
+		Board board = model.getBoard();
+		int width = board.getWidth();
+		if(model.getNumPortals() == 0) {
+			return Integer.MAX_VALUE;
+		}
+		int numOrbs = 0;
+		int estimate = 0;
+		for(int i = 0; i != model.getNumObjects(); ++i) {
+			int orb = model.getObject(i);
+			if(orb == -1) {
+				continue; // Destroyed in the last tick
+			}
+			int row = orb / width, col = orb % width;
+			if(board.getType(row, col) != Model.ORB) {
+				continue;
+			}
+			// An orb on hard sand can't fall, and with hard sand on either side it can't be pushed either way, since
+			// the player can't stand on that side to push it the other way
+			if(board.getType(row + 1, col) == Model.HARD_SAND && (board.getType(row, col - 1) == Model.HARD_SAND
+					|| board.getType(row, col + 1) == Model.HARD_SAND)) {
+				return Integer.MAX_VALUE;
+			}
+			++numOrbs;
+			int nearest = Integer.MAX_VALUE;
+			for(int j = 0; j != model.getNumPortals(); ++j) {
+				int portal = model.getPortal(j);
+				nearest = Math.min(nearest, Math.abs(row - portal / width) + Math.abs(col - portal % width));
+			}
+			estimate = Math.max(estimate, nearest);
+		}
+		if(numOrbs < model.getOrbsLeft()) {
+			return Integer.MAX_VALUE;
+		}
+		return estimate;
+	}
+
+	/**
+	 * Returns the fewest moves that could complete the level, without overestimating. Orbs fall during ticks, which
+	 * cost no moves, but each move pushes at most one orb one tile sideways or up, so every orb needs at least as many
+	 * moves as the columns between it and the nearest portal plus the rows it's below that portal.
+	 * 
+	 * @param model the model holding the state
+	 * 
+	 * @return the number of moves
+	 */
+	static int fewestMovesLeft(Model model) {
+		Board board = model.getBoard();
+		int width = board.getWidth();
+		int total = 0;
+		for(int i = 0; i != model.getNumObjects(); ++i) {
+			int orb = model.getObject(i);
+			if(orb == -1 || board.getType(orb / width, orb % width) != Model.ORB) {
+				continue;
+			}
+			int row = orb / width, col = orb % width;
+			int nearest = Integer.MAX_VALUE;
+			for(int j = 0; j != model.getNumPortals(); ++j) {
+				int portal = model.getPortal(j);
+				nearest = Math.min(nearest, Math.abs(col - portal % width) + Math.max(row - portal / width, 0));
+			}
+			total += nearest;
+		}
+		return total;
+	}
+
+	/**
+	 * This class is a searching thread's model, along with the arrays it finds the player's walks and the orbs'
+	 * distances in. The arrays are reused for every node the thread searches.
+	 */
+	private static final class Worker {
+		private final Model model;
+		private final int movesPerTick;
+		private final OrbDistances orbDistances;
+		private final OrbDistances fillDistances; // Distances from a gap on an orb's way, for rocks brought to it
+		private final FrozenOrbs frozenOrbs;
+		private final int[] visited; // Number of the walk that last reached each cell
+		private final int[] distances; // Steps the current walk takes to reach each cell
+		private final int[] digs; // Soft sand the current walk digs on its way to each cell
+		private final int[] previous; // Cell each cell is reached from by the current walk
+		private final int[] queue; // Cells reached by the current walk, nearest first
+		private final int[] steps; // Steps of the walk being turned into a macro, last step first
+		private final int[] fills; // Distances of the nearest rocks from the gap being filled
+		private int walk; // Number of the current walk
+		private int pushStart; // Index in the last macro of its first input after the walk
+
+		/**
+		 * Constructor that creates a worker playing the given level
+		 * 
+		 * @param template the starting layout of the level
+		 * 
+		 * @param movesPerTick the most moves the player can make between two ticks
+		 */
+		Worker(LevelTemplate template, int movesPerTick) {
+			model = new Model(template);
+			model.getChanges(); // Record changed cells, for updating hashes
+			this.movesPerTick = movesPerTick;
+			int numCells = model.getBoard().getWidth() * model.getBoard().getHeight();
+			orbDistances = new OrbDistances(numCells);
+			fillDistances = new OrbDistances(numCells);
+			frozenOrbs = new FrozenOrbs(numCells);
+			visited = new int[numCells];
+			distances = new int[numCells];
+			digs = new int[numCells];
+			previous = new int[numCells];
+			queue = new int[numCells];
+			steps = new int[numCells];
+			fills = new int[OrbDistances.MAX_FILL];
+		}
+
+		/**
+		 * Returns how much would change in the saved state while the player stood still. The level is still when a
+		 * tick changes nothing, nothing rests on the player and no enemy has anywhere to step, and only enemies are
+		 * moving when a tick changes nothing that falls. The model is left in an unspecified state.
+		 * 
+		 * @param state the saved state
+		 * 
+		 * @return STILL, ENEMIES_ONLY or MOVING
+		 */
+		int stillness(byte[] state) {
+			model.loadState(state);
+			Board board = model.getBoard();
+			int width = board.getWidth();
+			if(TileRules.canFall(board.getType(model.getPlayerRow() - 1, model.getPlayerCol()))) {
+				return MOVING;
+			}
+			boolean enemiesStuck = true;
+			for(int i = 0; enemiesStuck && i != model.getNumEnemies(); ++i) {
+				int enemy = model.getEnemy(i);
+				for(int move : MOVES) {
+					int neighbour = enemy + offset(move, width);
+					char type = board.getType(neighbour / width, neighbour % width);
+					if(type == Model.BACKGROUND || type == Model.PLAYER) {
+						enemiesStuck = false;
+					}
+				}
+			}
+
+			ChangeJournal changes = model.getChanges();
+			changes.clear();
+			model.tick();
+			if(model.getState() != Model.PLAYING) {
+				return MOVING;
+			}
+			for(int i = 0; i != changes.size(); ++i) {
+				int changed = changes.get(i);
+				if(TileRules.canFall((char) (state[changed] & 0x7f))
+						|| TileRules.canFall(board.getType(changed / width, changed % width))) {
+					return MOVING;
+				}
+			}
+			return enemiesStuck && changes.size() == 0 ? STILL : ENEMIES_ONLY;
+		}
+
+		/**
+		 * Finds the shortest walks from the player's cell, up to the given number of steps. Walks go through soft
+		 * sand as well as empty tiles, and of the shortest walks to a cell the one digging the least is kept.
+		 * 
+		 * @param reach the most steps to walk
+		 * 
+		 * @return the number of cells reached, including the player's own cell
+		 */
+		int walk(int reach) {
+			Board board = model.getBoard();
+			int width = board.getWidth();
+			++walk;
+			int start = model.getPlayerRow() * width + model.getPlayerCol();
+			visited[start] = walk;
+			distances[start] = 0;
+			digs[start] = 0;
+			previous[start] = start;
+			queue[0] = start;
+			int head = 0, tail = 1;
+			while(head != tail) {
+				int cell = queue[head++];
+				if(distances[cell] == reach) {
+					continue;
+				}
+				for(int move : MOVES) {
+					int neighbour = cell + offset(move, width);
+					char type = board.getType(neighbour / width, neighbour % width);
+					if(type != Model.BACKGROUND && type != Model.SOFT_SAND) {
+						continue;
+					}
+					int numDigs = digs[cell] + (type == Model.SOFT_SAND ? 1 : 0);
+					if(visited[neighbour] != walk) {
+						visited[neighbour] = walk;
+						distances[neighbour] = distances[cell] + 1;
+						digs[neighbour] = numDigs;
+						previous[neighbour] = cell;
+						queue[tail++] = neighbour;
+					} else if(distances[neighbour] == distances[cell] + 1 && numDigs < digs[neighbour]) {
+						digs[neighbour] = numDigs;
+						previous[neighbour] = cell;
+					}
+				}
+			}
+			return tail;
+		}
+
+		/**
+		 * Returns a cell reached by the current walk
+		 * 
+		 * @param i the number of the cell, where nearer cells come first
+		 * 
+		 * @return the index of the cell
+		 */
+		int reached(int i) {
+			return queue[i];
+		}
+
+		/**
+		 * Returns the number of steps the current walk takes to reach the given cell
+		 * 
+		 * @param cell a cell reached by the current walk
+		 * 
+		 * @return the number of steps
+		 */
+		int distance(int cell) {
+			return distances[cell];
+		}
+
+		/**
+		 * Returns whether the current walk digs any soft sand on its way to the given cell
+		 * 
+		 * @param cell a cell reached by the current walk
+		 * 
+		 * @return whether the walk digs
+		 */
+		boolean dug(int cell) {
+			return digs[cell] != 0;
+		}
+
+		/**
+		 * Returns the inputs of a macro: the current walk's steps to the given cell, followed by the given input
+		 * repeated, with a tick whenever the player has run out of moves. The index of the first input after the walk
+		 * is kept in pushStart.
+		 * 
+		 * @param cell a cell reached by the current walk
+		 * 
+		 * @param movesSinceTick the number of moves made since the last tick before the walk
+		 * 
+		 * @param last the input after the walk, or STAND for none
+		 * 
+		 * @param repeats the number of times to apply the input after the walk
+		 * 
+		 * @return the inputs, in order
+		 */
+		int[] path(int cell, int movesSinceTick, int last, int repeats) {
+			int width = model.getBoard().getWidth();
+			int numSteps = 0;
+			for(int step = cell; step != previous[step]; step = previous[step]) {
+				int from = previous[step];
+				steps[numSteps++] = step == from - width ? Model.UP
+						: step == from + width ? Model.DOWN : step == from - 1 ? Model.LEFT : Model.RIGHT;
+			}
+
+			int length = numSteps + (last == STAND ? 0 : repeats);
+			int numTicks = 0;
+			for(int moves = movesSinceTick, i = 0; i != length; ++i) {
+				int input = i < numSteps ? steps[numSteps - 1 - i] : last;
+				if(input != Model.WAIT && moves == movesPerTick) {
+					++numTicks;
+					moves = 0;
+				}
+				++moves;
+			}
+			int[] inputs = new int[length + numTicks];
+			int numInputs = 0;
+			pushStart = inputs.length;
+			for(int moves = movesSinceTick, i = 0; i != length; ++i) {
+				int input = i < numSteps ? steps[numSteps - 1 - i] : last;
+				if(input != Model.WAIT && moves == movesPerTick) {
+					inputs[numInputs++] = Model.WAIT;
+					moves = 0;
+				}
+				if(i == numSteps) {
+					pushStart = numInputs;
+				}
+				inputs[numInputs++] = input;
+				++moves;
+			}
+			return inputs;
+		}
+
+		/**
+		 * Estimates the cost left to complete the level in the model's state: the distance of every orb from a
+		 * portal around what's in its way, the cost of filling the first gap each orb has to be pushed across, the
+		 * player's distance from the nearest orb and a penalty for each live enemy
+		 * 
+		 * @return the estimate, or NO_ORB_PATH if an orb has no way to a portal
+		 */
+		int heuristic() {
+			Board board = model.getBoard();
+			int width = board.getWidth();
+			orbDistances.find(model);
+			int playerRow = model.getPlayerRow(), playerCol = model.getPlayerCol();
+			int total = 0;
+			int nearest = Integer.MAX_VALUE;
+			for(int i = 0; i != model.getNumObjects(); ++i) {
+				int orb = model.getObject(i);
+				if(orb == -1 || board.getType(orb / width, orb % width) != Model.ORB) {
+					continue;
+				}
+				if(orbDistances.get(orb) == OrbDistances.NO_PATH) {
+					return NO_ORB_PATH;
+				}
+				total += orbDistances.get(orb);
+				nearest = Math.min(nearest, Math.abs(orb / width - playerRow) + Math.abs(orb % width - playerCol));
+			}
+			for(int i = 0; i != model.getNumObjects(); ++i) {
+				int orb = model.getObject(i);
+				if(orb == -1 || board.getType(orb / width, orb % width) != Model.ORB) {
+					continue;
+				}
+				for(int cell = orb; orbDistances.getNext(cell) != cell; cell = orbDistances.getNext(cell)) {
+					if(orbDistances.getNext(cell) / width != cell / width) {
+						continue; // Falls rather than being pushed
+					}
+					int depth = OrbDistances.gapDepth(board, cell);
+					if(depth > 0) {
+						total += fillCost(cell, depth);
+						break;
+					}
+				}
+			}
+			for(int i = 0; i != model.getNumEnemies(); ++i) {
+				if(model.getEnemy(i) != -1) {
+					total += ENEMY_COST;
+				}
+			}
+			return nearest == Integer.MAX_VALUE ? total : total + nearest;
+		}
+
+		/**
+		 * Estimates the cost of filling the gap under a cell with rocks: the distance of the nearest rock from the gap
+		 * for each empty tile, plus a penalty for each empty tile no rock is left for. Rocks that are falling or can
+		 * never move again are left out.
+		 * 
+		 * @param cell the index of the cell over the gap
+		 * 
+		 * @param depth the number of empty tiles in the gap
+		 * 
+		 * @return the estimated cost
+		 */
+		private int fillCost(int cell, int depth) {
+			Board board = model.getBoard();
+			int width = board.getWidth();
+			fillDistances.findGap(model, cell);
+			int numFills = 0;
+			for(int i = 0; i != model.getNumObjects(); ++i) {
+				int rock = model.getObject(i);
+				if(rock == -1 || board.getType(rock / width, rock % width) != Model.ROCK) {
+					continue;
+				}
+				int distance = fillDistances.get(rock);
+				if(distance == OrbDistances.NO_PATH || OrbDistances.isFallingThrough(board, rock)
+						|| frozenOrbs.isFrozen(model, rock)) {
+					continue;
+				}
+				if(numFills != depth) {
+					fills[numFills++] = distance;
+					continue;
+				}
+				// Replace the farthest rock kept so far
+				int farthest = 0;
+				for(int j = 1; j != numFills; ++j) {
+					if(fills[j] > fills[farthest]) {
+						farthest = j;
+					}
+				}
+				fills[farthest] = Math.min(fills[farthest], distance);
+			}
+			int cost = (depth - numFills) * MISSING_FILL_COST;
+			for(int j = 0; j != numFills; ++j) {
+				cost += fills[j];
+			}
+			return cost;
+		}
+	}
+
+	/**
+	 * This class searches a range of nodes, splitting it between threads if it's large
+	 */
+	private class Search extends RecursiveTask<List<SearchNode>> {
+		private static final long serialVersionUID = 4182371904728236914L;
+
+		private final ThreadLocal<Worker> workers;
+		private final TranspositionTable table;
+		private final List<SearchNode> nodes;
+		private final int from;
+		private final int to;
+
+		/**
+		 * Constructor that creates a task for the given range of nodes
+		 * 
+		 * @param workers the model and scratch arrays for each thread
+		 * 
+		 * @param table the states already reached
+		 * 
+		 * @param nodes the nodes being searched this round
+		 * 
+		 * @param from the first node to search
+		 * 
+		 * @param to the node after the last one to search
+		 */
+		Search(ThreadLocal<Worker> workers, TranspositionTable table, List<SearchNode> nodes, int from, int to) {
+			this.workers = workers;
+			this.table = table;
+			this.nodes = nodes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<SearchNode> compute() {
+			if(to - from <= NODES_PER_TASK) {
+				Worker worker = workers.get();
+				List<SearchNode> children = new ArrayList<SearchNode>();
+				for(int i = from; i != to; ++i) {
+					expand(worker, table, nodes.get(i), children);
+				}
+				return children;
+			}
+			int middle = (from + to) >>> 1;
+			Search first = new Search(workers, table, nodes, from, middle);
+			first.fork();
+			List<SearchNode> children = new Search(workers, table, nodes, middle, to).compute();
+			children.addAll(0, first.join());
+			return children;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package solver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class records the game states the solver has already reached, so that each state is only searched once. It is
+ * an open-addressing hash table of primitive state hashes, safe for many search threads to use at once without locks.
+ * 
+ * Each state is stored with the number of moves the player has made since the last tick. Reaching a state again is
+ * only worth searching if fewer moves have been used, since that leaves the player more moves before the next tick.
+ * 
+ * @author Jeffrey Sun
+ */
+final class TranspositionTable {
+
+	private static final long EMPTY = 0;
+
+	private final AtomicLongArray hashes;
+	private final AtomicIntegerArray moves;
+	private final int mask;
+	private final int maxSize;
+	private final AtomicInteger size;
+
+	/**
+	 * Constructor that creates an empty table
+	 * 
+	 * @param maxSize the number of states the table can hold
+	 */
+	TranspositionTable(int maxSize) {
+		int capacity = Integer.highestOneBit(Math.max(maxSize, 1)) << 2; // At most half full
+		hashes = new AtomicLongArray(capacity);
+		moves = new AtomicIntegerArray(capacity);
+		for(int i = 0; i != capacity; ++i) {
+			moves.set(i, Integer.MAX_VALUE);
+		}
+		mask = capacity - 1;
+		this.maxSize = maxSize;
+		size = new AtomicInteger();
+	}
+
+	/**
+	 * Records that the state with the given hash was reached, unless it was already reached with as few moves since
+	 * the last tick
+	 * 
+	 * @param hash the hash of the state
+	 * 
+	 * @param movesSinceTick the number of moves made since the last tick
+	 * 
+	 * @return whether the state is worth searching, or false if it was already reached or the table is full
+	 */
+	boolean offer(long hash, int movesSinceTick) {
+		if(hash == EMPTY) {
+			hash = 1;
+		}
+		int i = (int) (hash ^ (hash >>> 32)) & mask;
+		while(true) {
+			long stored = hashes.get(i);
+			if(stored == EMPTY) {
+				if(size.get() >= maxSize) {
+					return false;
+				}
+				if(!hashes.compareAndSet(i, EMPTY, hash)) {
+					continue; // Another thread took the slot, so check it again
+				}
+				size.incrementAndGet();
+				stored = hash;
+			}
+			if(stored == hash) {
+				// Keep the fewest moves, in case another thread reached the same state at the same time
+				int previous = moves.get(i);
+				while(movesSinceTick < previous) {
+					if(moves.compareAndSet(i, previous, movesSinceTick)) {
+						return true;
+					}
+					previous = moves.get(i);
+				}
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Returns the number of states in the table
+	 * 
+	 * @return the number of states in the table
+	 */
+	int size() {
+		return size.get();
+	}
+
+	/**
+	 * Returns whether the table has run out of room for new states
+	 * 
+	 * @return whether the table is full
+	 */
+	boolean isFull() {
+		return size.get() >= maxSize;
+	}
+}
\ No newline at end of file
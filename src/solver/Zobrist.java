@@ -0,0 +1,76 @@
+package solver;
+
+/**
+ * This class hashes saved game states for the transposition table. Each cell's hash is a pseudo-random key for its
+ * position and contents, and the board's hash is all of them XORed together, so when a move changes a few cells the
+ * hash can be updated from those cells alone. Keys are generated from the cell and contents instead of being stored
+ * in a table, so boards of any size cost no memory.
+ * 
+ * @author Jeffrey Sun
+ */
+final class Zobrist {
+
+	private static final long SEED = 0x5DEECE66DL;
+
+	private Zobrist() {}
+
+	/**
+	 * Returns the key of a cell holding the given contents
+	 * 
+	 * @param cell the index of the cell
+	 * 
+	 * @param contents the saved byte of the cell
+	 * 
+	 * @return the cell's key
+	 */
+	static long key(int cell, int contents) {
+		return mix(SEED + ((long) cell << 8) + (contents & 0xFF));
+	}
+
+	/**
+	 * Hashes the cells at the start of a saved state
+	 * 
+	 * @param state the saved state
+	 * 
+	 * @param numCells the number of cells on the board
+	 * 
+	 * @return the hash of the cells
+	 */
+	static long hashCells(byte[] state, int numCells) {
+		long hash = 0;
+		for(int cell = 0; cell != numCells; ++cell) {
+			hash ^= key(cell, state[cell]);
+		}
+		return hash;
+	}
+
+	/**
+	 * Hashes the rest of a saved state after its cells, such as the player's position and the order objects move in
+	 * 
+	 * @param state the saved state
+	 * 
+	 * @param numCells the number of cells on the board
+	 * 
+	 * @return the hash of the rest of the state
+	 */
+	static long hashRest(byte[] state, int numCells) {
+		long hash = SEED;
+		for(int i = numCells; i != state.length; ++i) {
+			hash = mix(hash + state[i]);
+		}
+		return hash;
+	}
+
+	/**
+	 * Scrambles the bits of the given value, using the finaliser of the SplitMix64 generator
+	 * 
+	 * @param value the value to scramble
+	 * 
+	 * @return the scrambled value
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+}
\ No newline at end of file
@@ -1,21 +1,51 @@
 package view;
 
+import java.awt.BasicStroke;
+import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.Timer;
 
 import controller.Controller;
-import model.Tile;
+import controller.Snapshot;
+import metrics.Gauge;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.RepaintEvent;
+import model.Board;
+import model.Model;
+import model.TileRules;
 
 /**
- * This class handles the visual aspects of the game
+ * This class handles the visual aspects of the game. It draws the latest snapshot published by the game loop once per
+ * display refresh, easing falling objects and the player's moves between tiles so that they glide rather than jump.
+ * 
+ * Levels larger than the window are seen through a camera that follows the player. The game panel is as large as the
+ * whole level and sits in a viewport that blits what is already on screen when the camera moves, so only the strips
+ * of tiles scrolled into view are drawn. Only tiles inside the view are ever drawn or checked for changes, so the cost
+ * of a frame doesn't depend on the size of the level.
  * 
  * @author Jeffrey Sun
  */
@@ -23,18 +53,55 @@ public class View extends JFrame {
 	private static final long serialVersionUID = -5856476386594461049L;
 	
 	private static final int TILE_LENGTH = 35;
-	private static final int BOARD_WIDTH = 18;
-	private static final int BOARD_HEIGHT = 12;
+	
+	private static final char BACKGROUND = '0';
+	private static final String TERRAIN = "HGP"; // Tiles that never move, drawn once into the terrain layer
+	private static final Color HINT_FILL = new Color(255, 230, 0, 90);
+	private static final Color HINT_OUTLINE = new Color(255, 230, 0);
+	private static final int DEFAULT_REFRESH_RATE = 60; // Frames per second when the display doesn't report its rate
+	private static final long TICK_TIME = TimeUnit.MILLISECONDS.toNanos(Controller.DELAY);
+	private static final long MOVE_TIME = TimeUnit.MILLISECONDS.toNanos(70); // Time the player takes to slide a tile
+	private static final long CAMERA_LAG = TimeUnit.MILLISECONDS.toNanos(120); // Time to close most of the gap
+	private static final int TERRAIN_MARGIN = 8; // Tiles kept in the terrain layer past each edge of the view
+	private static final Font METRICS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+	private static final Color METRICS_BACKGROUND = new Color(0, 0, 0, 170);
+	private static final int METRICS_WIDTH = 470;
+	private static final long METRICS_REFRESH = TimeUnit.MILLISECONDS.toNanos(250); // Time between overlay updates
     
-	private BufferedImage hardSand, granite, softSand, background, rock, bomb, orb, portal, player, mummy, menu, nextLevel, gameOver;
+	// Images as loaded from the images folder, with tile images indexed by tile type
+	private BufferedImage[] tileImages = new BufferedImage[128];
+	private BufferedImage menu, nextLevel, gameOver;
+	
+	// Images converted for the display and scaled to the size they're drawn at
+	private double spriteScale; // Display pixels per window unit that the sprites were made for
+	private BufferedImage[] sprites;
+	private BufferedImage menuScreen, nextLevelScreen, gameOverScreen;
+	
+	// Background and terrain tiles around the view, drawn once and updated only when a terrain tile is destroyed
+	private BufferedImage terrain;
+	private char[] terrainTypes; // Tile type currently drawn in the terrain layer for each of its cells
+	private int terrainRow, terrainCol; // Cell of the level at the top left of the terrain layer
+	private int terrainRows, terrainColumns;
     
 	private JFrame window;
 	private GamePanel game;
+	private JViewport viewport;
 
 	private int windowWidth;
 	private int windowHeight;
+	private int viewColumns, viewRows; // Tiles shown, which is the whole level unless it's larger than the screen
+	private Dimension levelSize; // Size of the whole level in window units
+	private int maxDirtyTiles; // Beyond this the whole view is redrawn
 
 	private Controller controller;
+	private Timer renderTimer;
+	private Snapshot shown; // Snapshot being drawn, only used on the event dispatch thread
+	private boolean isFallAnimating, isMoveAnimating; // Whether the last frame was part way through an animation
+	private double cameraX, cameraY; // Top left of the view within the level, in window units
+	private boolean isCameraPlaced; // Whether the camera has been placed since the level or screen last changed
+	private long lastFrameTime;
+	private boolean isShowingMetrics; // Whether the metrics overlay is drawn over the top left of the view
+	private long metricsTime; // When the metrics overlay was last redrawn
     
 	/**
 	 * Constructor that creates the view class with a reference to the controller
@@ -44,11 +111,11 @@ public class View extends JFrame {
 	public View(Controller controller) {
 		this.controller = controller;
         
-		windowWidth = TILE_LENGTH * BOARD_WIDTH;
-		windowHeight = TILE_LENGTH * BOARD_HEIGHT;
+		fitToBoard(controller.getSnapshot().getBoard());
 
 		loadImages();
 		drawWindow();
+		startRenderTimer();
 	}
     
 	/**
@@ -61,10 +128,216 @@ public class View extends JFrame {
 	}
     
 	/**
-	 * Updates the board
+	 * Shows or hides the metrics overlay. Metrics are recorded while the overlay is showing, and stop being recorded
+	 * when it's hidden.
+	 */
+	public void toggleMetrics() {
+		isShowingMetrics = !isShowingMetrics;
+		Metrics.setEnabled(isShowingMetrics);
+		// The overlay stays put while the level scrolls under it, so the viewport mustn't copy it along when blitting
+		viewport.setScrollMode(isShowingMetrics ? JViewport.SIMPLE_SCROLL_MODE : JViewport.BLIT_SCROLL_MODE);
+		game.repaint(metricsBounds());
+	}
+	
+	/**
+	 * Sizes the view to show the whole of the given board, or as much of it as fits on the screen
+	 * 
+	 * @param board the board to show
+	 */
+	private void fitToBoard(Board board) {
+		Rectangle screen = GraphicsEnvironment.isHeadless() ? new Rectangle(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE)
+				: GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+		viewColumns = Math.min(board.getWidth(), Math.max(screen.width / TILE_LENGTH - 1, 1));
+		viewRows = Math.min(board.getHeight(), Math.max(screen.height / TILE_LENGTH - 2, 1));
+		maxDirtyTiles = viewColumns * viewRows / 4;
+		windowWidth = TILE_LENGTH * viewColumns;
+		windowHeight = TILE_LENGTH * viewRows;
+		levelSize = new Dimension(TILE_LENGTH * board.getWidth(), TILE_LENGTH * board.getHeight());
+		sprites = null; // Screens are scaled again to the new size the next time they're drawn
+		isCameraPlaced = false;
+		if(game != null) {
+			game.setPreferredSize(levelSize);
+			viewport.setPreferredSize(new Dimension(windowWidth, windowHeight));
+			window.pack();
+		}
+	}
+	
+	/**
+	 * Starts a timer that draws a frame each time the display refreshes
+	 */
+	private void startRenderTimer() {
+		int refreshRate = DEFAULT_REFRESH_RATE;
+		if(!GraphicsEnvironment.isHeadless()) {
+			int rate = window.getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+			if(rate > 0) {
+				refreshRate = rate;
+			}
+		}
+		renderTimer = new Timer(1000 / refreshRate, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				renderFrame();
+			}
+		});
+		renderTimer.setCoalesce(true); // Drop frames rather than queue them up if drawing falls behind
+		renderTimer.start();
+	}
+	
+	/**
+	 * Draws the next frame. If the game loop has published a new snapshot, only the tiles in view that differ from the
+	 * one shown are redrawn, unless the level or the screen being shown has changed. The camera is then moved towards
+	 * the player, and tiles that are part way through an animation are redrawn every frame until the animation
+	 * finishes.
 	 */
-	public void updateBoard() {
-		game.repaint();
+	private void renderFrame() {
+		Snapshot next = controller.getSnapshot();
+		if(next != shown) {
+			repaintChanges(shown, next);
+			shown = next;
+		}
+		long now = System.nanoTime();
+		if(isShowingMetrics && now - metricsTime >= METRICS_REFRESH) {
+			game.repaint(metricsBounds());
+			metricsTime = now;
+		}
+		if(shown.getScreen() != Controller.PLAYING) {
+			isCameraPlaced = false;
+			return;
+		}
+		moveCamera(now);
+		
+		Board board = shown.getBoard();
+		Rectangle tiles = visibleTiles(board);
+		boolean isFalling = now - shown.getTickTime() < TICK_TIME;
+		if(isFalling || isFallAnimating) {
+			for(int row = tiles.y; row != tiles.y + tiles.height; ++row) {
+				for(int col = tiles.x; col != tiles.x + tiles.width; ++col) {
+					if(board.isFalling(row, col)) {
+						game.repaint(col * TILE_LENGTH, (row - 1) * TILE_LENGTH, TILE_LENGTH, 2 * TILE_LENGTH);
+					}
+				}
+			}
+		}
+		isFallAnimating = isFalling;
+		
+		boolean isMoving = now - shown.getMoveTime() < MOVE_TIME;
+		if(isMoving || isMoveAnimating) {
+			repaintTile(shown.getMovedFromRow() * board.getWidth() + shown.getMovedFromCol(), board.getWidth());
+			repaintTile(shown.getPlayerRow() * board.getWidth() + shown.getPlayerCol(), board.getWidth());
+		}
+		isMoveAnimating = isMoving;
+		
+		Toolkit.getDefaultToolkit().sync(); // Flush the drawing on systems that buffer it, so frames arrive evenly
+	}
+	
+	/**
+	 * Moves the camera towards the player, keeping the player in the middle of the view except near the edges of the
+	 * level, which the view never scrolls past. The camera closes the same fraction of the gap in the same time
+	 * however far behind it is, so it scrolls smoothly rather than a tile at a time. When a level is first shown the
+	 * camera starts on the player instead.
+	 * 
+	 * @param now the System.nanoTime() of the frame being drawn
+	 */
+	private void moveCamera(long now) {
+		Dimension view = viewport.getExtentSize();
+		double moveFraction = Math.max(0, MOVE_TIME - (now - shown.getMoveTime())) / (double) MOVE_TIME;
+		double playerX = TILE_LENGTH * (shown.getPlayerCol()
+				- Integer.signum(shown.getPlayerCol() - shown.getMovedFromCol()) * moveFraction);
+		double playerY = TILE_LENGTH * (shown.getPlayerRow()
+				- Integer.signum(shown.getPlayerRow() - shown.getMovedFromRow()) * moveFraction);
+		double targetX = Math.max(0,
+				Math.min(playerX + (TILE_LENGTH - view.width) / 2.0, levelSize.width - view.width));
+		double targetY = Math.max(0,
+				Math.min(playerY + (TILE_LENGTH - view.height) / 2.0, levelSize.height - view.height));
+
+		if(isCameraPlaced) {
+			double fraction = 1 - Math.exp(-(double) (now - lastFrameTime) / CAMERA_LAG);
+			cameraX += (targetX - cameraX) * fraction;
+			cameraY += (targetY - cameraY) * fraction;
+		} else {
+			cameraX = targetX;
+			cameraY = targetY;
+			isCameraPlaced = true;
+		}
+		lastFrameTime = now;
+
+		// The viewport copies the part of the view still showing and repaints only the strips scrolled into view
+		Point position = new Point((int) Math.round(cameraX), (int) Math.round(cameraY));
+		if(!position.equals(viewport.getViewPosition())) {
+			viewport.setViewPosition(position);
+		}
+	}
+
+	/**
+	 * Returns the tiles of the board that are at least partly in view, along with the row below the view, since
+	 * objects falling into that row are drawn partly inside the view
+	 * 
+	 * @param board the board being shown
+	 * 
+	 * @return the column and row of the top left tile in view, and the number of columns and rows in view
+	 */
+	private Rectangle visibleTiles(Board board) {
+		Rectangle view = viewport.getViewRect();
+		int firstCol = Math.max(0, view.x / TILE_LENGTH), firstRow = Math.max(0, view.y / TILE_LENGTH);
+		int lastCol = Math.min(board.getWidth() - 1, (view.x + view.width - 1) / TILE_LENGTH);
+		int lastRow = Math.min(board.getHeight() - 1, (view.y + view.height - 1) / TILE_LENGTH + 1);
+		return new Rectangle(firstCol, firstRow, Math.max(0, lastCol - firstCol + 1),
+				Math.max(0, lastRow - firstRow + 1));
+	}
+
+	/**
+	 * Redraws the parts of the game panel in view that differ between two snapshots
+	 * 
+	 * @param oldSnapshot the snapshot that was shown, or null if nothing has been shown yet
+	 * 
+	 * @param newSnapshot the snapshot about to be shown
+	 */
+	private void repaintChanges(Snapshot oldSnapshot, Snapshot newSnapshot) {
+		Board oldBoard = oldSnapshot == null ? null : oldSnapshot.getBoard();
+		Board newBoard = newSnapshot.getBoard();
+		if(oldBoard == null || oldBoard.getWidth() != newBoard.getWidth()
+				|| oldBoard.getHeight() != newBoard.getHeight()) {
+			fitToBoard(newBoard);
+			game.repaint();
+			return;
+		}
+		if(newSnapshot.getScreen() != Controller.PLAYING || oldSnapshot.getScreen() != newSnapshot.getScreen()) {
+			game.repaint();
+			return;
+		}
+		
+		// Only the chunks of the board changed since the last snapshot are compared, and only cells in view redrawn
+		Rectangle tiles = visibleTiles(newBoard);
+		int width = newBoard.getWidth();
+		int numChanged = 0;
+		int cell = newBoard.nextDifference(oldBoard, 0);
+		for(; cell != -1; cell = newBoard.nextDifference(oldBoard, cell + 1)) {
+			int row = cell / width, col = cell % width;
+			if(row >= tiles.y && row < tiles.y + tiles.height && col >= tiles.x && col < tiles.x + tiles.width) {
+				if(++numChanged > maxDirtyTiles) {
+					game.repaint();
+					return;
+				}
+				repaintTile(cell, width);
+			}
+		}
+		if(oldSnapshot.getHintCell() != newSnapshot.getHintCell()) {
+			repaintTile(oldSnapshot.getHintCell(), width);
+			repaintTile(newSnapshot.getHintCell(), width);
+		}
+	}
+	
+	/**
+	 * Redraws a single tile of the board
+	 * 
+	 * @param cell the index of the cell to redraw, or Controller.NO_HINT to redraw nothing
+	 * 
+	 * @param width the width of the board
+	 */
+	private void repaintTile(int cell, int width) {
+		if(cell != Controller.NO_HINT) {
+			game.repaint(cell % width * TILE_LENGTH, cell / width * TILE_LENGTH, TILE_LENGTH, TILE_LENGTH);
+		}
 	}
 
 	/**
@@ -72,16 +345,11 @@ public class View extends JFrame {
 	 */
 	private void loadImages() {
 		try {
-			hardSand = ImageIO.read(new File("images/hardSand.png"));
-			granite = ImageIO.read(new File("images/granite.png"));
-			softSand = ImageIO.read(new File("images/softSand.png"));
-			background = ImageIO.read(new File("images/background.png"));
-			rock = ImageIO.read(new File("images/rock.png"));
-			bomb = ImageIO.read(new File("images/bomb.png"));
-			orb = ImageIO.read(new File("images/orb.png"));
-			portal = ImageIO.read(new File("images/portal.png"));
-			player = ImageIO.read(new File("images/guy.png"));
-			mummy = ImageIO.read(new File("images/mummy.png")); 
+			for(char type = 0; type != tileImages.length; ++type) {
+				if(TileRules.getImage(type) != null) {
+					tileImages[type] = ImageIO.read(new File("images/" + TileRules.getImage(type)));
+				}
+			}
 			menu = ImageIO.read(new File("images/menu.png"));   
 			nextLevel = ImageIO.read(new File("images/nextLevel.png")); 
 			gameOver = ImageIO.read(new File("images/gameOver.png"));   
@@ -89,6 +357,58 @@ public class View extends JFrame {
 			e.printStackTrace();
 		}
 	}
+	
+	/**
+	 * Converts the loaded images into images suited to the display, scaled once to the size they will be drawn at
+	 * 
+	 * @param scale the number of display pixels per window unit
+	 * 
+	 * @param config the configuration of the display being drawn to
+	 */
+	private void cacheImages(double scale, GraphicsConfiguration config) {
+		spriteScale = scale;
+		int tileSize = (int) Math.round(TILE_LENGTH * scale);
+		int width = (int) Math.round(windowWidth * scale);
+		int height = (int) Math.round(windowHeight * scale);
+		
+		sprites = new BufferedImage[tileImages.length];
+		for(int type = 0; type != tileImages.length; ++type) {
+			if(tileImages[type] != null) {
+				sprites[type] = scaleImage(tileImages[type], tileSize, tileSize, config);
+			}
+		}
+		menuScreen = scaleImage(menu, width, height, config);
+		nextLevelScreen = scaleImage(nextLevel, width, height, config);
+		gameOverScreen = scaleImage(gameOver, width, height, config);
+		
+		terrain = null; // Redrawn at the new scale the next time the level is shown
+	}
+	
+	/**
+	 * Draws an image into a new display-compatible image of the given size
+	 * 
+	 * @param image the image to scale
+	 * 
+	 * @param width the width of the new image in pixels
+	 * 
+	 * @param height the height of the new image in pixels
+	 * 
+	 * @param config the configuration of the display being drawn to
+	 * 
+	 * @return the scaled image
+	 */
+	private BufferedImage scaleImage(BufferedImage image, int width, int height, GraphicsConfiguration config) {
+		if(image == null) {
+			return null;
+		}
+		BufferedImage scaled = config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(image, 0, 0, width, height, null);
+		g.dispose();
+		return scaled;
+	}
     
 	/**
 	 * Creates the window for the game to be displayed in
@@ -99,12 +419,18 @@ public class View extends JFrame {
 		window.setResizable(false);
 		window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         
-		// Creates game screen
+		// Creates game screen, as large as the level, and the viewport the camera looks at it through
 		game = new GamePanel();
-		game.setPreferredSize(new Dimension(windowWidth, windowHeight));
-		game.setBorder(BorderFactory.createEtchedBorder());
+		game.setPreferredSize(levelSize);
+		viewport = new JViewport();
+		viewport.setScrollMode(JViewport.BLIT_SCROLL_MODE);
+		viewport.setView(game);
+		viewport.setPreferredSize(new Dimension(windowWidth, windowHeight));
+		JPanel frame = new JPanel(new BorderLayout());
+		frame.setBorder(BorderFactory.createEtchedBorder());
+		frame.add(viewport);
         
-		window.getContentPane().add(game);
+		window.getContentPane().add(frame);
 		window.pack();
 		window.setLocationRelativeTo(null);
 		window.setVisible(true);
@@ -118,68 +444,236 @@ public class View extends JFrame {
 		
 		@Override
 		protected void paintComponent(Graphics g) {
-			if(controller.state == Controller.START_MENU) {
-				g.drawImage(menu, 0, 0, game.getWidth(), game.getHeight(), null);
-			} else if(controller.state == Controller.PLAYING) {
-				showLevel(controller.getBoard(), g);
-			} else if(controller.state == Controller.TRANSITION_STATE) {
-				g.drawImage(nextLevel, 0, 0, game.getWidth(), game.getHeight(), null);
-			} else if(controller.state == Controller.GAME_OVER) {
-				g.drawImage(gameOver, 0, 0, game.getWidth(), game.getHeight(), null);
-			} else if(controller.state == Controller.END_MENU) {
-				g.drawImage(menu, 0, 0, game.getWidth(), game.getHeight(), null);
+			// Rescale the images once if the display's scale factor has changed, such as on a HiDPI screen
+			double scale = ((Graphics2D) g).getTransform().getScaleX();
+			if(sprites == null || scale != spriteScale) {
+				cacheImages(scale, getGraphicsConfiguration());
+			}
+			
+			if(shown == null) {
+				shown = controller.getSnapshot();
+			}
+			// Menu screens cover the view wherever the camera was left
+			Rectangle view = viewport.getViewRect();
+			int screen = shown.getScreen();
+			if(screen == Controller.START_MENU) {
+				g.drawImage(menuScreen, view.x, view.y, view.width, view.height, null);
+			} else if(screen == Controller.PLAYING) {
+				RepaintEvent event = new RepaintEvent();
+				event.begin();
+				long start = Metrics.start();
+				showLevel(shown, g);
+				Metrics.PAINT.stop(start);
+				event.end();
+				if(event.shouldCommit()) {
+					Rectangle clip = g.getClipBounds();
+					clip = clip == null ? view : clip.intersection(view);
+					event.commit(shown.getLevel(), shown.getTick(), clip.equals(view), (long) clip.width * clip.height);
+				}
+			} else if(screen == Controller.TRANSITION_STATE) {
+				g.drawImage(nextLevelScreen, view.x, view.y, view.width, view.height, null);
+			} else if(screen == Controller.GAME_OVER) {
+				g.drawImage(gameOverScreen, view.x, view.y, view.width, view.height, null);
+			} else if(screen == Controller.END_MENU) {
+				g.drawImage(menuScreen, view.x, view.y, view.width, view.height, null);
 			}
+			if(isShowingMetrics) {
+				showMetrics(g);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the area of the game panel the metrics overlay covers, which is the top left of the view
+	 * 
+	 * @return the area of the overlay
+	 */
+	private Rectangle metricsBounds() {
+		Rectangle view = viewport.getViewRect();
+		int lineHeight = METRICS_FONT.getSize() + 3;
+		int numLines = 1 + Metrics.getHistograms().size() + 1;
+		return new Rectangle(view.x, view.y, Math.min(METRICS_WIDTH, view.width),
+				Math.min(numLines * lineHeight + 8, view.height));
+	}
+	
+	/**
+	 * Draws the metrics overlay: a line for each histogram with its count and its median, 99th percentile and largest
+	 * time, followed by the gauges
+	 * 
+	 * @param g the object to draw with
+	 */
+	private void showMetrics(Graphics g) {
+		Rectangle bounds = metricsBounds();
+		g.setColor(METRICS_BACKGROUND);
+		g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+		g.setColor(Color.WHITE);
+		g.setFont(METRICS_FONT);
+		int lineHeight = METRICS_FONT.getSize() + 3;
+		int x = bounds.x + 6, y = bounds.y + 4 + METRICS_FONT.getSize();
+		
+		g.drawString(String.format("%-13s %8s %9s %9s %9s  (F3 hides)", "microseconds", "count", "p50", "p99", "max"),
+				x, y);
+		for(Histogram histogram : Metrics.getHistograms()) {
+			y += lineHeight;
+			g.drawString(String.format("%-13s %8d %9.1f %9.1f %9.1f", histogram.getName(), histogram.getCount(),
+					histogram.getPercentile(0.5) / 1e3, histogram.getPercentile(0.99) / 1e3,
+					histogram.getMax() / 1e3), x, y);
+		}
+		StringBuilder gauges = new StringBuilder();
+		for(Gauge gauge : Metrics.getGauges()) {
+			gauges.append(gauge.getName()).append(' ').append(gauge.get()).append("   ");
 		}
+		g.drawString(gauges.toString(), x, y + lineHeight);
 	}
 
 	/**
-	 * This class draws the current level
+	 * This class draws the tiles of the current level that are inside both the view and the area being painted. The
+	 * terrain layer is drawn first, and the tiles that can move or be dug away are drawn on top of it. Falling objects
+	 * are drawn part of the way back up towards the tile they fell from, and the player part of the way back to the
+	 * tile they moved from, according to how long ago they moved.
 	 * 
-	 * @param board the board to draw
+	 * @param snapshot the snapshot of the game to draw
 	 * 
 	 * @param g the object to draw with
 	 */
-	private void showLevel(Tile[][] board, Graphics g) {
-		if(board.length == 0) {
+	private void showLevel(Snapshot snapshot, Graphics g) {
+		Board board = snapshot.getBoard();
+		Rectangle area = viewport.getViewRect();
+		Rectangle clip = g.getClipBounds();
+		if(clip != null) {
+			area = area.intersection(clip);
+		}
+		if(area.isEmpty()) {
 			return;
 		}
-		for(int row = 0; row != BOARD_HEIGHT; ++row) {
-			for(int col = 0; col != BOARD_WIDTH; ++col) {
-				int xPos = col * TILE_LENGTH;
-				int yPos = row * TILE_LENGTH;
-				switch(board[row][col].getType()) {
-				case 'H':
-					g.drawImage(hardSand, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case 'G':
-					g.drawImage(granite, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case 'S':
-					g.drawImage(softSand, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case '0':
-					g.drawImage(background, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case 'R':
-					g.drawImage(rock, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case 'B':
-					g.drawImage(bomb, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case 'O':
-					g.drawImage(orb, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case 'P':
-					g.drawImage(portal, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case 'U':
-					g.drawImage(player, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
-				case 'M':
-					g.drawImage(mummy, xPos, yPos, TILE_LENGTH, TILE_LENGTH, null);
-					break;
+		int firstRow = Math.max(0, area.y / TILE_LENGTH);
+		int lastRow = Math.min(board.getHeight() - 1, (area.y + area.height - 1) / TILE_LENGTH);
+		int firstCol = Math.max(0, area.x / TILE_LENGTH);
+		int lastCol = Math.min(board.getWidth() - 1, (area.x + area.width - 1) / TILE_LENGTH);
+		
+		updateTerrain(board, firstRow, lastRow, firstCol, lastCol);
+		g.drawImage(terrain, terrainCol * TILE_LENGTH, terrainRow * TILE_LENGTH, terrainColumns * TILE_LENGTH,
+				terrainRows * TILE_LENGTH, null);
+		
+		long now = System.nanoTime();
+		int fallOffset = (int) (TILE_LENGTH * Math.max(0, TICK_TIME - (now - snapshot.getTickTime())) / TICK_TIME);
+		int moveOffset = (int) (TILE_LENGTH * Math.max(0, MOVE_TIME - (now - snapshot.getMoveTime())) / MOVE_TIME);
+		
+		// Objects falling into the row below the area are drawn partly inside it
+		int lastObjectRow = Math.min(lastRow + 1, board.getHeight() - 1);
+		for(int row = firstRow; row <= lastObjectRow; ++row) {
+			for(int col = firstCol; col <= lastCol; ++col) {
+				char type = board.getType(row, col);
+				if(type != BACKGROUND && TERRAIN.indexOf(type) == -1 && sprites[type] != null) {
+					int x = col * TILE_LENGTH, y = row * TILE_LENGTH;
+					if(board.isFalling(row, col)) {
+						y -= fallOffset;
+					} else if(type == Model.PLAYER) {
+						x -= Integer.signum(col - snapshot.getMovedFromCol()) * moveOffset;
+						y -= Integer.signum(row - snapshot.getMovedFromRow()) * moveOffset;
+					}
+					g.drawImage(sprites[type], x, y, TILE_LENGTH, TILE_LENGTH, null);
 				}
 			}
 		}
+		
+		// Highlight the tile the hint suggests moving into, on top of everything else
+		int hint = snapshot.getHintCell();
+		if(hint != Controller.NO_HINT) {
+			Graphics2D g2 = (Graphics2D) g;
+			int x = hint % board.getWidth() * TILE_LENGTH, y = hint / board.getWidth() * TILE_LENGTH;
+			g2.setColor(HINT_FILL);
+			g2.fillRect(x, y, TILE_LENGTH, TILE_LENGTH);
+			g2.setColor(HINT_OUTLINE);
+			g2.setStroke(new BasicStroke(3));
+			g2.drawRect(x + 1, y + 1, TILE_LENGTH - 3, TILE_LENGTH - 3);
+		}
+	}
+	
+	/**
+	 * Redraws the cells of the terrain layer in the given area whose terrain no longer matches the board. The terrain
+	 * layer only covers the view and a margin around it, so if the area has scrolled outside it, the layer is first
+	 * moved to be centred on the area.
+	 * 
+	 * @param board the board being drawn
+	 * 
+	 * @param firstRow the first row to check
+	 * 
+	 * @param lastRow the last row to check
+	 * 
+	 * @param firstCol the first column to check
+	 * 
+	 * @param lastCol the last column to check
+	 */
+	private void updateTerrain(Board board, int firstRow, int lastRow, int firstCol, int lastCol) {
+		int tileSize = sprites[BACKGROUND].getWidth();
+		int rows = Math.min(viewRows + 2 * TERRAIN_MARGIN, board.getHeight());
+		int columns = Math.min(viewColumns + 2 * TERRAIN_MARGIN, board.getWidth());
+		if(terrain == null || terrainRows != rows || terrainColumns != columns) {
+			terrain = game.getGraphicsConfiguration().createCompatibleImage(columns * tileSize, rows * tileSize,
+					Transparency.OPAQUE);
+			terrainTypes = new char[columns * rows];
+			terrainRows = rows;
+			terrainColumns = columns;
+			terrainRow = 0;
+			terrainCol = 0;
+		}
+		if(firstRow < terrainRow || lastRow >= terrainRow + terrainRows || firstCol < terrainCol
+				|| lastCol >= terrainCol + terrainColumns) {
+			int row = Math.min((firstRow + lastRow + 1 - terrainRows) / 2, board.getHeight() - terrainRows);
+			int col = Math.min((firstCol + lastCol + 1 - terrainColumns) / 2, board.getWidth() - terrainColumns);
+			moveTerrain(Math.max(0, row), Math.max(0, col), tileSize);
+		}
+		
+		Graphics2D g = null;
+		for(int row = firstRow; row <= lastRow; ++row) {
+			for(int col = firstCol; col <= lastCol; ++col) {
+				char type = board.getType(row, col);
+				char terrainType = TERRAIN.indexOf(type) == -1 ? BACKGROUND : type;
+				int cell = (row - terrainRow) * terrainColumns + col - terrainCol;
+				if(terrainTypes[cell] != terrainType) {
+					if(g == null) {
+						g = terrain.createGraphics();
+					}
+					g.drawImage(sprites[terrainType], (col - terrainCol) * tileSize, (row - terrainRow) * tileSize,
+							null);
+					terrainTypes[cell] = terrainType;
+				}
+			}
+		}
+		if(g != null) {
+			g.dispose();
+		}
+	}
+
+	/**
+	 * Moves the terrain layer to cover a different part of the level. The cells it still covers are copied across
+	 * rather than drawn again, and the rest are left to be drawn when they're next checked.
+	 * 
+	 * @param row the row of the level to put at the top of the layer
+	 * 
+	 * @param col the column of the level to put at the left of the layer
+	 * 
+	 * @param tileSize the size of a tile in the layer, in pixels
+	 */
+	private void moveTerrain(int row, int col, int tileSize) {
+		int rowShift = terrainRow - row, colShift = terrainCol - col;
+		Graphics2D g = terrain.createGraphics();
+		g.copyArea(0, 0, terrain.getWidth(), terrain.getHeight(), colShift * tileSize, rowShift * tileSize);
+		g.dispose();
+
+		char[] types = new char[terrainTypes.length]; // Cells not copied hold no tile type, so they're drawn
+		int firstCol = Math.max(0, colShift);
+		int length = terrainColumns - Math.abs(colShift);
+		for(int r = 0; r != terrainRows; ++r) {
+			int oldRow = r - rowShift;
+			if(length > 0 && oldRow >= 0 && oldRow < terrainRows) {
+				System.arraycopy(terrainTypes, oldRow * terrainColumns + firstCol - colShift, types,
+						r * terrainColumns + firstCol, length);
+			}
+		}
+		terrainTypes = types;
+		terrainRow = row;
+		terrainCol = col;
 	}
 }
\ No newline at end of file